@@ -0,0 +1,161 @@
+package org.starodubov.bench;
+
+import java.util.Random;
+
+/**
+ * Синтетический корпус для бенчмарков. Один и тот же логический документ
+ * генерируется в JSON и в XML, чтобы парсеры сравнивались на одинаковых данных.
+ * Данные укладываются в подмножество, которое понимают все парсеры:
+ * без экранирования, без экспонент, целые числа влезают в int.
+ */
+public enum Payload {
+    SMALL_API_RESPONSE {
+        @Override
+        void json(StringBuilder sb, Random rnd) {
+            jsonUser(sb, rnd, 1);
+        }
+
+        @Override
+        void xml(StringBuilder sb, Random rnd) {
+            xmlUser(sb, rnd, 1);
+        }
+    },
+    NESTED_1MB {
+        @Override
+        void json(StringBuilder sb, Random rnd) {
+            sb.append('[');
+            for (int i = 0; sb.length() < MB; i++) {
+                if (i > 0) sb.append(',');
+                jsonNode(sb, rnd, i, 5);
+            }
+            sb.append(']');
+        }
+
+        @Override
+        void xml(StringBuilder sb, Random rnd) {
+            sb.append("<nodes>");
+            for (int i = 0; sb.length() < MB; i++) {
+                xmlNode(sb, rnd, i, 5);
+            }
+            sb.append("</nodes>");
+        }
+    },
+    LOG_ARRAY_100MB {
+        @Override
+        void json(StringBuilder sb, Random rnd) {
+            sb.append('[');
+            for (int i = 0; sb.length() < 100 * MB; i++) {
+                if (i > 0) sb.append(',');
+                sb.append("{\"ts\":\"2024-03-").append(10 + i % 20).append("T12:").append(10 + i % 50)
+                        .append(":00Z\",\"level\":\"").append(LEVELS[rnd.nextInt(LEVELS.length)])
+                        .append("\",\"service\":\"api-").append(rnd.nextInt(16))
+                        .append("\",\"traceId\":\"").append(Long.toHexString(rnd.nextLong()))
+                        .append("\",\"latencyMs\":").append(rnd.nextInt(5000))
+                        .append(",\"status\":").append(STATUSES[rnd.nextInt(STATUSES.length)])
+                        .append(",\"message\":\"GET /v1/items/").append(rnd.nextInt(1_000_000))
+                        .append(" completed\"}");
+            }
+            sb.append(']');
+        }
+
+        @Override
+        void xml(StringBuilder sb, Random rnd) {
+            sb.append("<logs>");
+            for (int i = 0; sb.length() < 100 * MB; i++) {
+                sb.append("<record><ts>2024-03-").append(10 + i % 20).append("T12:").append(10 + i % 50)
+                        .append(":00Z</ts><level>").append(LEVELS[rnd.nextInt(LEVELS.length)])
+                        .append("</level><service>api-").append(rnd.nextInt(16))
+                        .append("</service><traceId>").append(Long.toHexString(rnd.nextLong()))
+                        .append("</traceId><latencyMs>").append(rnd.nextInt(5000))
+                        .append("</latencyMs><status>").append(STATUSES[rnd.nextInt(STATUSES.length)])
+                        .append("</status><message>GET /v1/items/").append(rnd.nextInt(1_000_000))
+                        .append(" completed</message></record>");
+            }
+            sb.append("</logs>");
+        }
+    };
+
+    private static final int MB = 1024 * 1024;
+    private static final long SEED = 42;
+    private static final String[] LEVELS = {"DEBUG", "INFO", "INFO", "INFO", "WARN", "ERROR"};
+    private static final int[] STATUSES = {200, 200, 200, 201, 204, 400, 404, 500};
+    private static final String[] TAGS = {"alpha", "beta", "gamma", "delta", "omega"};
+
+    abstract void json(StringBuilder sb, Random rnd);
+
+    abstract void xml(StringBuilder sb, Random rnd);
+
+    public String json() {
+        final var sb = new StringBuilder();
+        json(sb, new Random(SEED));
+        return sb.toString();
+    }
+
+    public String xml() {
+        final var sb = new StringBuilder();
+        xml(sb, new Random(SEED));
+        return sb.toString();
+    }
+
+    private static void jsonUser(StringBuilder sb, Random rnd, int id) {
+        sb.append("{\"id\":").append(id)
+                .append(",\"login\":\"user").append(rnd.nextInt(100_000))
+                .append("\",\"email\":\"user").append(id).append("@example.com\"")
+                .append(",\"active\":").append(rnd.nextBoolean())
+                .append(",\"balance\":").append(rnd.nextInt(100_000)).append('.').append(10 + rnd.nextInt(90))
+                .append(",\"manager\":null")
+                .append(",\"address\":{\"city\":\"Samara\",\"street\":\"Lenina\",\"house\":").append(rnd.nextInt(200))
+                .append(",\"zip\":\"443").append(100 + rnd.nextInt(900)).append("\"}")
+                .append(",\"tags\":[");
+        for (int i = 0; i < TAGS.length; i++) {
+            if (i > 0) sb.append(',');
+            sb.append('"').append(TAGS[i]).append('"');
+        }
+        sb.append("],\"roles\":[{\"name\":\"reader\",\"level\":1},{\"name\":\"writer\",\"level\":2}]}");
+    }
+
+    private static void xmlUser(StringBuilder sb, Random rnd, int id) {
+        sb.append("<user><id>").append(id)
+                .append("</id><login>user").append(rnd.nextInt(100_000))
+                .append("</login><email>user").append(id).append("@example.com</email>")
+                .append("<active>").append(rnd.nextBoolean())
+                .append("</active><balance>").append(rnd.nextInt(100_000)).append('.').append(10 + rnd.nextInt(90))
+                .append("</balance><manager>NULL</manager>")
+                .append("<address><city>Samara</city><street>Lenina</street><house>").append(rnd.nextInt(200))
+                .append("</house><zip>443").append(100 + rnd.nextInt(900)).append("</zip></address><tags>");
+        for (String tag : TAGS) {
+            sb.append("<tag>").append(tag).append("</tag>");
+        }
+        sb.append("</tags><roles><role><name>reader</name><level>1</level></role>")
+                .append("<role><name>writer</name><level>2</level></role></roles></user>");
+    }
+
+    private static void jsonNode(StringBuilder sb, Random rnd, int id, int depth) {
+        sb.append("{\"id\":").append(id)
+                .append(",\"name\":\"node-").append(depth).append('-').append(id)
+                .append("\",\"score\":").append(rnd.nextInt(1000)).append('.').append(rnd.nextInt(1000))
+                .append(",\"active\":").append(rnd.nextBoolean())
+                .append(",\"children\":[");
+        if (depth > 0) {
+            for (int i = 0; i < 3; i++) {
+                if (i > 0) sb.append(',');
+                jsonNode(sb, rnd, id * 3 + i, depth - 1);
+            }
+        }
+        sb.append("]}");
+    }
+
+    private static void xmlNode(StringBuilder sb, Random rnd, int id, int depth) {
+        sb.append("<node><id>").append(id)
+                .append("</id><name>node-").append(depth).append('-').append(id)
+                .append("</name><score>").append(rnd.nextInt(1000)).append('.').append(rnd.nextInt(1000))
+                .append("</score><active>").append(rnd.nextBoolean())
+                .append("</active><children>");
+        if (depth > 0) {
+            for (int i = 0; i < 3; i++) {
+                xmlNode(sb, rnd, id * 3 + i, depth - 1);
+            }
+        }
+        sb.append("</children></node>");
+    }
+}
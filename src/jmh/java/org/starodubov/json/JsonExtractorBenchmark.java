@@ -0,0 +1,50 @@
+package org.starodubov.json;
+
+import org.openjdk.jmh.annotations.*;
+import org.starodubov.bench.ByteCounter;
+import org.starodubov.bench.Payload;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class JsonExtractorBenchmark {
+
+    @Param({"SMALL_API_RESPONSE", "NESTED_1MB", "LOG_ARRAY_100MB"})
+    Payload payload;
+
+    byte[] bytes;
+    JsonPath path;
+    JsonExtractor extractor;
+
+    @Setup
+    public void setUp() {
+        bytes = payload.json().getBytes(StandardCharsets.UTF_8);
+        path = JsonPath.compile(switch (payload) {
+            case SMALL_API_RESPONSE -> "$.address.city";
+            case NESTED_1MB -> "$[*].children[0].id";
+            case LOG_ARRAY_100MB -> "$[*].status";
+        });
+        extractor = new JsonExtractor(path);
+    }
+
+    @Benchmark
+    public Map<JsonPath, List<JsonValue>> extract(ByteCounter counter) {
+        counter.bytes += bytes.length;
+        return extractor.extract(bytes);
+    }
+
+    // Для сравнения: полное дерево и выборка по нему
+    @Benchmark
+    public List<JsonValue> parseAndSelect(ByteCounter counter) {
+        counter.bytes += bytes.length;
+        return path.select(new JsonParser().parse(bytes));
+    }
+}
@@ -0,0 +1,76 @@
+package org.starodubov.json;
+
+import org.openjdk.jmh.annotations.*;
+import org.starodubov.bench.ByteCounter;
+import org.starodubov.bench.Payload;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class JsonParserBenchmark {
+
+    @Param({"SMALL_API_RESPONSE", "NESTED_1MB", "LOG_ARRAY_100MB"})
+    Payload payload;
+
+    String json;
+    byte[] bytes;
+    int size;
+    // Один парсер на все итерации: буферы токенизатора переиспользуются
+    final JsonParser reused = new JsonParser();
+
+    @Setup
+    public void setUp() {
+        json = payload.json();
+        bytes = json.getBytes(StandardCharsets.UTF_8);
+        size = bytes.length;
+    }
+
+    @Benchmark
+    public JsonValue parse(ByteCounter counter) {
+        counter.bytes += size;
+        return new JsonParser().parse(json);
+    }
+
+    @Benchmark
+    public JsonValue parseUtf8(ByteCounter counter) {
+        counter.bytes += size;
+        return new JsonParser().parse(bytes);
+    }
+
+    @Benchmark
+    public JsonValue parseUtf8Reused(ByteCounter counter) {
+        counter.bytes += size;
+        return reused.parse(bytes);
+    }
+
+    @Benchmark
+    public JsonValue parseIndexed(ByteCounter counter) {
+        counter.bytes += size;
+        return new JsonParser().parseIndexed(bytes, StructuralIndexer.get());
+    }
+
+    @Benchmark
+    public JsonValue parseLazy(ByteCounter counter) {
+        counter.bytes += size;
+        return new JsonParser().parseLazy(bytes);
+    }
+
+    @Benchmark
+    public JsonTape parseTape(ByteCounter counter) {
+        counter.bytes += size;
+        return new JsonParser().parseTape(bytes);
+    }
+
+    @Benchmark
+    public JsonValue parseParallel(ByteCounter counter) {
+        counter.bytes += size;
+        return new JsonParser().parseParallel(ByteBuffer.wrap(bytes));
+    }
+}
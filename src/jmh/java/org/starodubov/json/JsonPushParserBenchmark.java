@@ -0,0 +1,45 @@
+package org.starodubov.json;
+
+import org.openjdk.jmh.annotations.*;
+import org.starodubov.bench.ByteCounter;
+import org.starodubov.bench.Payload;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class JsonPushParserBenchmark {
+
+    @Param({"SMALL_API_RESPONSE", "NESTED_1MB", "LOG_ARRAY_100MB"})
+    Payload payload;
+
+    // Размер куска, как у чтения из сокета
+    @Param({"16384"})
+    int chunkSize;
+
+    byte[] bytes;
+    JsonValue result;
+    final JsonPushParser parser = new JsonPushParser(v -> result = v);
+
+    @Setup
+    public void setUp() {
+        bytes = payload.json().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public JsonValue feed(ByteCounter counter) {
+        counter.bytes += bytes.length;
+        parser.reset();
+        for (int from = 0; from < bytes.length; from += chunkSize) {
+            parser.feed(ByteBuffer.wrap(bytes, from, Math.min(chunkSize, bytes.length - from)));
+        }
+        parser.end();
+        return result;
+    }
+}
@@ -0,0 +1,48 @@
+package org.starodubov.json;
+
+import org.openjdk.jmh.annotations.*;
+import org.starodubov.bench.ByteCounter;
+import org.starodubov.bench.Payload;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class JsonWriterBenchmark {
+
+    @Param({"SMALL_API_RESPONSE", "NESTED_1MB", "LOG_ARRAY_100MB"})
+    Payload payload;
+
+    JsonValue tree;
+    JsonTape tape;
+    // Один писатель на все итерации: буфер вырастает до размера документа один раз
+    final JsonWriter writer = new JsonWriter();
+
+    @Setup
+    public void setUp() {
+        byte[] bytes = payload.json().getBytes(StandardCharsets.UTF_8);
+        tree = new JsonParser().parse(bytes);
+        tape = new JsonParser().parseTape(bytes);
+    }
+
+    @Benchmark
+    public int writeTree(ByteCounter counter) {
+        writer.reset();
+        writer.value(tree);
+        counter.bytes += writer.size();
+        return writer.size();
+    }
+
+    @Benchmark
+    public int writeTape(ByteCounter counter) {
+        writer.reset();
+        writer.value(tape.root());
+        counter.bytes += writer.size();
+        return writer.size();
+    }
+}
@@ -0,0 +1,55 @@
+package org.starodubov.json;
+
+import org.openjdk.jmh.annotations.*;
+import org.starodubov.bench.ByteCounter;
+import org.starodubov.bench.Payload;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class NdjsonReaderBenchmark {
+
+    // Одна запись лога на строку: тот же корпус, что LOG_ARRAY_100MB
+    @Param({"LOG_ARRAY_100MB"})
+    Payload payload;
+
+    @Param({"true", "false"})
+    boolean parallel;
+
+    ByteBuffer input;
+    NdjsonReader reader;
+
+    @Setup
+    public void setUp() {
+        String json = payload.json();
+        String ndjson = json.substring(1, json.length() - 1).replace("},{", "}\n{");
+        input = ByteBuffer.wrap(ndjson.getBytes(StandardCharsets.UTF_8));
+        reader = parallel
+                ? new NdjsonReader()
+                : new NdjsonReader(Runnable::run, NdjsonReader.DEFAULT_CHUNK_SIZE, 1);
+    }
+
+    @Benchmark
+    public long ordered(ByteCounter counter) {
+        counter.bytes += input.remaining();
+        long[] count = new long[1];
+        reader.forEach(input, v -> count[0]++);
+        return count[0];
+    }
+
+    @Benchmark
+    public long unordered(ByteCounter counter) {
+        counter.bytes += input.remaining();
+        LongAdder count = new LongAdder();
+        reader.forEachUnordered(input, v -> count.increment());
+        return count.sum();
+    }
+}
@@ -0,0 +1,70 @@
+package org.starodubov.json;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.starodubov.bench.ByteCounter;
+import org.starodubov.bench.Payload;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Токенизация без построения дерева: посимвольный Utf8JsonTokenizer против
+ * двухпроходного разбора со скалярным и векторным построением индекса.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class StructuralIndexBenchmark {
+
+    @Param({"SMALL_API_RESPONSE", "NESTED_1MB", "LOG_ARRAY_100MB"})
+    Payload payload;
+
+    byte[] bytes;
+
+    @Setup
+    public void setUp() {
+        bytes = payload.json().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public void tokenizer(ByteCounter counter, Blackhole bh) {
+        counter.bytes += bytes.length;
+        drain(new Utf8JsonTokenizer(ByteBuffer.wrap(bytes)), bh);
+    }
+
+    @Benchmark
+    public void indexedScalar(ByteCounter counter, Blackhole bh) {
+        counter.bytes += bytes.length;
+        drain(new IndexedJsonTokenizer(bytes, StructuralIndexer.SCALAR), bh);
+    }
+
+    @Benchmark
+    public void indexedVector(ByteCounter counter, Blackhole bh) {
+        counter.bytes += bytes.length;
+        drain(new IndexedJsonTokenizer(bytes, StructuralIndexer.get()), bh);
+    }
+
+    @Benchmark
+    public int[] stage1Scalar(ByteCounter counter) {
+        counter.bytes += bytes.length;
+        return StructuralIndexer.SCALAR.index(bytes, bytes.length);
+    }
+
+    @Benchmark
+    public int[] stage1Vector(ByteCounter counter) {
+        counter.bytes += bytes.length;
+        return StructuralIndexer.get().index(bytes, bytes.length);
+    }
+
+    private static void drain(JsonLexer lexer, Blackhole bh) {
+        int token;
+        while ((token = lexer.next()) != JsonLexer.EOF) {
+            bh.consume(token);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package org.starodubov.ll1.json;
+
+import org.openjdk.jmh.annotations.*;
+import org.starodubov.bench.ByteCounter;
+import org.starodubov.bench.Payload;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class JsonParserLL1Benchmark {
+
+    @Param({"SMALL_API_RESPONSE", "NESTED_1MB", "LOG_ARRAY_100MB"})
+    Payload payload;
+
+    String json;
+    int size;
+
+    @Setup
+    public void setUp() {
+        json = payload.json();
+        size = json.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    @Benchmark
+    public Object parse(ByteCounter counter) {
+        counter.bytes += size;
+        return new JsonParserLL1(json).parse();
+    }
+}
@@ -0,0 +1,60 @@
+package org.starodubov.xml;
+
+import org.openjdk.jmh.annotations.*;
+import org.starodubov.bench.ByteCounter;
+import org.starodubov.bench.Payload;
+import org.starodubov.json.JsonWriter;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class XmlParserBenchmark {
+
+    @Param({"SMALL_API_RESPONSE", "NESTED_1MB", "LOG_ARRAY_100MB"})
+    Payload payload;
+
+    String xml;
+    byte[] bytes;
+    int size;
+
+    @Setup
+    public void setUp() {
+        xml = payload.xml();
+        bytes = xml.getBytes(StandardCharsets.UTF_8);
+        size = bytes.length;
+    }
+
+    @Benchmark
+    public XmlValue parse(ByteCounter counter) {
+        counter.bytes += size;
+        return new XmlParser().parse(xml);
+    }
+
+    // Все события документа без построения дерева
+    @Benchmark
+    public int readEvents(ByteCounter counter) {
+        counter.bytes += size;
+        var reader = new XmlEventReader(new ByteArrayInputStream(bytes));
+        int events = 0;
+        while (reader.next() != XmlEventReader.Event.END_DOCUMENT) {
+            events++;
+        }
+        return events;
+    }
+
+    // XML сразу в JSON без дерева XmlObject
+    @Benchmark
+    public byte[] transcodeToJson(ByteCounter counter) {
+        counter.bytes += size;
+        var out = new JsonWriter();
+        new XmlJsonTranscoder().write(xml, out);
+        return out.toByteArray();
+    }
+}
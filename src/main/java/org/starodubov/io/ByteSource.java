@@ -0,0 +1,248 @@
+package org.starodubov.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Окно байтов входных данных для токенизаторов. Валидные байты лежат в
+ * buffer() по индексам [0, limit()); offset() — абсолютная позиция нулевого
+ * индекса во входных данных. Когда окно кончается, токенизатор вызывает
+ * fill(), сохраняя байты незаконченного токена.
+ */
+public abstract class ByteSource implements Closeable {
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    public static final int DEFAULT_WINDOW_SIZE = 256 * 1024 * 1024;
+
+    protected ByteBuffer buffer;
+    protected int limit;
+    protected long offset;
+
+    public ByteBuffer buffer() {
+        return buffer;
+    }
+
+    public int limit() {
+        return limit;
+    }
+
+    public long offset() {
+        return offset;
+    }
+
+    /**
+     * Подгружает следующую порцию данных, сохраняя байты начиная с keepFrom.
+     * Возвращает сдвиг индексов (старый индекс i становится i - shift)
+     * или -1, если данные кончились. Сдвиг может вернуться и без новых байтов,
+     * поэтому вызывающий проверяет limit() и при необходимости зовёт fill() снова.
+     */
+    public abstract int fill(int keepFrom);
+
+    @Override
+    public void close() {
+    }
+
+    public static ByteSource of(ByteBuffer input) {
+        return new Fixed(input.slice());
+    }
+
+    public static ByteSource of(InputStream in) {
+        return of(in, DEFAULT_BUFFER_SIZE);
+    }
+
+    public static ByteSource of(InputStream in, int bufferSize) {
+        return new Streamed(bufferSize) {
+            @Override
+            int read(byte[] b, int off, int len) throws IOException {
+                return in.read(b, off, len);
+            }
+
+            @Override
+            public void close() {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+    }
+
+    /**
+     * Символы из Reader кодируются в UTF-8 по мере чтения, в том же ограниченном буфере.
+     */
+    public static ByteSource of(Reader in, int bufferSize) {
+        final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        final CharBuffer chars = CharBuffer.allocate(Math.max(bufferSize / 4, 16)).flip();
+
+        return new Streamed(bufferSize) {
+            private boolean eof;
+            private boolean flushed;
+
+            @Override
+            int read(byte[] b, int off, int len) throws IOException {
+                final ByteBuffer out = ByteBuffer.wrap(b, off, len);
+                while (out.position() == off) {
+                    if (eof) {
+                        if (flushed) {
+                            return -1;
+                        }
+                        encoder.encode(chars, out, true);
+                        encoder.flush(out);
+                        flushed = true;
+                        return out.position() == off ? -1 : out.position() - off;
+                    }
+                    // compact() сохраняет незакодированный хвост, например половину суррогатной пары
+                    chars.compact();
+                    eof = in.read(chars) < 0;
+                    chars.flip();
+                    encoder.encode(chars, out, false);
+                }
+                return out.position() - off;
+            }
+
+            @Override
+            public void close() {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+    }
+
+    public static ByteSource map(Path file) {
+        return map(file, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Файл отображается в память окнами по windowSize байт; окно сдвигается
+     * по мере чтения, поэтому размер файла не ограничен 2 ГБ.
+     */
+    public static ByteSource map(Path file, int windowSize) {
+        try {
+            return new Mapped(FileChannel.open(file, StandardOpenOption.READ), windowSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static final class Fixed extends ByteSource {
+        Fixed(ByteBuffer input) {
+            this.buffer = input;
+            this.limit = input.limit();
+        }
+
+        @Override
+        public int fill(int keepFrom) {
+            return -1;
+        }
+    }
+
+    private abstract static class Streamed extends ByteSource {
+        // Меньше места не читаем: в него может не влезть даже один символ UTF-8
+        private static final int MIN_READ = 8;
+
+        private byte[] bytes;
+        private boolean eof;
+
+        Streamed(int bufferSize) {
+            this.bytes = new byte[bufferSize];
+            this.buffer = ByteBuffer.wrap(bytes);
+        }
+
+        abstract int read(byte[] b, int off, int len) throws IOException;
+
+        @Override
+        public int fill(int keepFrom) {
+            if (eof) {
+                return -1;
+            }
+            if (keepFrom > 0) {
+                System.arraycopy(bytes, keepFrom, bytes, 0, limit - keepFrom);
+                limit -= keepFrom;
+                offset += keepFrom;
+            }
+            if (bytes.length - limit < MIN_READ) {
+                // Незаконченный токен занимает почти весь буфер — растим буфер
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+                buffer = ByteBuffer.wrap(bytes);
+            }
+
+            try {
+                int n;
+                do {
+                    n = read(bytes, limit, bytes.length - limit);
+                } while (n == 0);
+                if (n < 0) {
+                    eof = true;
+                    return keepFrom > 0 ? keepFrom : -1;
+                }
+                limit += n;
+                return keepFrom;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private static final class Mapped extends ByteSource {
+        private static final int MAX_WINDOW_SIZE = Integer.MAX_VALUE - 8;
+
+        private final FileChannel channel;
+        private final long size;
+        private int windowSize;
+
+        Mapped(FileChannel channel, int windowSize) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+            this.windowSize = windowSize;
+            this.buffer = ByteBuffer.allocate(0);
+        }
+
+        @Override
+        public int fill(int keepFrom) {
+            if (offset + limit >= size) {
+                return -1;
+            }
+            if (keepFrom == 0 && limit >= windowSize) {
+                // Токен длиннее окна — расширяем окно
+                windowSize = (int) Math.min(windowSize * 2L, MAX_WINDOW_SIZE);
+            }
+            final long start = offset + keepFrom;
+            final int length = (int) Math.min(windowSize, size - start);
+            try {
+                // Старое отображение освобождается сборщиком мусора
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            offset = start;
+            limit = length;
+            return keepFrom;
+        }
+
+        @Override
+        public void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
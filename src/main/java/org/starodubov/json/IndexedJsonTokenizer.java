@@ -0,0 +1,45 @@
+package org.starodubov.json;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Вторая стадия двухпроходного разбора: вместо посимвольного пропуска
+ * пробелов переходит сразу к следующей позиции из структурного индекса.
+ */
+final class IndexedJsonTokenizer extends Utf8JsonTokenizer {
+    private final byte[] input;
+    private final int[] positions;
+    private int cursor = 0;
+
+    IndexedJsonTokenizer(byte[] input, StructuralIndexer indexer) {
+        super(ByteBuffer.wrap(input));
+        this.input = input;
+        this.positions = indexer.index(input, input.length);
+    }
+
+    @Override
+    void skipWhitespace() {
+        int position = positions[cursor];
+        if (position < input.length) {
+            cursor++;
+        }
+        seek(position);
+    }
+
+    @Override
+    public int next() {
+        int type = super.next();
+        if (type == NUMBER || type == TRUE || type == FALSE || type == NULL) {
+            // Хвост литерала вроде "truex" или "12ab" в индекс не попадает — проверяем явно
+            int end = tokenEnd();
+            if (end != positions[cursor] && !isWhitespace(input[end])) {
+                throw new RuntimeException("Unexpected character: " + (char) input[end] + " at position " + end);
+            }
+        }
+        return type;
+    }
+
+    private static boolean isWhitespace(byte c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+    }
+}
@@ -3,23 +3,40 @@ package org.starodubov.json;
 import java.util.ArrayList;
 import java.util.List;
 
-class JsonArray implements JsonValue {
+public class JsonArray implements JsonValue {
     private final List<JsonValue> elements = new ArrayList<>();
 
     public void add(JsonValue value) {
         elements.add(value);
     }
 
+    void addAll(List<JsonValue> values) {
+        elements.addAll(values);
+    }
+
     public JsonValue get(int index) {
-        return elements.get(index);
+        JsonValue value = elements.get(index);
+        if (value instanceof LazyValue lazy) {
+            value = lazy.materialize();
+            elements.set(index, value);
+        }
+        return value;
     }
 
     public int size() {
         return elements.size();
     }
 
+    // Формат List.toString(); ленивые элементы заменяются разобранными, как в get()
     @Override
     public String toString() {
-        return elements.toString();
+        StringBuilder sb = new StringBuilder().append('[');
+        for (int i = 0; i < elements.size(); i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(get(i));
+        }
+        return sb.append(']').toString();
     }
 }
\ No newline at end of file
@@ -0,0 +1,212 @@
+package org.starodubov.json;
+
+import org.starodubov.io.ByteSource;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import static org.starodubov.json.JsonLexer.*;
+
+/**
+ * Извлекает значения по набору JsonPath за один проход токенизатора.
+ * Дерево строится только для совпавших значений; поддеревья, которые не
+ * могут совпасть ни с одним путём, пролистываются на уровне токенов без
+ * декодирования строк и чисел, поэтому их грамматика проверяется лишь
+ * по парности скобок. Экземпляр неизменяем и может использоваться из
+ * нескольких потоков.
+ */
+public final class JsonExtractor {
+    private static final int[] NONE = new int[0];
+
+    private final JsonPath[] paths;
+
+    public JsonExtractor(JsonPath... paths) {
+        this.paths = paths.clone();
+    }
+
+    public JsonExtractor(String... paths) {
+        this.paths = new JsonPath[paths.length];
+        for (int i = 0; i < paths.length; i++) {
+            this.paths[i] = JsonPath.compile(paths[i]);
+        }
+    }
+
+    /**
+     * Значения по каждому пути в порядке документа; ключи — в порядке путей в конструкторе.
+     */
+    public Map<JsonPath, List<JsonValue>> extract(String json) {
+        return collect(new JsonTokenizer(json));
+    }
+
+    public Map<JsonPath, List<JsonValue>> extract(byte[] json) {
+        return collect(new Utf8JsonTokenizer(ByteBuffer.wrap(json)));
+    }
+
+    public Map<JsonPath, List<JsonValue>> extract(ByteSource source) {
+        return collect(new Utf8JsonTokenizer(source));
+    }
+
+    /**
+     * Отдаёт совпадения по мере чтения, ничего не накапливая.
+     */
+    public void extract(ByteSource source, BiConsumer<JsonPath, JsonValue> sink) {
+        new Walk(new Utf8JsonTokenizer(source), sink).run();
+    }
+
+    private Map<JsonPath, List<JsonValue>> collect(JsonLexer lexer) {
+        Map<JsonPath, List<JsonValue>> result = new LinkedHashMap<>();
+        for (JsonPath path : paths) {
+            result.put(path, new ArrayList<>());
+        }
+        new Walk(lexer, (path, value) -> result.get(path).add(value)).run();
+        return result;
+    }
+
+    // Состояние одного прохода. Активные пути — пары (номер пути, номер шага)
+    // в плоском int[]: путь совпал с текущим положением до этого шага.
+    private final class Walk {
+        private final JsonLexer lexer;
+        private final BiConsumer<JsonPath, JsonValue> sink;
+        private int current;
+
+        Walk(JsonLexer lexer, BiConsumer<JsonPath, JsonValue> sink) {
+            this.lexer = lexer;
+            this.sink = sink;
+        }
+
+        void run() {
+            int[] root = new int[paths.length * 2];
+            for (int i = 0; i < paths.length; i++) {
+                root[2 * i] = i;
+            }
+            current = lexer.next();
+            value(root);
+            if (current != EOF) {
+                throw new RuntimeException("Unexpected token after root value: " + lexer.describeToken(current));
+            }
+        }
+
+        private void value(int[] active) {
+            if (active.length == 0) {
+                skip();
+                return;
+            }
+            for (int k = 0; k < active.length; k += 2) {
+                if (active[k + 1] == paths[active[k]].size()) {
+                    emit(active);
+                    return;
+                }
+            }
+            switch (current) {
+                case LEFT_BRACE -> object(active);
+                case LEFT_BRACKET -> array(active);
+                default -> skip(); // у скаляра нет дочерних значений
+            }
+        }
+
+        // Какой-то путь закончился здесь: значение строится целиком, а пути,
+        // которые идут глубже, вычисляются по уже готовому дереву
+        private void emit(int[] active) {
+            JsonParser parser = new JsonParser();
+            JsonValue value = parser.parseValue(lexer, current);
+            current = parser.currentToken();
+            for (int k = 0; k < active.length; k += 2) {
+                JsonPath path = paths[active[k]];
+                path.select(value, active[k + 1], v -> sink.accept(path, v));
+            }
+        }
+
+        private void object(int[] active) {
+            current = lexer.next();
+            if (current != RIGHT_BRACE) {
+                while (true) {
+                    expect(STRING);
+                    int[] child = NONE;
+                    int n = 0;
+                    for (int k = 0; k < active.length; k += 2) {
+                        JsonPath path = paths[active[k]];
+                        int step = active[k + 1];
+                        if (step < path.size() && path.step(step).matchesKey(lexer)) {
+                            if (child == NONE) {
+                                child = new int[active.length - k];
+                            }
+                            child[n++] = active[k];
+                            child[n++] = step + 1;
+                        }
+                    }
+                    current = lexer.next();
+                    expect(COLON);
+                    current = lexer.next();
+                    value(n == child.length ? child : Arrays.copyOf(child, n));
+                    if (current != COMMA) {
+                        break;
+                    }
+                    current = lexer.next();
+                }
+            }
+            expect(RIGHT_BRACE);
+            current = lexer.next();
+        }
+
+        private void array(int[] active) {
+            current = lexer.next();
+            if (current != RIGHT_BRACKET) {
+                int index = 0;
+                while (true) {
+                    int[] child = NONE;
+                    int n = 0;
+                    for (int k = 0; k < active.length; k += 2) {
+                        JsonPath path = paths[active[k]];
+                        int step = active[k + 1];
+                        if (step < path.size() && path.step(step).matchesIndex(index)) {
+                            if (child == NONE) {
+                                child = new int[active.length - k];
+                            }
+                            child[n++] = active[k];
+                            child[n++] = step + 1;
+                        }
+                    }
+                    value(n == child.length ? child : Arrays.copyOf(child, n));
+                    index++;
+                    if (current != COMMA) {
+                        break;
+                    }
+                    current = lexer.next();
+                }
+            }
+            expect(RIGHT_BRACKET);
+            current = lexer.next();
+        }
+
+        // Пропускает значение по парности скобок, не декодируя его
+        private void skip() {
+            if (current == LEFT_BRACE || current == LEFT_BRACKET) {
+                int level = 1;
+                while (level > 0) {
+                    int t = lexer.next();
+                    if (t == LEFT_BRACE || t == LEFT_BRACKET) {
+                        level++;
+                    } else if (t == RIGHT_BRACE || t == RIGHT_BRACKET) {
+                        level--;
+                    } else if (t == EOF) {
+                        throw new RuntimeException("Unexpected end of document");
+                    }
+                }
+            } else if (current < STRING || current == EOF) {
+                throw new RuntimeException("Unexpected token: " + lexer.describeToken(current));
+            }
+            current = lexer.next();
+        }
+
+        private void expect(int type) {
+            if (current != type) {
+                throw new RuntimeException("Expected " + JsonLexer.typeName(type) + ", got " + lexer.describeToken(current));
+            }
+        }
+    }
+}
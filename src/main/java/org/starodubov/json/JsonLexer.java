@@ -0,0 +1,76 @@
+package org.starodubov.json;
+
+/**
+ * Курсорный лексер JSON: next() возвращает код токена, текст токена
+ * материализуется только по запросу.
+ */
+interface JsonLexer {
+    // Коды токенов, совпадают с порядком JsonTokenizer.Token.Type
+    int LEFT_BRACE = 0;
+    int RIGHT_BRACE = 1;
+    int LEFT_BRACKET = 2;
+    int RIGHT_BRACKET = 3;
+    int COLON = 4;
+    int COMMA = 5;
+    int STRING = 6;
+    int NUMBER = 7;
+    int TRUE = 8;
+    int FALSE = 9;
+    int NULL = 10;
+    int EOF = 11;
+
+    int next();
+
+    // Переставляет курсор на смещение во входе; имеет смысл только для данных целиком в памяти
+    void seek(int position);
+
+    int tokenStart();
+
+    int tokenEnd();
+
+    String lexeme();
+
+    String stringValue();
+
+    // Строка как имя поля: повторяющиеся ключи берутся из KeyCache
+    default String keyValue() {
+        return stringValue();
+    }
+
+    // Сравнивает текущую строку со значением, по возможности не создавая String
+    default boolean stringEquals(String value) {
+        return stringValue().equals(value);
+    }
+
+    double numberValue();
+
+    // Точное значение числа: long для целых литералов, иначе десятичное
+    JsonNumber jsonNumber();
+
+    // Целый литерал в диапазоне long, его значение — longNumber()
+    boolean isLongNumber();
+
+    long longNumber();
+
+    // Копирование текста токена в общий буфер без промежуточного String (см. JsonTape);
+    // в dst должно быть место под tokenEnd() - tokenStart() символов, возвращается число записанных
+    default int copyString(char[] dst, int offset) {
+        String s = stringValue();
+        s.getChars(0, s.length(), dst, offset);
+        return s.length();
+    }
+
+    default int copyLexeme(char[] dst, int offset) {
+        String s = lexeme();
+        s.getChars(0, s.length(), dst, offset);
+        return s.length();
+    }
+
+    default String describeToken(int type) {
+        return typeName(type) + "(" + lexeme() + ")";
+    }
+
+    static String typeName(int type) {
+        return JsonTokenizer.Token.Type.values()[type].name();
+    }
+}
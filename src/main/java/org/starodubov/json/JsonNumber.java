@@ -1,16 +1,190 @@
 package org.starodubov.json;
 
-public class JsonNumber implements JsonValue {
-    private final double value;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * Число без потери точности. Целые литералы, помещающиеся в long, хранятся
+ * примитивом; дробные — немасштабированным long и порядком, как в BigDecimal;
+ * длиннее 19 значащих цифр — сразу BigDecimal. double и BigDecimal
+ * вычисляются по запросу.
+ */
+public class JsonNumber extends Number implements JsonValue {
+    @java.io.Serial
+    private static final long serialVersionUID = 1L;
+    private static final int LONG = 0;
+    private static final int SCALED = 1;
+    private static final int DOUBLE = 2;
+    private static final int DECIMAL = 3;
+
+    private final int kind;
+    // LONG: значение; SCALED: unscaled * 10^-scale
+    private final long unscaled;
+    private final int scale;
+    private final double dbl;
+    // DECIMAL: значение; SCALED и DOUBLE: кэш decimalValue(), гонка безвредна
+    private BigDecimal decimal;
 
     public JsonNumber(double value) {
-        this.value = value;
+        this(DOUBLE, 0, 0, value, null);
+    }
+
+    public JsonNumber(long value) {
+        this(LONG, value, 0, 0, null);
+    }
+
+    public JsonNumber(BigDecimal value) {
+        this(DECIMAL, 0, 0, 0, value);
     }
 
-    public double getValue() { return value; }
+    JsonNumber(long unscaled, int scale) {
+        this(SCALED, unscaled, scale, 0, null);
+    }
+
+    private JsonNumber(int kind, long unscaled, int scale, double dbl, BigDecimal decimal) {
+        this.kind = kind;
+        this.unscaled = unscaled;
+        this.scale = scale;
+        this.dbl = dbl;
+        this.decimal = decimal;
+    }
+
+    /**
+     * Число из разобранного лексером литерала: беззнаковой мантиссы не длиннее
+     * 19 цифр и десятичного порядка. integerLiteral — в литерале не было '.' и 'e'.
+     */
+    static JsonNumber of(long mantissa, int exp10, boolean negative, boolean integerLiteral) {
+        if (fitsLong(mantissa, exp10, negative, integerLiteral)) {
+            return new JsonNumber(negative ? -mantissa : mantissa);
+        }
+        if (mantissa == 0 && negative) {
+            return new JsonNumber(-0.0);
+        }
+        if (mantissa >= 0) {
+            return new JsonNumber(negative ? -mantissa : mantissa, -exp10);
+        }
+        // Мантисса больше Long.MAX_VALUE
+        BigDecimal value = new BigDecimal(new BigInteger(Long.toUnsignedString(mantissa)), -exp10);
+        return new JsonNumber(negative ? value.negate() : value);
+    }
+
+    // Целый литерал, который хранится как long; -0 остаётся double, чтобы не потерять знак
+    static boolean fitsLong(long mantissa, int exp10, boolean negative, boolean integerLiteral) {
+        if (!integerLiteral || exp10 != 0) {
+            return false;
+        }
+        if (negative) {
+            return mantissa > 0 || mantissa == Long.MIN_VALUE;
+        }
+        return mantissa >= 0;
+    }
+
+    /**
+     * Число из лексемы, которую нельзя собрать из мантиссы без потери цифр.
+     */
+    static JsonNumber of(String lexeme) {
+        try {
+            return new JsonNumber(new BigDecimal(lexeme));
+        } catch (NumberFormatException e) {
+            // Порядок не помещается в int
+            return new JsonNumber(Double.parseDouble(lexeme));
+        }
+    }
+
+    /**
+     * Хранится ли значение как long, то есть было целым литералом в диапазоне long.
+     */
+    public boolean isLong() {
+        return kind == LONG;
+    }
+
+    // false только для NaN и бесконечностей, созданных из double
+    boolean isFinite() {
+        return kind != DOUBLE || Double.isFinite(dbl);
+    }
+
+    public double getValue() {
+        return doubleValue();
+    }
+
+    @Override
+    public double doubleValue() {
+        return switch (kind) {
+            case LONG -> (double) unscaled;
+            case SCALED -> {
+                double d = NumberConverter.toDouble(Math.abs(unscaled), -scale, unscaled < 0);
+                yield Double.isNaN(d) ? decimalValue().doubleValue() : d;
+            }
+            case DOUBLE -> dbl;
+            default -> decimal.doubleValue();
+        };
+    }
+
+    @Override
+    public float floatValue() {
+        return (float) doubleValue();
+    }
+
+    /**
+     * Целая часть значения, как у Number: дробь отбрасывается, старшие биты теряются.
+     */
+    @Override
+    public long longValue() {
+        return switch (kind) {
+            case LONG -> unscaled;
+            case DOUBLE -> (long) dbl;
+            default -> decimalValue().longValue();
+        };
+    }
+
+    @Override
+    public int intValue() {
+        return (int) longValue();
+    }
+
+    /**
+     * Значение как long; ArithmeticException, если есть дробная часть или оно не помещается.
+     */
+    public long longValueExact() {
+        return kind == LONG ? unscaled : decimalValue().longValueExact();
+    }
+
+    public BigInteger bigIntegerValue() {
+        return kind == LONG ? BigInteger.valueOf(unscaled) : decimalValue().toBigInteger();
+    }
+
+    /**
+     * Точное значение литерала; для чисел, созданных из double, — кратчайшее десятичное представление.
+     */
+    public BigDecimal decimalValue() {
+        BigDecimal d = decimal;
+        if (d == null) {
+            d = switch (kind) {
+                case LONG -> BigDecimal.valueOf(unscaled);
+                case SCALED -> BigDecimal.valueOf(unscaled, scale);
+                default -> BigDecimal.valueOf(dbl);
+            };
+            decimal = d;
+        }
+        return d;
+    }
+
+    // Запись без промежуточной строки для всего, кроме BigDecimal
+    void writeTo(JsonWriter out) {
+        switch (kind) {
+            case LONG -> out.writeLong(unscaled);
+            case SCALED -> out.writeScaled(unscaled, scale);
+            case DOUBLE -> out.writeDouble(dbl);
+            default -> out.writeAscii(decimal.toString());
+        }
+    }
 
     @Override
     public String toString() {
-        return Double.toString(value);
+        return switch (kind) {
+            case LONG -> Long.toString(unscaled);
+            case DOUBLE -> Double.toString(dbl);
+            default -> decimalValue().toString();
+        };
     }
 }
@@ -1,26 +1,166 @@
 package org.starodubov.json;
 
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
+/**
+ * Поля хранятся в двух параллельных массивах в порядке добавления. В
+ * маленьких объектах ключ ищется перебором: ключи из KeyCache обычно
+ * совпадают по ссылке, и equals отвечает сразу. Начиная с HASH_THRESHOLD
+ * полей строится индекс с открытой адресацией. Повторный add того же
+ * ключа заменяет значение, сохраняя позицию, как LinkedHashMap.
+ */
 public class JsonObject implements JsonValue {
-    private final Map<String, JsonValue> members = new LinkedHashMap<>();
+    private static final String[] NO_KEYS = new String[0];
+    private static final JsonValue[] NO_VALUES = new JsonValue[0];
+    private static final int HASH_THRESHOLD = 8;
+
+    private String[] keys = NO_KEYS;
+    private JsonValue[] values = NO_VALUES;
+    private int size;
+    // Номер поля + 1 по хэшу ключа, 0 — пустая ячейка; null, пока полей мало
+    private int[] index;
 
     public void add(String key, JsonValue value) {
-        members.put(key, value);
+        int i = indexOf(key);
+        if (i >= 0) {
+            values[i] = value;
+            return;
+        }
+        if (size == keys.length) {
+            int capacity = Math.max(4, size * 2);
+            keys = Arrays.copyOf(keys, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+        keys[size] = key;
+        values[size] = value;
+        size++;
+        if (index != null && size * 2 <= index.length) {
+            insert(index, key, size - 1);
+        } else if (size >= HASH_THRESHOLD) {
+            rebuildIndex();
+        }
     }
 
     public JsonValue get(String key) {
-        return members.get(key);
+        int i = indexOf(key);
+        return i < 0 ? null : valueAt(i);
     }
 
+    /**
+     * Ключи в порядке добавления; представление только для чтения.
+     */
     public Set<String> keys() {
-        return members.keySet();
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<String> iterator() {
+                return new Iterator<>() {
+                    private int next;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < size;
+                    }
+
+                    @Override
+                    public String next() {
+                        if (next >= size) {
+                            throw new NoSuchElementException();
+                        }
+                        return keys[next++];
+                    }
+                };
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return o instanceof String key && indexOf(key) >= 0;
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Поле по номеру в порядке добавления, для JsonWriter
+    String keyAt(int i) {
+        return keys[i];
+    }
+
+    JsonValue valueAt(int i) {
+        JsonValue value = values[i];
+        if (value instanceof LazyValue lazy) {
+            value = lazy.materialize();
+            values[i] = value;
+        }
+        return value;
+    }
+
+    private int indexOf(String key) {
+        if (index == null) {
+            for (int i = 0; i < size; i++) {
+                if (keys[i].equals(key)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+        int mask = index.length - 1;
+        for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+            int i = index[slot] - 1;
+            if (i < 0) {
+                return -1;
+            }
+            if (keys[i].equals(key)) {
+                return i;
+            }
+        }
+    }
+
+    private void rebuildIndex() {
+        int[] table = new int[Integer.highestOneBit(size * 4 - 1)];
+        for (int i = 0; i < size; i++) {
+            insert(table, keys[i], i);
+        }
+        index = table;
+    }
+
+    private static void insert(int[] table, String key, int i) {
+        int mask = table.length - 1;
+        int slot = hash(key) & mask;
+        while (table[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = i + 1;
+    }
+
+    private static int hash(String key) {
+        int h = key.hashCode();
+        return h ^ h >>> 16;
     }
 
+    // Тот же формат, что у LinkedHashMap.toString()
     @Override
     public String toString() {
-        return members.toString();
+        if (size == 0) {
+            return "{}";
+        }
+        StringBuilder sb = new StringBuilder().append('{');
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(keys[i]).append('=').append(valueAt(i));
+        }
+        return sb.append('}').toString();
     }
 }
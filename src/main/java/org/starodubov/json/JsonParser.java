@@ -1,92 +1,377 @@
 package org.starodubov.json;
 
+import org.starodubov.io.ByteSource;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.starodubov.json.JsonLexer.*;
+
+/**
+ * Парсер не потокобезопасен: экземпляр разбирает один документ за раз.
+ * Между вызовами его можно переиспользовать (например, через ThreadLocal
+ * или пул): токенизаторы и их буферы декодирования живут в экземпляре,
+ * поэтому повторный parse аллоцирует только сами значения. Результат не
+ * ссылается на буферы парсера, а ссылка на вход отпускается по завершении
+ * разбора, в том числе с ошибкой. Исключения — parseLazy, чьи значения
+ * держат собственный токенизатор, и parseParallel, которая берёт у
+ * экземпляра только maxDepth.
+ * <p>
+ * Вложенность разбирается без рекурсии, на явном стеке контейнеров, так что
+ * глубокий документ не приводит к StackOverflowError. Глубина ограничена
+ * maxDepth (по умолчанию 1000, свойство org.starodubov.json.maxDepth):
+ * документ глубже отвергается исключением. Предел действует во всех
+ * способах разбора, включая parseLazy и parseParallel. Рекурсивные обходы готового
+ * дерева — toString, JsonWriter — рассчитаны на глубины такого порядка.
+ */
 public class JsonParser {
-    private JsonTokenizer tokenizer;
-    private JsonTokenizer.Token currentToken;
+    // Двухпроходный разбор byte[] через структурный индекс, см. StructuralIndexer
+    static final boolean STRUCTURAL_INDEX = Boolean.getBoolean("org.starodubov.json.structuralIndex");
+    static final int DEFAULT_MAX_DEPTH = Integer.getInteger("org.starodubov.json.maxDepth", 1000);
+
+    private final int maxDepth;
+    private JsonLexer tokenizer;
+    private int currentToken;
+    // Стек открытых контейнеров и ключей, под которые лягут их текущие значения
+    private JsonValue[] containers = new JsonValue[16];
+    private String[] keys = new String[16];
+    private int depth;
+    // Контейнеры вокруг разбираемых значений, которых нет на стеке: 1 для элементов parseElements()
+    private int baseDepth;
+    // Переиспользуемые между вызовами токенизаторы, создаются при первом разборе
+    private JsonTokenizer stringLexer;
+    private Utf8JsonTokenizer utf8Lexer;
+
+    public JsonParser() {
+        this(DEFAULT_MAX_DEPTH);
+    }
 
-    JsonValue parse(String json) {
-        this.tokenizer = new JsonTokenizer(json);
-        this.currentToken = tokenizer.nextToken();
-        JsonValue result = parseValue();
-        if (currentToken.type != JsonTokenizer.Token.Type.EOF) {
-            throw new RuntimeException("Unexpected token after root value: " + currentToken);
+    public JsonParser(int maxDepth) {
+        if (maxDepth < 1) {
+            throw new IllegalArgumentException("maxDepth must be positive: " + maxDepth);
         }
-        return result;
+        this.maxDepth = maxDepth;
     }
 
-    private boolean consume(JsonTokenizer.Token.Type expectedType) {
-        if (currentToken.type != expectedType) {
-            throw new RuntimeException("Expected " + expectedType + ", got " + currentToken.type);
+    public JsonValue parse(String json) {
+        try {
+            return parse(stringLexer(json));
+        } finally {
+            stringLexer.release();
         }
-        currentToken = tokenizer.nextToken();
-        return true;
     }
 
-    private JsonValue parseValue() {
-        return switch (currentToken.type) {
-            case LEFT_BRACE -> parseObject();
-            case LEFT_BRACKET -> parseArray();
-            case STRING -> {
-                String s = currentToken.lexeme;
-                consume(JsonTokenizer.Token.Type.STRING);
-                yield new JsonString(s);
-            }
-            case NUMBER -> {
-                double n = Double.parseDouble(currentToken.lexeme);
-                consume(JsonTokenizer.Token.Type.NUMBER);
-                yield new JsonNumber(n);
-            }
-            case TRUE -> {
-                consume(JsonTokenizer.Token.Type.TRUE);
-                yield new JsonBoolean(true);
-            }
-            case FALSE -> {
-                consume(JsonTokenizer.Token.Type.FALSE);
-                yield new JsonBoolean(false);
-            }
-            case NULL -> {
-                consume(JsonTokenizer.Token.Type.NULL);
-                yield JsonNull.INSTANCE;
+    public JsonValue parse(byte[] json) {
+        if (STRUCTURAL_INDEX) {
+            return parseIndexed(json, StructuralIndexer.get());
+        }
+        return parse(ByteBuffer.wrap(json));
+    }
+
+    /**
+     * Ленивый разбор: сразу разбирается только верхний уровень документа,
+     * вложенные объекты, массивы и скаляры запоминаются смещениями во входе
+     * и декодируются при первом обращении через JsonObject.get/JsonArray.get.
+     * Непрочитанные поддеревья только пролистываются токенизатором, поэтому
+     * их грамматика не проверяется. Первое обращение к ленивому значению
+     * меняет контейнер, так что дерево нельзя читать из нескольких потоков
+     * без внешней синхронизации.
+     */
+    public JsonValue parseLazy(String json) {
+        return LazyValue.parse(() -> new JsonTokenizer(json), maxDepth);
+    }
+
+    public JsonValue parseLazy(byte[] json) {
+        return LazyValue.parse(() -> new Utf8JsonTokenizer(ByteBuffer.wrap(json)), maxDepth);
+    }
+
+    /**
+     * Разбор в ленту JsonTape: два массива вместо дерева объектов,
+     * JsonTape.root() даёт представления TapeObject/TapeArray над ней.
+     */
+    public JsonTape parseTape(String json) {
+        try {
+            return JsonTape.build(stringLexer(json), json.length(), maxDepth);
+        } finally {
+            stringLexer.release();
+        }
+    }
+
+    public JsonTape parseTape(byte[] json) {
+        try {
+            return JsonTape.build(utf8Lexer(ByteBuffer.wrap(json)), json.length, maxDepth);
+        } finally {
+            utf8Lexer.release();
+        }
+    }
+
+    public JsonTape parseTape(ByteSource source) {
+        try {
+            return JsonTape.build(utf8Lexer(source), 0, maxDepth);
+        } finally {
+            utf8Lexer.release();
+        }
+    }
+
+    JsonValue parseIndexed(byte[] json, StructuralIndexer indexer) {
+        return parse(new IndexedJsonTokenizer(json, indexer));
+    }
+
+    /**
+     * Разбирает UTF-8 байты между position и limit буфера, не меняя его позицию.
+     * Строки декодируются только при построении JsonString.
+     */
+    public JsonValue parse(ByteBuffer json) {
+        try {
+            return parse(utf8Lexer(json));
+        } finally {
+            utf8Lexer.release();
+        }
+    }
+
+    /**
+     * Разбирает файл, отображая его в память скользящим окном: файл не читается
+     * в кучу целиком и может быть больше 2 ГБ.
+     */
+    public JsonValue parse(Path file) {
+        try (ByteSource source = ByteSource.map(file)) {
+            return parse(source);
+        }
+    }
+
+    public JsonValue parse(ByteSource source) {
+        try {
+            return parse(utf8Lexer(source));
+        } finally {
+            utf8Lexer.release();
+        }
+    }
+
+    /**
+     * Разбор большого массива верхнего уровня на нескольких потоках: вход
+     * режется предварительным проходом на диапазоны элементов, которые
+     * разбираются параллельно, см. ParallelArrayParser. Документ с другим
+     * корнем или небольшой вход разбирается как parse(). От экземпляра
+     * берётся только maxDepth, и метод можно вызывать из разных потоков.
+     */
+    public JsonValue parseParallel(ByteBuffer json) {
+        return parseParallel(json, ForkJoinPool.commonPool());
+    }
+
+    public JsonValue parseParallel(ByteBuffer json, Executor executor) {
+        return ParallelArrayParser.parse(json, executor, ParallelArrayParser.rangeSize(json.remaining()), maxDepth);
+    }
+
+    public JsonValue parseParallel(Path file) {
+        return parseParallel(file, ForkJoinPool.commonPool());
+    }
+
+    public JsonValue parseParallel(Path file, Executor executor) {
+        return ParallelArrayParser.parse(file, executor, ParallelArrayParser.rangeSize(file.toFile().length()), maxDepth);
+    }
+
+    private JsonTokenizer stringLexer(String json) {
+        if (stringLexer == null) {
+            stringLexer = new JsonTokenizer(json);
+        } else {
+            stringLexer.reset(json);
+        }
+        return stringLexer;
+    }
+
+    private Utf8JsonTokenizer utf8Lexer(ByteBuffer json) {
+        if (utf8Lexer == null) {
+            utf8Lexer = new Utf8JsonTokenizer(json);
+        } else {
+            utf8Lexer.reset(json);
+        }
+        return utf8Lexer;
+    }
+
+    private Utf8JsonTokenizer utf8Lexer(ByteSource source) {
+        if (utf8Lexer == null) {
+            utf8Lexer = new Utf8JsonTokenizer(source);
+        } else {
+            utf8Lexer.reset(source);
+        }
+        return utf8Lexer;
+    }
+
+    private JsonValue parse(JsonLexer lexer) {
+        this.tokenizer = lexer;
+        try {
+            this.currentToken = tokenizer.next();
+            JsonValue result = parseValue();
+            if (currentToken != EOF) {
+                throw new RuntimeException("Unexpected token after root value: " + tokenizer.describeToken(currentToken));
             }
-            default -> throw new RuntimeException("Unexpected token: " + currentToken);
-        };
+            return result;
+        } finally {
+            tokenizer = null;
+        }
+    }
+
+    // Разбирает одно значение, первый токен которого уже прочитан из lexer;
+    // после разбора currentToken() — токен, следующий за значением
+    JsonValue parseValue(JsonLexer lexer, int firstToken) {
+        return parseValue(lexer, firstToken, 0);
     }
 
-    private JsonObject parseObject() {
-        consume(JsonTokenizer.Token.Type.LEFT_BRACE);
-        JsonObject obj = new JsonObject();
+    // То же внутри enclosing открытых контейнеров: они тоже считаются в maxDepth
+    JsonValue parseValue(JsonLexer lexer, int firstToken, int enclosing) {
+        this.tokenizer = lexer;
+        this.currentToken = firstToken;
+        baseDepth = enclosing;
+        try {
+            return parseValue();
+        } finally {
+            baseDepth = 0;
+        }
+    }
 
-        if (currentToken.type != JsonTokenizer.Token.Type.RIGHT_BRACE) {
-            do {
-                if (currentToken.type != JsonTokenizer.Token.Type.STRING) {
-                    throw new RuntimeException("Expected string key, got " + currentToken);
+    // Разбирает элементы массива без скобок — значения через запятую до конца входа;
+    // сам массив считается открытым, так что глубина элементов отсчитывается от корня
+    void parseElements(JsonLexer lexer, List<JsonValue> out, boolean allowEmpty) {
+        this.tokenizer = lexer;
+        this.currentToken = lexer.next();
+        if (allowEmpty && currentToken == EOF) {
+            return;
+        }
+        baseDepth = 1;
+        try {
+            while (true) {
+                out.add(parseValue());
+                if (currentToken == EOF) {
+                    return;
                 }
-                String key = currentToken.lexeme;
-                consume(JsonTokenizer.Token.Type.STRING);
+                consume(COMMA);
+            }
+        } finally {
+            baseDepth = 0;
+        }
+    }
+
+    int currentToken() {
+        return currentToken;
+    }
 
-                consume(JsonTokenizer.Token.Type.COLON);
+    private boolean consume(int expectedType) {
+        if (currentToken != expectedType) {
+            throw new RuntimeException("Expected " + typeName(expectedType) + ", got " + typeName(currentToken));
+        }
+        currentToken = tokenizer.next();
+        return true;
+    }
 
-                JsonValue value = parseValue();
-                obj.add(key, value);
-            } while (currentToken.type == JsonTokenizer.Token.Type.COMMA && consume(JsonTokenizer.Token.Type.COMMA));
+    // Итеративный разбор значения: открытые контейнеры лежат на явном стеке,
+    // поэтому глубина документа ограничена maxDepth, а не стеком потока
+    private JsonValue parseValue() {
+        try {
+            while (true) {
+                JsonValue value;
+                switch (currentToken) {
+                    case LEFT_BRACE -> {
+                        checkDepth();
+                        currentToken = tokenizer.next();
+                        if (currentToken != RIGHT_BRACE) {
+                            push(new JsonObject());
+                            key();
+                            continue;
+                        }
+                        currentToken = tokenizer.next();
+                        value = new JsonObject();
+                    }
+                    case LEFT_BRACKET -> {
+                        checkDepth();
+                        currentToken = tokenizer.next();
+                        if (currentToken != RIGHT_BRACKET) {
+                            push(new JsonArray());
+                            continue;
+                        }
+                        currentToken = tokenizer.next();
+                        value = new JsonArray();
+                    }
+                    default -> {
+                        value = scalarValue(tokenizer, currentToken);
+                        currentToken = tokenizer.next();
+                    }
+                }
+                // Кладём готовое значение в контейнер на вершине стека и закрываем
+                // кончившиеся контейнеры, пока не встретится запятая
+                while (true) {
+                    if (depth == 0) {
+                        return value;
+                    }
+                    int top = depth - 1;
+                    JsonValue container = containers[top];
+                    if (container instanceof JsonObject obj) {
+                        obj.add(keys[top], value);
+                        if (currentToken == COMMA) {
+                            currentToken = tokenizer.next();
+                            key();
+                            break;
+                        }
+                        consume(RIGHT_BRACE);
+                    } else {
+                        ((JsonArray) container).add(value);
+                        if (currentToken == COMMA) {
+                            currentToken = tokenizer.next();
+                            break;
+                        }
+                        consume(RIGHT_BRACKET);
+                    }
+                    containers[top] = null;
+                    keys[top] = null;
+                    depth = top;
+                    value = container;
+                }
+            }
+        } finally {
+            if (depth > 0) {
+                Arrays.fill(containers, 0, depth, null);
+                Arrays.fill(keys, 0, depth, null);
+                depth = 0;
+            }
         }
+    }
 
-        consume(JsonTokenizer.Token.Type.RIGHT_BRACE);
-        return obj;
+    // Ключ и двоеточие очередного члена объекта на вершине стека
+    private void key() {
+        if (currentToken != STRING) {
+            throw new RuntimeException("Expected string key, got " + tokenizer.describeToken(currentToken));
+        }
+        keys[depth - 1] = tokenizer.keyValue();
+        currentToken = tokenizer.next();
+        consume(COLON);
     }
 
-    private JsonArray parseArray() {
-        consume(JsonTokenizer.Token.Type.LEFT_BRACKET);
-        JsonArray arr = new JsonArray();
+    private void checkDepth() {
+        if (baseDepth + depth == maxDepth) {
+            throw new RuntimeException("Maximum nesting depth " + maxDepth + " exceeded");
+        }
+    }
 
-        if (currentToken.type != JsonTokenizer.Token.Type.RIGHT_BRACKET) {
-            do {
-                JsonValue value = parseValue();
-                arr.add(value);
-            } while (currentToken.type == JsonTokenizer.Token.Type.COMMA && consume(JsonTokenizer.Token.Type.COMMA));
+    private void push(JsonValue container) {
+        if (depth == containers.length) {
+            containers = Arrays.copyOf(containers, depth * 2);
+            keys = Arrays.copyOf(keys, depth * 2);
         }
+        containers[depth++] = container;
+    }
 
-        consume(JsonTokenizer.Token.Type.RIGHT_BRACKET);
-        return arr;
+    // Значение скалярного токена, на котором стоит lexer
+    static JsonValue scalarValue(JsonLexer lexer, int token) {
+        return switch (token) {
+            case STRING -> new JsonString(lexer.stringValue());
+            case NUMBER -> lexer.jsonNumber();
+            case TRUE -> new JsonBoolean(true);
+            case FALSE -> new JsonBoolean(false);
+            case NULL -> JsonNull.INSTANCE;
+            default -> throw new RuntimeException("Unexpected token: " + lexer.describeToken(token));
+        };
     }
-}
\ No newline at end of file
+}
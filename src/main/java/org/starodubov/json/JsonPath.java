@@ -0,0 +1,161 @@
+package org.starodubov.json;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Скомпилированный путь вида $.user.id, $.items[*].price, $['a b'][0], $.*.
+ * Поддерживаются только поля, индексы массивов и подстановка *.
+ */
+public final class JsonPath {
+
+    // name != null — поле объекта; index >= 0 — элемент массива; иначе *
+    record Step(String name, int index) {
+        static final Step WILDCARD = new Step(null, -1);
+
+        boolean isWildcard() {
+            return name == null && index < 0;
+        }
+
+        boolean matchesKey(JsonLexer lexer) {
+            return isWildcard() || (name != null && lexer.stringEquals(name));
+        }
+
+        boolean matchesIndex(int i) {
+            return isWildcard() || index == i;
+        }
+    }
+
+    private final String expression;
+    private final Step[] steps;
+
+    private JsonPath(String expression, Step[] steps) {
+        this.expression = expression;
+        this.steps = steps;
+    }
+
+    public static JsonPath compile(String expression) {
+        if (expression.isEmpty() || expression.charAt(0) != '$') {
+            throw new RuntimeException("Path must start with '$': " + expression);
+        }
+        List<Step> steps = new ArrayList<>();
+        int pos = 1;
+        while (pos < expression.length()) {
+            char c = expression.charAt(pos);
+            if (c == '.') {
+                int start = ++pos;
+                while (pos < expression.length() && expression.charAt(pos) != '.' && expression.charAt(pos) != '[') {
+                    pos++;
+                }
+                if (start == pos) {
+                    throw new RuntimeException("Empty field name at position " + start + ": " + expression);
+                }
+                String name = expression.substring(start, pos);
+                steps.add(name.equals("*") ? Step.WILDCARD : new Step(name, -1));
+            } else if (c == '[') {
+                int end = expression.indexOf(']', pos);
+                if (end < 0) {
+                    throw new RuntimeException("Unterminated '[' at position " + pos + ": " + expression);
+                }
+                String inner = expression.substring(pos + 1, end).trim();
+                if (inner.equals("*")) {
+                    steps.add(Step.WILDCARD);
+                } else if (inner.length() >= 2 && (inner.charAt(0) == '\'' || inner.charAt(0) == '"')
+                        && inner.charAt(inner.length() - 1) == inner.charAt(0)) {
+                    steps.add(new Step(inner.substring(1, inner.length() - 1), -1));
+                } else {
+                    try {
+                        steps.add(new Step(null, Integer.parseInt(inner)));
+                    } catch (NumberFormatException e) {
+                        throw new RuntimeException("Invalid index '" + inner + "': " + expression);
+                    }
+                    if (steps.getLast().index() < 0) {
+                        throw new RuntimeException("Negative index '" + inner + "': " + expression);
+                    }
+                }
+                pos = end + 1;
+            } else {
+                throw new RuntimeException("Unexpected character '" + c + "' at position " + pos + ": " + expression);
+            }
+        }
+        return new JsonPath(expression, steps.toArray(new Step[0]));
+    }
+
+    int size() {
+        return steps.length;
+    }
+
+    Step step(int i) {
+        return steps[i];
+    }
+
+    /**
+     * Все значения по этому пути в уже построенном дереве, в порядке документа.
+     */
+    public List<JsonValue> select(JsonValue root) {
+        List<JsonValue> result = new ArrayList<>();
+        select(root, 0, result::add);
+        return result;
+    }
+
+    void select(JsonValue value, int from, Consumer<JsonValue> sink) {
+        if (from == steps.length) {
+            sink.accept(value);
+            return;
+        }
+        Step step = steps[from];
+        if (value instanceof JsonObject obj) {
+            if (step.name() != null) {
+                JsonValue child = obj.get(step.name());
+                if (child != null) {
+                    select(child, from + 1, sink);
+                }
+            } else if (step.isWildcard()) {
+                for (String key : obj.keys()) {
+                    select(obj.get(key), from + 1, sink);
+                }
+            }
+        } else if (value instanceof JsonArray arr) {
+            if (step.isWildcard()) {
+                for (int i = 0; i < arr.size(); i++) {
+                    select(arr.get(i), from + 1, sink);
+                }
+            } else if (step.index() >= 0 && step.index() < arr.size()) {
+                select(arr.get(step.index()), from + 1, sink);
+            }
+        } else if (value instanceof TapeObject obj) {
+            if (step.name() != null) {
+                JsonValue child = obj.get(step.name());
+                if (child != null) {
+                    select(child, from + 1, sink);
+                }
+            } else if (step.isWildcard()) {
+                for (String key : obj.keys()) {
+                    select(obj.get(key), from + 1, sink);
+                }
+            }
+        } else if (value instanceof TapeArray arr) {
+            if (step.isWildcard()) {
+                arr.forEach(element -> select(element, from + 1, sink));
+            } else if (step.index() >= 0 && step.index() < arr.size()) {
+                select(arr.get(step.index()), from + 1, sink);
+            }
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof JsonPath other && expression.equals(other.expression);
+    }
+
+    @Override
+    public int hashCode() {
+        return expression.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+}
@@ -0,0 +1,374 @@
+package org.starodubov.json;
+
+import org.starodubov.io.ByteSource;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+import static org.starodubov.json.JsonLexer.*;
+
+/**
+ * Инкрементальный push-парсер для неблокирующего ввода: байты подаются
+ * кусками произвольной длины через feed(), законченные значения верхнего
+ * уровня сразу отдаются в sink. Значения верхнего уровня могут идти подряд
+ * через пробелы (как в NDJSON). Между вызовами сохраняются стек
+ * вложенности и байты незаконченного токена — строки, числа, литерала, —
+ * поэтому кусок может оборваться где угодно, в том числе посреди символа
+ * UTF-8 или escape-последовательности. Число в конце ввода нельзя отличить
+ * от незаконченного, поэтому конец ввода сообщается вызовом end().
+ * <p>
+ * Незаконченная строка или число не токенизируются заново с каждым куском:
+ * новые байты только досматриваются в поисках конца токена (с учётом
+ * обратной косой черты в строке), и токенизатор разбирает токен один раз,
+ * когда он целиком в буфере. Буфер дописывается в конец и сжимается или
+ * растёт только при заполнении, так что большое значение, поданное мелкими
+ * кусками, разбирается за линейное время.
+ * <p>
+ * Экземпляр не потокобезопасен. После ошибки разбора или для следующего
+ * тела запроса парсер сбрасывается вызовом reset(), буферы при этом
+ * сохраняются.
+ */
+public final class JsonPushParser {
+
+    public enum Status {
+        // Значение не закончено, нужен следующий кусок
+        NEED_MORE_INPUT,
+        // Все поданные байты разобраны, незаконченных значений нет
+        COMPLETE
+    }
+
+    // Состояния контейнера на стеке: чего ждём следующим
+    private static final int ARRAY_FIRST = 0;
+    private static final int ARRAY_VALUE = 1;
+    private static final int ARRAY_NEXT = 2;
+    private static final int OBJECT_FIRST = 3;
+    private static final int OBJECT_KEY = 4;
+    private static final int OBJECT_COLON = 5;
+    private static final int OBJECT_VALUE = 6;
+    private static final int OBJECT_NEXT = 7;
+
+    // Вид незаконченного токена с mark
+    private static final int PENDING_NONE = 0;
+    private static final int PENDING_STRING = 1;
+    private static final int PENDING_NUMBER = 2;
+    // Литерал true/false/null: не длиннее пяти байт, его проще разобрать заново
+    private static final int PENDING_OTHER = 3;
+
+    private final Consumer<? super JsonValue> sink;
+    private final int maxDepth;
+    private final Input input = new Input();
+    private final Utf8JsonTokenizer lexer = new Utf8JsonTokenizer(input);
+
+    private JsonValue[] containers = new JsonValue[16];
+    private int[] states = new int[16];
+    private String[] keys = new String[16];
+    private int depth;
+    // Конец последнего разобранного токена в буфере ввода, после обрыва — начало незаконченного
+    private int mark;
+    // Незаконченный токен: вид, докуда просмотрен и была ли последней непарная '\\' в строке
+    private int pending;
+    private int scan;
+    private boolean escaped;
+    // Байты, просмотренные scanPending и отданные токенизатору; для проверки линейности в тестах
+    long scanned;
+
+    public JsonPushParser(Consumer<? super JsonValue> sink) {
+        this(sink, JsonParser.DEFAULT_MAX_DEPTH);
+    }
+
+    /**
+     * maxDepth — предельная вложенность, как у JsonParser: без неё стек
+     * рос бы без ограничений на потоке из одних открывающих скобок.
+     */
+    public JsonPushParser(Consumer<? super JsonValue> sink, int maxDepth) {
+        if (maxDepth < 1) {
+            throw new IllegalArgumentException("maxDepth must be positive: " + maxDepth);
+        }
+        this.sink = sink;
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Разбирает оставшиеся байты chunk (позиция сдвигается до limit).
+     * Буфер можно переиспользовать сразу после возврата.
+     */
+    public Status feed(ByteBuffer chunk) {
+        if (input.ended) {
+            throw new IllegalStateException("Input already ended");
+        }
+        int shift = input.append(chunk, mark);
+        mark -= shift;
+        scan -= shift;
+        return run();
+    }
+
+    /**
+     * Конец ввода: дочитывает число в самом конце; незаконченное значение — ошибка.
+     */
+    public void end() {
+        input.ended = true;
+        run();
+        if (depth > 0) {
+            throw new RuntimeException("Unexpected end of input inside " + (states[depth - 1] < OBJECT_FIRST ? "array" : "object"));
+        }
+    }
+
+    /**
+     * Забывает незаконченное значение, чтобы разбирать новый ввод.
+     */
+    public void reset() {
+        input.clear();
+        Arrays.fill(containers, 0, depth, null);
+        Arrays.fill(keys, 0, depth, null);
+        depth = 0;
+        mark = 0;
+        pending = PENDING_NONE;
+    }
+
+    private Status run() {
+        if (pending != PENDING_NONE && !scanPending() && !input.ended) {
+            return Status.NEED_MORE_INPUT;
+        }
+        pending = PENDING_NONE;
+        scanned += input.limit() - mark;
+        lexer.reset(input);
+        lexer.seek(mark);
+        while (true) {
+            int token;
+            try {
+                token = lexer.next();
+            } catch (Suspend e) {
+                // Токен оборвался на конце куска: запоминаем, где он начался,
+                // и дальше только досматриваем новые байты
+                suspend();
+                return depth == 0 && pending == PENDING_NONE ? Status.COMPLETE : Status.NEED_MORE_INPUT;
+            }
+            if (token == EOF) {
+                return Status.COMPLETE;
+            }
+            accept(token);
+            mark = token == STRING ? lexer.tokenEnd() + 1 : lexer.tokenEnd();
+        }
+    }
+
+    // Пропускает пробелы после mark и определяет вид незаконченного токена
+    private void suspend() {
+        while (mark < input.limit() && isWhitespace(input.byteAt(mark))) {
+            mark++;
+        }
+        scan = mark + 1;
+        escaped = false;
+        if (mark == input.limit()) {
+            pending = PENDING_NONE;
+        } else {
+            int c = input.byteAt(mark);
+            pending = c == '"' ? PENDING_STRING : c == '-' || (c >= '0' && c <= '9') ? PENDING_NUMBER : PENDING_OTHER;
+            scanPending();
+        }
+    }
+
+    // Досматривает незаконченный токен с scan; true, если его конец уже в буфере
+    private boolean scanPending() {
+        int limit = input.limit();
+        switch (pending) {
+            case PENDING_STRING -> {
+                for (int i = scan; i < limit; i++) {
+                    int c = input.byteAt(i);
+                    if (escaped) {
+                        escaped = false;
+                    } else if (c == '\\') {
+                        escaped = true;
+                    } else if (c == '"') {
+                        scanned += i + 1 - scan;
+                        return true;
+                    }
+                }
+            }
+            case PENDING_NUMBER -> {
+                for (int i = scan; i < limit; i++) {
+                    int c = input.byteAt(i);
+                    if (!(c >= '0' && c <= '9') && c != '.' && c != 'e' && c != 'E' && c != '+' && c != '-') {
+                        scanned += i + 1 - scan;
+                        return true;
+                    }
+                }
+            }
+            default -> {
+                return true;
+            }
+        }
+        scanned += limit - scan;
+        scan = limit;
+        return false;
+    }
+
+    private static boolean isWhitespace(int c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+    }
+
+    private void accept(int token) {
+        int state = depth == 0 ? ARRAY_VALUE : states[depth - 1];
+        switch (state) {
+            case ARRAY_FIRST -> {
+                if (token == RIGHT_BRACKET) {
+                    pop();
+                } else {
+                    value(token);
+                }
+            }
+            case ARRAY_VALUE, OBJECT_VALUE -> value(token);
+            case ARRAY_NEXT -> {
+                if (token == COMMA) {
+                    states[depth - 1] = ARRAY_VALUE;
+                } else if (token == RIGHT_BRACKET) {
+                    pop();
+                } else {
+                    throw unexpected(token, "',' or ']'");
+                }
+            }
+            case OBJECT_FIRST, OBJECT_KEY -> {
+                if (token == STRING) {
+                    keys[depth - 1] = lexer.keyValue();
+                    states[depth - 1] = OBJECT_COLON;
+                } else if (token == RIGHT_BRACE && state == OBJECT_FIRST) {
+                    pop();
+                } else {
+                    throw unexpected(token, "string key");
+                }
+            }
+            case OBJECT_COLON -> {
+                if (token != COLON) {
+                    throw unexpected(token, "':'");
+                }
+                states[depth - 1] = OBJECT_VALUE;
+            }
+            case OBJECT_NEXT -> {
+                if (token == COMMA) {
+                    states[depth - 1] = OBJECT_KEY;
+                } else if (token == RIGHT_BRACE) {
+                    pop();
+                } else {
+                    throw unexpected(token, "',' or '}'");
+                }
+            }
+            default -> throw new IllegalStateException("Corrupted parser state " + state);
+        }
+    }
+
+    private void value(int token) {
+        switch (token) {
+            case LEFT_BRACE -> push(new JsonObject(), OBJECT_FIRST);
+            case LEFT_BRACKET -> push(new JsonArray(), ARRAY_FIRST);
+            default -> complete(JsonParser.scalarValue(lexer, token));
+        }
+    }
+
+    // Законченное значение: в родительский контейнер или наружу, если это верхний уровень
+    private void complete(JsonValue value) {
+        if (depth == 0) {
+            sink.accept(value);
+            return;
+        }
+        int top = depth - 1;
+        if (states[top] < OBJECT_FIRST) {
+            ((JsonArray) containers[top]).add(value);
+            states[top] = ARRAY_NEXT;
+        } else {
+            ((JsonObject) containers[top]).add(keys[top], value);
+            keys[top] = null;
+            states[top] = OBJECT_NEXT;
+        }
+    }
+
+    private void push(JsonValue container, int state) {
+        if (depth == maxDepth) {
+            throw new RuntimeException("Maximum nesting depth " + maxDepth + " exceeded");
+        }
+        if (depth == states.length) {
+            containers = Arrays.copyOf(containers, depth * 2);
+            states = Arrays.copyOf(states, depth * 2);
+            keys = Arrays.copyOf(keys, depth * 2);
+        }
+        containers[depth] = container;
+        states[depth] = state;
+        depth++;
+    }
+
+    private void pop() {
+        JsonValue container = containers[--depth];
+        containers[depth] = null;
+        complete(container);
+    }
+
+    private RuntimeException unexpected(int token, String expected) {
+        return new RuntimeException("Expected " + expected + ", got " + lexer.describeToken(token));
+    }
+
+    // Сигнал токенизатору, что данные кончились посреди токена; без стека, создаётся один раз
+    private static final class Suspend extends RuntimeException {
+        @java.io.Serial
+        private static final long serialVersionUID = 1L;
+        static final Suspend INSTANCE = new Suspend();
+
+        private Suspend() {
+            super(null, null, false, false);
+        }
+    }
+
+    // Накопленный ввод: хвост незаконченного токена и новый кусок
+    private static final class Input extends ByteSource {
+        private byte[] bytes = new byte[0];
+        boolean ended;
+
+        Input() {
+            this.buffer = ByteBuffer.wrap(bytes);
+        }
+
+        /**
+         * Дописывает chunk в конец. Байты до keepFrom больше не нужны: когда
+         * места не хватает, хвост с keepFrom сдвигается в начало, а если он
+         * занимает больше половины буфера — буфер удваивается. Возвращает
+         * сдвиг индексов.
+         */
+        int append(ByteBuffer chunk, int keepFrom) {
+            int n = chunk.remaining();
+            int shift = 0;
+            if (limit + n > bytes.length) {
+                int kept = limit - keepFrom;
+                if (kept + n <= bytes.length / 2) {
+                    System.arraycopy(bytes, keepFrom, bytes, 0, kept);
+                } else {
+                    byte[] grown = new byte[Math.max(kept + n, bytes.length * 2)];
+                    System.arraycopy(bytes, keepFrom, grown, 0, kept);
+                    bytes = grown;
+                    buffer = ByteBuffer.wrap(bytes);
+                }
+                shift = keepFrom;
+                offset += keepFrom;
+                limit = kept;
+            }
+            chunk.get(bytes, limit, n);
+            limit += n;
+            return shift;
+        }
+
+        int byteAt(int i) {
+            return bytes[i] & 0xFF;
+        }
+
+        void clear() {
+            offset = 0;
+            limit = 0;
+            ended = false;
+        }
+
+        @Override
+        public int fill(int keepFrom) {
+            if (ended) {
+                return -1;
+            }
+            throw Suspend.INSTANCE;
+        }
+    }
+}
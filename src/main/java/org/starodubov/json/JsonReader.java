@@ -0,0 +1,276 @@
+package org.starodubov.json;
+
+import org.starodubov.io.ByteSource;
+
+import java.io.Closeable;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.Arrays;
+
+import static org.starodubov.json.JsonLexer.*;
+
+/**
+ * Потоковый pull-парсер: читает документ по событиям, не строя дерево.
+ * Память ограничена буфером источника и глубиной вложенности (не больше
+ * maxDepth, как у JsonParser, в том числе внутри nextValue()), поэтому
+ * размер документа не важен. Экземпляр не потокобезопасен.
+ */
+public class JsonReader implements Closeable {
+
+    public enum Event {
+        BEGIN_OBJECT, END_OBJECT,
+        BEGIN_ARRAY, END_ARRAY,
+        NAME,
+        STRING, NUMBER, BOOLEAN, NULL,
+        END_DOCUMENT
+    }
+
+    // Состояния на стеке вложенности
+    private static final int EMPTY_DOCUMENT = 0;
+    private static final int NONEMPTY_DOCUMENT = 1;
+    private static final int EMPTY_OBJECT = 2;
+    private static final int DANGLING_NAME = 3;
+    private static final int NONEMPTY_OBJECT = 4;
+    private static final int EMPTY_ARRAY = 5;
+    private static final int NONEMPTY_ARRAY = 6;
+
+    private final ByteSource source;
+    private final JsonLexer lexer;
+    private final int maxDepth;
+    // Для nextValue(), создаётся при первом вызове
+    private JsonParser parser;
+    private int[] stack = new int[32];
+    private int depth = 0;
+
+    private Event peeked;
+    private int token;
+    // Токен, уже прочитанный парсером после nextValue()
+    private int pending = -1;
+
+    public JsonReader(InputStream in) {
+        this(ByteSource.of(in));
+    }
+
+    public JsonReader(InputStream in, int bufferSize) {
+        this(ByteSource.of(in, bufferSize));
+    }
+
+    public JsonReader(Reader in) {
+        this(ByteSource.of(in, ByteSource.DEFAULT_BUFFER_SIZE));
+    }
+
+    public JsonReader(ByteSource source) {
+        this(source, JsonParser.DEFAULT_MAX_DEPTH);
+    }
+
+    public JsonReader(ByteSource source, int maxDepth) {
+        if (maxDepth < 1) {
+            throw new IllegalArgumentException("maxDepth must be positive: " + maxDepth);
+        }
+        this.source = source;
+        this.lexer = new Utf8JsonTokenizer(source);
+        this.maxDepth = maxDepth;
+        push(EMPTY_DOCUMENT);
+    }
+
+    public Event peek() {
+        if (peeked == null) {
+            peeked = doPeek();
+        }
+        return peeked;
+    }
+
+    public boolean hasNext() {
+        Event e = peek();
+        return e != Event.END_OBJECT && e != Event.END_ARRAY && e != Event.END_DOCUMENT;
+    }
+
+    public void beginObject() {
+        expect(Event.BEGIN_OBJECT);
+        push(EMPTY_OBJECT);
+    }
+
+    public void endObject() {
+        expect(Event.END_OBJECT);
+        depth--;
+    }
+
+    public void beginArray() {
+        expect(Event.BEGIN_ARRAY);
+        push(EMPTY_ARRAY);
+    }
+
+    public void endArray() {
+        expect(Event.END_ARRAY);
+        depth--;
+    }
+
+    public String nextName() {
+        expect(Event.NAME);
+        return lexer.keyValue();
+    }
+
+    public String nextString() {
+        expect(Event.STRING);
+        return lexer.stringValue();
+    }
+
+    public double nextNumber() {
+        expect(Event.NUMBER);
+        return lexer.numberValue();
+    }
+
+    public boolean nextBoolean() {
+        expect(Event.BOOLEAN);
+        return token == TRUE;
+    }
+
+    public void nextNull() {
+        expect(Event.NULL);
+    }
+
+    /**
+     * Материализует следующее значение целиком, например один элемент большого массива.
+     */
+    public JsonValue nextValue() {
+        Event e = peek();
+        if (e == Event.NAME || e == Event.END_OBJECT || e == Event.END_ARRAY || e == Event.END_DOCUMENT) {
+            throw new RuntimeException("Expected value, got " + e);
+        }
+        peeked = null;
+        if (parser == null) {
+            parser = new JsonParser(maxDepth);
+        }
+        // Открытые читателем контейнеры — все уровни стека, кроме документа
+        JsonValue value = parser.parseValue(lexer, token, depth - 1);
+        pending = parser.currentToken();
+        return value;
+    }
+
+    /**
+     * Пропускает следующее значение (вместе с именем, если стоим на NAME),
+     * не создавая объектов для вложенных элементов.
+     */
+    public void skipValue() {
+        if (peek() == Event.NAME) {
+            nextName();
+        }
+        Event e = peek();
+        switch (e) {
+            case BEGIN_OBJECT, BEGIN_ARRAY -> {
+                peeked = null;
+                int level = 1;
+                while (level > 0) {
+                    int t = nextToken();
+                    if (t == LEFT_BRACE || t == LEFT_BRACKET) {
+                        level++;
+                    } else if (t == RIGHT_BRACE || t == RIGHT_BRACKET) {
+                        level--;
+                    } else if (t == EOF) {
+                        throw new RuntimeException("Unexpected end of document");
+                    }
+                }
+            }
+            case STRING, NUMBER, BOOLEAN, NULL -> peeked = null;
+            default -> throw new RuntimeException("Expected value, got " + e);
+        }
+    }
+
+    @Override
+    public void close() {
+        source.close();
+    }
+
+    private void expect(Event expected) {
+        Event e = peek();
+        if (e != expected) {
+            throw new RuntimeException("Expected " + expected + ", got " + e);
+        }
+        peeked = null;
+    }
+
+    private void push(int scope) {
+        // Нижний уровень стека — сам документ, контейнеры над ним
+        if (depth > maxDepth) {
+            throw new RuntimeException("Maximum nesting depth " + maxDepth + " exceeded");
+        }
+        if (depth == stack.length) {
+            stack = Arrays.copyOf(stack, depth * 2);
+        }
+        stack[depth++] = scope;
+    }
+
+    private int nextToken() {
+        if (pending >= 0) {
+            int t = pending;
+            pending = -1;
+            return t;
+        }
+        return lexer.next();
+    }
+
+    private Event doPeek() {
+        switch (stack[depth - 1]) {
+            case EMPTY_DOCUMENT -> {
+                stack[depth - 1] = NONEMPTY_DOCUMENT;
+                token = nextToken();
+            }
+            case NONEMPTY_DOCUMENT -> {
+                token = nextToken();
+                if (token != EOF) {
+                    throw new RuntimeException("Unexpected token after root value: " + lexer.describeToken(token));
+                }
+                return Event.END_DOCUMENT;
+            }
+            case EMPTY_ARRAY, NONEMPTY_ARRAY -> {
+                token = nextToken();
+                if (token == RIGHT_BRACKET) {
+                    return Event.END_ARRAY;
+                }
+                if (stack[depth - 1] == NONEMPTY_ARRAY) {
+                    if (token != COMMA) {
+                        throw new RuntimeException("Expected COMMA, got " + lexer.describeToken(token));
+                    }
+                    token = nextToken();
+                }
+                stack[depth - 1] = NONEMPTY_ARRAY;
+            }
+            case EMPTY_OBJECT, NONEMPTY_OBJECT -> {
+                token = nextToken();
+                if (token == RIGHT_BRACE) {
+                    return Event.END_OBJECT;
+                }
+                if (stack[depth - 1] == NONEMPTY_OBJECT) {
+                    if (token != COMMA) {
+                        throw new RuntimeException("Expected COMMA, got " + lexer.describeToken(token));
+                    }
+                    token = nextToken();
+                }
+                if (token != STRING) {
+                    throw new RuntimeException("Expected string key, got " + lexer.describeToken(token));
+                }
+                stack[depth - 1] = DANGLING_NAME;
+                return Event.NAME;
+            }
+            case DANGLING_NAME -> {
+                token = nextToken();
+                if (token != COLON) {
+                    throw new RuntimeException("Expected COLON, got " + lexer.describeToken(token));
+                }
+                stack[depth - 1] = NONEMPTY_OBJECT;
+                token = nextToken();
+            }
+            default -> throw new IllegalStateException();
+        }
+
+        return switch (token) {
+            case LEFT_BRACE -> Event.BEGIN_OBJECT;
+            case LEFT_BRACKET -> Event.BEGIN_ARRAY;
+            case STRING -> Event.STRING;
+            case NUMBER -> Event.NUMBER;
+            case TRUE, FALSE -> Event.BOOLEAN;
+            case NULL -> Event.NULL;
+            default -> throw new RuntimeException("Unexpected token: " + lexer.describeToken(token));
+        };
+    }
+}
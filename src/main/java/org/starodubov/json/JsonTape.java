@@ -0,0 +1,333 @@
+package org.starodubov.json;
+
+import java.util.Arrays;
+
+import static org.starodubov.json.JsonLexer.*;
+
+/**
+ * Документ, записанный в один long[] (tape, как в simdjson) и общий буфер
+ * символов вместо графа объектов. Слово ленты — тег в старших 8 битах и
+ * данные в младших 56:
+ * <ul>
+ *     <li>'{' и '[' — индекс слова после парной закрывающей скобки и число
+ *     элементов (биты 32..55, не больше COUNT_LIMIT); '}' и ']' — индекс открывающей;</li>
+ *     <li>'"' — смещение строки в буфере символов, где она хранится
+ *     с длиной в двух первых char; в объекте ключ — такое же слово перед значением;</li>
+ *     <li>'l' — целое, значение в следующем слове;</li>
+ *     <li>'d' — остальные числа: лексема в буфере символов, как у строки;</li>
+ *     <li>'t', 'f', 'n' — true, false, null.</li>
+ * </ul>
+ * Навигация — арифметика индексов, контейнеры пропускаются за O(1).
+ * После построения лента неизменяема, её и представления TapeObject/TapeArray
+ * можно передавать между потоками без синхронизации.
+ */
+public final class JsonTape {
+    static final int OBJECT = '{';
+    static final int OBJECT_END = '}';
+    static final int ARRAY = '[';
+    static final int ARRAY_END = ']';
+    static final int STRING = '"';
+    static final int LONG = 'l';
+    static final int DECIMAL = 'd';
+    static final int TRUE = 't';
+    static final int FALSE = 'f';
+    static final int NULL = 'n';
+
+    static final int COUNT_LIMIT = 0xFFFFFF;
+
+    private static final long PAYLOAD = (1L << 56) - 1;
+
+    private final long[] tape;
+    private final char[] strings;
+
+    private JsonTape(long[] tape, char[] strings) {
+        this.tape = tape;
+        this.strings = strings;
+    }
+
+    /**
+     * Корневое значение документа.
+     */
+    public JsonValue root() {
+        return value(0);
+    }
+
+    /**
+     * Размер ленты в словах.
+     */
+    public int size() {
+        return tape.length;
+    }
+
+    int tag(int i) {
+        return (int) (tape[i] >>> 56);
+    }
+
+    // Индекс следующего значения после значения в i
+    int skip(int i) {
+        return switch (tag(i)) {
+            case OBJECT, ARRAY -> (int) tape[i];
+            case LONG -> i + 2;
+            default -> i + 1;
+        };
+    }
+
+    int count(int i) {
+        return (int) (tape[i] >>> 32) & COUNT_LIMIT;
+    }
+
+    JsonValue value(int i) {
+        return switch (tag(i)) {
+            case OBJECT -> new TapeObject(this, i);
+            case ARRAY -> new TapeArray(this, i);
+            case STRING -> new JsonString(string(i));
+            case LONG -> new JsonNumber(tape[i + 1]);
+            case DECIMAL -> {
+                JsonTokenizer tokenizer = new JsonTokenizer(string(i));
+                tokenizer.next();
+                yield tokenizer.jsonNumber();
+            }
+            case TRUE -> new JsonBoolean(true);
+            case FALSE -> new JsonBoolean(false);
+            case NULL -> JsonNull.INSTANCE;
+            default -> throw new IllegalStateException("Corrupted tape at " + i);
+        };
+    }
+
+    String string(int i) {
+        int offset = (int) (tape[i] & PAYLOAD);
+        return new String(strings, offset + 2, length(offset));
+    }
+
+    // Сравнение строки на ленте без создания String
+    boolean stringEquals(int i, String value) {
+        int offset = (int) (tape[i] & PAYLOAD);
+        int length = length(offset);
+        if (length != value.length()) {
+            return false;
+        }
+        for (int k = 0; k < length; k++) {
+            if (strings[offset + 2 + k] != value.charAt(k)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Пишет значение в i прямо с ленты, строки — из буфера символов без String
+    void write(int i, JsonWriter out) {
+        switch (tag(i)) {
+            case OBJECT -> {
+                out.beginObject();
+                for (int k = i + 1; tag(k) != OBJECT_END; k = skip(k + 1)) {
+                    int offset = (int) (tape[k] & PAYLOAD);
+                    out.name(strings, offset + 2, length(offset));
+                    write(k + 1, out);
+                }
+                out.endObject();
+            }
+            case ARRAY -> {
+                out.beginArray();
+                for (int k = i + 1; tag(k) != ARRAY_END; k = skip(k)) {
+                    write(k, out);
+                }
+                out.endArray();
+            }
+            case STRING -> {
+                int offset = (int) (tape[i] & PAYLOAD);
+                out.value(strings, offset + 2, length(offset));
+            }
+            case LONG -> out.value(tape[i + 1]);
+            case DECIMAL -> {
+                // Лексема из входа уже валидное число JSON
+                int offset = (int) (tape[i] & PAYLOAD);
+                out.beforeValue();
+                out.writeAscii(strings, offset + 2, length(offset));
+            }
+            case TRUE -> out.value(true);
+            case FALSE -> out.value(false);
+            case NULL -> out.nullValue();
+            default -> throw new IllegalStateException("Corrupted tape at " + i);
+        }
+    }
+
+    private int length(int offset) {
+        return strings[offset] << 16 | strings[offset + 1];
+    }
+
+    /**
+     * inputLength — оценка размера входа в символах или байтах, по ней
+     * сразу выделяются буферы; 0, если размер неизвестен.
+     */
+    static JsonTape build(JsonLexer lexer, int inputLength, int maxDepth) {
+        Builder builder = new Builder(lexer, inputLength, maxDepth);
+        builder.token = lexer.next();
+        builder.value();
+        if (builder.token != EOF) {
+            throw new RuntimeException("Unexpected token after root value: " + lexer.describeToken(builder.token));
+        }
+        return new JsonTape(trim(builder.tape, builder.size), trim(builder.strings, builder.stringsSize));
+    }
+
+    // Копируем, только если пустует больше четверти массива
+    private static long[] trim(long[] a, int size) {
+        return size < a.length - a.length / 4 ? Arrays.copyOf(a, size) : a;
+    }
+
+    private static char[] trim(char[] a, int size) {
+        return size < a.length - a.length / 4 ? Arrays.copyOf(a, size) : a;
+    }
+
+    private static final class Builder {
+        private final JsonLexer lexer;
+        private final int maxDepth;
+        private int token;
+        private long[] tape;
+        private int size;
+        private char[] strings;
+        private int stringsSize;
+        private int[] starts = new int[16];
+        private int[] counts = new int[16];
+        private int depth;
+
+        // Строки и лексемы чисел не длиннее входа; слово ленты приходится в среднем на несколько байт входа
+        Builder(JsonLexer lexer, int inputLength, int maxDepth) {
+            this.lexer = lexer;
+            this.maxDepth = maxDepth;
+            this.tape = new long[Math.max(256, inputLength / 4)];
+            this.strings = new char[Math.max(1024, inputLength)];
+        }
+
+        // Без рекурсии: начала открытых контейнеров и число их элементов на явном стеке
+        void value() {
+            while (true) {
+                switch (token) {
+                    case LEFT_BRACE -> {
+                        if (open(OBJECT, RIGHT_BRACE)) {
+                            key();
+                            continue;
+                        }
+                    }
+                    case LEFT_BRACKET -> {
+                        if (open(ARRAY, RIGHT_BRACKET)) {
+                            continue;
+                        }
+                    }
+                    case JsonLexer.STRING -> {
+                        string(false);
+                        token = lexer.next();
+                    }
+                    case NUMBER -> {
+                        if (lexer.isLongNumber()) {
+                            append(LONG, 0);
+                            appendRaw(lexer.longNumber());
+                        } else {
+                            string(true);
+                        }
+                        token = lexer.next();
+                    }
+                    case JsonLexer.TRUE -> literal(TRUE);
+                    case JsonLexer.FALSE -> literal(FALSE);
+                    case JsonLexer.NULL -> literal(NULL);
+                    default -> throw new RuntimeException("Unexpected token: " + lexer.describeToken(token));
+                }
+                // Значение готово: считаем его в родителе и закрываем кончившиеся контейнеры
+                while (true) {
+                    if (depth == 0) {
+                        return;
+                    }
+                    int top = depth - 1;
+                    counts[top]++;
+                    boolean object = tape[starts[top]] >>> 56 == OBJECT;
+                    if (token == COMMA) {
+                        token = lexer.next();
+                        if (object) {
+                            key();
+                        }
+                        break;
+                    }
+                    expect(object ? RIGHT_BRACE : RIGHT_BRACKET);
+                    token = lexer.next();
+                    depth = top;
+                    close(starts[top], object ? OBJECT : ARRAY, object ? OBJECT_END : ARRAY_END, counts[top]);
+                }
+            }
+        }
+
+        // Открывает контейнер; false, если он пустой и уже закрыт
+        private boolean open(int tag, int closing) {
+            if (depth == maxDepth) {
+                throw new RuntimeException("Maximum nesting depth " + maxDepth + " exceeded");
+            }
+            int start = size;
+            append(tag, 0);
+            token = lexer.next();
+            if (token == closing) {
+                token = lexer.next();
+                close(start, tag, tag == OBJECT ? OBJECT_END : ARRAY_END, 0);
+                return false;
+            }
+            if (depth == starts.length) {
+                starts = Arrays.copyOf(starts, depth * 2);
+                counts = Arrays.copyOf(counts, depth * 2);
+            }
+            starts[depth] = start;
+            counts[depth] = 0;
+            depth++;
+            return true;
+        }
+
+        private void key() {
+            if (token != JsonLexer.STRING) {
+                throw new RuntimeException("Expected string key, got " + lexer.describeToken(token));
+            }
+            string(false);
+            token = lexer.next();
+            expect(COLON);
+            token = lexer.next();
+        }
+
+        private void close(int start, int open, int end, int count) {
+            append(end, start);
+            tape[start] = (long) open << 56 | (long) Math.min(count, COUNT_LIMIT) << 32 | size;
+        }
+
+        private void literal(int tag) {
+            append(tag, 0);
+            token = lexer.next();
+        }
+
+        // Строка или лексема числа в буфер символов с длиной в двух первых char
+        private void string(boolean lexeme) {
+            int max = lexer.tokenEnd() - lexer.tokenStart();
+            if (stringsSize + max + 2 > strings.length) {
+                strings = Arrays.copyOf(strings, Math.max(strings.length * 2, stringsSize + max + 2));
+            }
+            int offset = stringsSize;
+            int length = lexeme
+                    ? lexer.copyLexeme(strings, offset + 2)
+                    : lexer.copyString(strings, offset + 2);
+            strings[offset] = (char) (length >>> 16);
+            strings[offset + 1] = (char) length;
+            stringsSize = offset + 2 + length;
+            append(lexeme ? DECIMAL : STRING, offset);
+        }
+
+        private void append(int tag, long payload) {
+            appendRaw((long) tag << 56 | payload);
+        }
+
+        private void appendRaw(long word) {
+            if (size == tape.length) {
+                tape = Arrays.copyOf(tape, size * 2);
+            }
+            tape[size++] = word;
+        }
+
+        private void expect(int type) {
+            if (token != type) {
+                throw new RuntimeException("Expected " + JsonLexer.typeName(type) + ", got " + lexer.describeToken(token));
+            }
+        }
+    }
+}
@@ -1,8 +1,23 @@
 package org.starodubov.json;
 
-public class JsonTokenizer {
-    private final String input;
+public class JsonTokenizer implements JsonLexer {
+    private static final Token.Type[] TYPES = Token.Type.values();
+
+    private String input;
     private int pos = 0;
+    // Границы лексемы текущего токена; у строки — содержимое без кавычек
+    private int tokenStart;
+    private int tokenEnd;
+    // Встретились ли escape-последовательности в текущей строке
+    private boolean escaped;
+    // Буфер для строк с escape-последовательностями, переживает reset()
+    private char[] scratch = new char[0];
+    // Разобранное при сканировании число, см. readNumber()
+    private long mantissa;
+    private int exp10;
+    private boolean negative;
+    private boolean mantissaExact;
+    private boolean integerLiteral;
 
     public static class Token {
         enum Type {
@@ -32,6 +47,20 @@ public class JsonTokenizer {
         this.input = input;
     }
 
+    // Переключает токенизатор на новый вход, сохраняя буферы
+    void reset(String input) {
+        this.input = input;
+        this.pos = 0;
+        this.tokenStart = 0;
+        this.tokenEnd = 0;
+        this.escaped = false;
+    }
+
+    // Отпускает вход, чтобы закешированный токенизатор не держал его в памяти
+    void release() {
+        reset("");
+    }
+
     private void skipWhitespace() {
         while (pos < input.length() && Character.isWhitespace(input.charAt(pos))) {
             pos++;
@@ -39,9 +68,25 @@ public class JsonTokenizer {
     }
 
     Token nextToken() {
+        int type = next();
+        return switch (type) {
+            case STRING -> new Token(Token.Type.STRING, stringValue());
+            default -> new Token(TYPES[type], lexeme());
+        };
+    }
+
+    /**
+     * Курсорный режим: возвращает код следующего токена, ничего не аллоцируя.
+     * Текст токена доступен через tokenStart()/tokenEnd() или материализуется
+     * по требованию через lexeme(), stringValue() и numberValue().
+     */
+    @Override
+    public int next() {
         skipWhitespace();
+        tokenStart = pos;
         if (pos >= input.length()) {
-            return new Token(Token.Type.EOF, "");
+            tokenEnd = pos;
+            return EOF;
         }
 
         char c = input.charAt(pos);
@@ -49,23 +94,17 @@ public class JsonTokenizer {
         // Символы
         switch (c) {
             case '{':
-                pos++;
-                return new Token(Token.Type.LEFT_BRACE, "{");
+                return punct(LEFT_BRACE);
             case '}':
-                pos++;
-                return new Token(Token.Type.RIGHT_BRACE, "}");
+                return punct(RIGHT_BRACE);
             case '[':
-                pos++;
-                return new Token(Token.Type.LEFT_BRACKET, "[");
+                return punct(LEFT_BRACKET);
             case ']':
-                pos++;
-                return new Token(Token.Type.RIGHT_BRACKET, "]");
+                return punct(RIGHT_BRACKET);
             case ':':
-                pos++;
-                return new Token(Token.Type.COLON, ":");
+                return punct(COLON);
             case ',':
-                pos++;
-                return new Token(Token.Type.COMMA, ",");
+                return punct(COMMA);
         }
 
         // Строка
@@ -74,111 +113,311 @@ public class JsonTokenizer {
         }
 
         // Число или ключевое слово
-        if (Character.isDigit(c) || c == '-' || c == '+') {
+        if (isDigit(c) || c == '-' || c == '+') {
             return readNumber();
         }
 
         // Ключевые слова
         if (c == 't' && startsWith(pos, "true")) {
-            pos += 4;
-            return new Token(Token.Type.TRUE, "true");
+            return keyword(TRUE, 4);
         }
         if (c == 'f' && startsWith(pos, "false")) {
-            pos += 5;
-            return new Token(Token.Type.FALSE, "false");
+            return keyword(FALSE, 5);
         }
         if (c == 'n' && startsWith(pos, "null")) {
-            pos += 4;
-            return new Token(Token.Type.NULL, "null");
+            return keyword(NULL, 4);
         }
 
         throw new RuntimeException("Unexpected character: " + c + " at position " + pos);
     }
 
+    @Override
+    public void seek(int position) {
+        pos = position;
+    }
+
+    @Override
+    public int tokenStart() {
+        return tokenStart;
+    }
+
+    @Override
+    public int tokenEnd() {
+        return tokenEnd;
+    }
+
+    @Override
+    public String lexeme() {
+        return input.substring(tokenStart, tokenEnd);
+    }
+
+    private int punct(int type) {
+        pos++;
+        tokenEnd = pos;
+        return type;
+    }
+
+    private int keyword(int type, int length) {
+        pos += length;
+        tokenEnd = pos;
+        return type;
+    }
+
     private boolean startsWith(int start, String word) {
         return input.startsWith(word, start);
     }
 
-    private Token readString() {
-        StringBuilder sb = new StringBuilder();
+    // Только находит границы строки и проверяет escape-последовательности,
+    // сама строка собирается в stringValue(). Кавычка и обратный слэш ищутся
+    // String.indexOf, так что строка без escape проходится одним поиском
+    private int readString() {
         pos++; // пропускаем начальную "
+        tokenStart = pos;
+        escaped = false;
+
+        int quote = -1;
+        while (true) {
+            // Кавычка могла оказаться экранированной — тогда ищем следующую
+            if (quote < pos) {
+                quote = input.indexOf('"', pos);
+                if (quote < 0) {
+                    throw new RuntimeException("Unterminated string");
+                }
+            }
+            int backslash = input.indexOf('\\', pos, quote);
+            if (backslash < 0) {
+                tokenEnd = quote;
+                pos = quote + 1; // пропускаем закрывающую "
+                return STRING;
+            }
+            escaped = true;
+            pos = skipEscape(backslash);
+        }
+    }
+
+    // Проверяет escape-последовательность с '\\' в i и возвращает позицию после неё;
+    // суррогаты в \\u должны идти парой: старший, затем младший
+    private int skipEscape(int i) {
+        if (i + 1 >= input.length()) {
+            throw new RuntimeException("Unexpected end of string");
+        }
+        char c = input.charAt(i + 1);
+        switch (c) {
+            case '"', '\\', '/', 'b', 'f', 'n', 'r', 't' -> {
+                return i + 2;
+            }
+            case 'u' -> {
+                char ch = unicodeEscape(i + 2);
+                if (Character.isHighSurrogate(ch)) {
+                    if (!input.startsWith("\\u", i + 6) || !Character.isLowSurrogate(unicodeEscape(i + 8))) {
+                        throw new RuntimeException("Unpaired surrogate in \\u escape at position " + i);
+                    }
+                    return i + 12;
+                }
+                if (Character.isLowSurrogate(ch)) {
+                    throw new RuntimeException("Unpaired surrogate in \\u escape at position " + i);
+                }
+                return i + 6;
+            }
+            default -> throw new RuntimeException("Invalid escape: \\" + c);
+        }
+    }
 
-        while (pos < input.length()) {
-            char c = input.charAt(pos);
-            if (c == '"') {
-                pos++; // пропускаем закрывающую "
-                return new Token(Token.Type.STRING, sb.toString());
+    // Четыре шестнадцатеричные цифры начиная с i
+    private char unicodeEscape(int i) {
+        if (i + 4 > input.length()) {
+            throw new RuntimeException("Invalid unicode escape");
+        }
+        int value = 0;
+        for (int k = i; k < i + 4; k++) {
+            int d = hexValue(input.charAt(k));
+            if (d < 0) {
+                throw new RuntimeException("Invalid unicode escape: \\u" + input.substring(i, i + 4));
             }
+            value = value << 4 | d;
+        }
+        return (char) value;
+    }
+
+    // Только ASCII-цифры: Character.digit принял бы и, например, полноширинные
+    private static int hexValue(int c) {
+        if (c >= '0' && c <= '9') return c - '0';
+        if (c >= 'a' && c <= 'f') return c - 'a' + 10;
+        if (c >= 'A' && c <= 'F') return c - 'A' + 10;
+        return -1;
+    }
+
+    @Override
+    public String stringValue() {
+        if (!escaped) {
+            return input.substring(tokenStart, tokenEnd);
+        }
+        // Escape-последовательности только укорачивают строку
+        if (scratch.length < tokenEnd - tokenStart) {
+            scratch = new char[Math.max(64, tokenEnd - tokenStart)];
+        }
+        return new String(scratch, 0, decodeTo(scratch, 0));
+    }
+
+    // Декодирует содержимое текущей строки в out начиная с n, возвращает позицию после последнего символа
+    private int decodeTo(char[] out, int n) {
+        for (int i = tokenStart; i < tokenEnd; i++) {
+            char c = input.charAt(i);
             if (c == '\\') {
-                pos++;
-                if (pos >= input.length()) throw new RuntimeException("Unexpected end of string");
-                c = input.charAt(pos);
+                c = input.charAt(++i);
                 switch (c) {
-                    case '"', '\\', '/' -> sb.append(c);
-                    case 'b' -> sb.append('\b');
-                    case 'f' -> sb.append('\f');
-                    case 'n' -> sb.append('\n');
-                    case 'r' -> sb.append('\r');
-                    case 't' -> sb.append('\t');
+                    case '"', '\\', '/' -> out[n++] = c;
+                    case 'b' -> out[n++] = '\b';
+                    case 'f' -> out[n++] = '\f';
+                    case 'n' -> out[n++] = '\n';
+                    case 'r' -> out[n++] = '\r';
+                    case 't' -> out[n++] = '\t';
                     case 'u' -> {
-                        if (pos + 4 >= input.length()) {
-                            throw new RuntimeException("Invalid unicode escape");
-                        }
-                        String hex = input.substring(pos + 1, pos + 5);
-                        try {
-                            char unicodeChar = (char) Integer.parseInt(hex, 16);
-                            sb.append(unicodeChar);
-                            pos += 4;
-                        } catch (NumberFormatException e) {
-                            throw new RuntimeException("Invalid unicode escape: \\u" + hex);
-                        }
+                        // Суррогатная пара проверена в readString() и записывается двумя char как есть
+                        out[n++] = unicodeEscape(i + 1);
+                        i += 4;
                     }
                     default -> throw new RuntimeException("Invalid escape: \\" + c);
                 }
             } else {
-                sb.append(c);
+                out[n++] = c;
             }
-            pos++;
         }
-        throw new RuntimeException("Unterminated string");
+        return n;
+    }
+
+    @Override
+    public String keyValue() {
+        if (escaped || tokenEnd - tokenStart > KeyCache.MAX_LENGTH) {
+            return stringValue();
+        }
+        return KeyCache.SHARED.get(input, tokenStart, tokenEnd);
+    }
+
+    @Override
+    public boolean stringEquals(String value) {
+        if (escaped) {
+            return stringValue().equals(value);
+        }
+        return tokenEnd - tokenStart == value.length() && input.startsWith(value, tokenStart);
     }
 
-    private Token readNumber() {
-        int start = pos;
-        if (input.charAt(pos) == '-' || input.charAt(pos) == '+') {
+    // Цифры накапливаются прямо при сканировании: значение равно
+    // mantissa * 10^exp10, пока mantissaExact; иначе число разбирается заново
+    private int readNumber() {
+        negative = input.charAt(pos) == '-';
+        if (negative || input.charAt(pos) == '+') {
             pos++;
         }
+        mantissa = 0;
+        exp10 = 0;
+        mantissaExact = true;
+        integerLiteral = true;
+        int significant = 0;
+        int digits = 0;
 
         // Целая часть
-        while (pos < input.length() && Character.isDigit(input.charAt(pos))) {
-            pos++;
+        while (pos < input.length() && isDigit(input.charAt(pos))) {
+            int d = input.charAt(pos++) - '0';
+            digits++;
+            if (significant < NumberConverter.MAX_DIGITS) {
+                mantissa = mantissa * 10 + d;
+                if (mantissa != 0) significant++;
+            } else {
+                exp10++;
+                if (d != 0) mantissaExact = false;
+            }
         }
 
         // Дробная часть
         if (pos < input.length() && input.charAt(pos) == '.') {
             pos++;
-            while (pos < input.length() && Character.isDigit(input.charAt(pos))) {
-                pos++;
+            integerLiteral = false;
+            while (pos < input.length() && isDigit(input.charAt(pos))) {
+                int d = input.charAt(pos++) - '0';
+                digits++;
+                if (significant < NumberConverter.MAX_DIGITS) {
+                    mantissa = mantissa * 10 + d;
+                    if (mantissa != 0) significant++;
+                    exp10--;
+                } else if (d != 0) {
+                    mantissaExact = false;
+                }
             }
         }
+        if (digits == 0) {
+            throw new RuntimeException("Invalid number: " + input.substring(tokenStart, pos));
+        }
 
         // Экспонента
         if (pos < input.length() && (input.charAt(pos) == 'e' || input.charAt(pos) == 'E')) {
             pos++;
+            integerLiteral = false;
+            boolean negativeExp = false;
             if (pos < input.length() && (input.charAt(pos) == '+' || input.charAt(pos) == '-')) {
+                negativeExp = input.charAt(pos) == '-';
                 pos++;
             }
-            while (pos < input.length() && Character.isDigit(input.charAt(pos))) {
-                pos++;
+            int expStart = pos;
+            int exp = 0;
+            while (pos < input.length() && isDigit(input.charAt(pos))) {
+                // Насыщение: такие порядки всё равно дают 0 или бесконечность
+                exp = Math.min(exp * 10 + input.charAt(pos++) - '0', 100_000);
+            }
+            if (pos == expStart) {
+                throw new RuntimeException("Invalid number: " + input.substring(tokenStart, pos));
             }
+            exp10 += negativeExp ? -exp : exp;
         }
 
-        String numStr = input.substring(start, pos);
-        try {
-            double value = Double.parseDouble(numStr);
-            return new Token(Token.Type.NUMBER, numStr);
-        } catch (NumberFormatException e) {
-            throw new RuntimeException("Invalid number: " + numStr);
+        tokenEnd = pos;
+        return NUMBER;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    @Override
+    public double numberValue() {
+        if (mantissaExact) {
+            double d = NumberConverter.toDouble(mantissa, exp10, negative);
+            if (!Double.isNaN(d)) {
+                return d;
+            }
         }
+        return Double.parseDouble(lexeme());
+    }
+
+    @Override
+    public JsonNumber jsonNumber() {
+        return mantissaExact
+                ? JsonNumber.of(mantissa, exp10, negative, integerLiteral)
+                : JsonNumber.of(lexeme());
+    }
+
+    @Override
+    public boolean isLongNumber() {
+        return mantissaExact && JsonNumber.fitsLong(mantissa, exp10, negative, integerLiteral);
+    }
+
+    @Override
+    public long longNumber() {
+        return negative ? -mantissa : mantissa;
+    }
+
+    @Override
+    public int copyString(char[] dst, int offset) {
+        if (escaped) {
+            return decodeTo(dst, offset) - offset;
+        }
+        input.getChars(tokenStart, tokenEnd, dst, offset);
+        return tokenEnd - tokenStart;
+    }
+
+    @Override
+    public int copyLexeme(char[] dst, int offset) {
+        input.getChars(tokenStart, tokenEnd, dst, offset);
+        return tokenEnd - tokenStart;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,602 @@
+package org.starodubov.json;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Потоковая запись JSON сразу в UTF-8. Документ пишется либо событиями
+ * (beginObject/name/value/endObject, как читает JsonReader), либо целым
+ * деревом через value(JsonValue), либо вперемешку. Байты копятся в
+ * собственном буфере: без OutputStream он растёт и забирается через
+ * toByteArray()/writeTo(ByteBuffer), с OutputStream сбрасывается в поток
+ * по заполнении. reset() начинает новый документ с тем же буфером, так
+ * что один писатель можно переиспользовать. Экземпляр не потокобезопасен.
+ * <p>
+ * Непредставимое значение (NaN, строка с непарным суррогатом) отвергается
+ * до записи, и писатель остаётся в прежнем состоянии. Ошибка посреди дерева
+ * в value(JsonValue) оставляет уже записанную часть; тогда документ нужно
+ * начать заново через reset().
+ */
+public class JsonWriter implements Closeable, Flushable {
+    public static final int DEFAULT_BUFFER_SIZE = 8 * 1024;
+
+    // Состояния на стеке вложенности, как в JsonReader
+    private static final int EMPTY_DOCUMENT = 0;
+    private static final int NONEMPTY_DOCUMENT = 1;
+    private static final int EMPTY_OBJECT = 2;
+    private static final int DANGLING_NAME = 3;
+    private static final int NONEMPTY_OBJECT = 4;
+    private static final int EMPTY_ARRAY = 5;
+    private static final int NONEMPTY_ARRAY = 6;
+
+    // Замена для ASCII-символа в строке; null — символ пишется как есть
+    private static final byte[][] ESCAPES = new byte[128][];
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    // Пары цифр 00..99 для записи целых
+    private static final byte[] DIGIT_PAIRS = new byte[200];
+    private static final byte[] TRUE = "true".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FALSE = "false".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] LONG_MIN = Long.toString(Long.MIN_VALUE).getBytes(StandardCharsets.US_ASCII);
+    // Строки кодируются кусками: на символ уходит не больше шести байт, как у escape вида \\u00XX
+    private static final int CHUNK = 1024;
+
+    static {
+        for (int c = 0; c < 0x20; c++) {
+            ESCAPES[c] = new byte[]{'\\', 'u', '0', '0', HEX[c >> 4], HEX[c & 0xF]};
+        }
+        ESCAPES['\b'] = new byte[]{'\\', 'b'};
+        ESCAPES['\f'] = new byte[]{'\\', 'f'};
+        ESCAPES['\n'] = new byte[]{'\\', 'n'};
+        ESCAPES['\r'] = new byte[]{'\\', 'r'};
+        ESCAPES['\t'] = new byte[]{'\\', 't'};
+        ESCAPES['"'] = new byte[]{'\\', '"'};
+        ESCAPES['\\'] = new byte[]{'\\', '\\'};
+        for (int i = 0; i < 100; i++) {
+            DIGIT_PAIRS[2 * i] = (byte) ('0' + i / 10);
+            DIGIT_PAIRS[2 * i + 1] = (byte) ('0' + i % 10);
+        }
+    }
+
+    // null — пишем только в буфер
+    private final OutputStream out;
+    private byte[] buf;
+    private int count;
+    private char[] chars = new char[0];
+    private int[] stack = new int[32];
+    private int depth;
+
+    public JsonWriter() {
+        this(null, DEFAULT_BUFFER_SIZE);
+    }
+
+    public JsonWriter(OutputStream out) {
+        this(out, DEFAULT_BUFFER_SIZE);
+    }
+
+    public JsonWriter(OutputStream out, int bufferSize) {
+        if (bufferSize < 64) {
+            throw new IllegalArgumentException("bufferSize must be at least 64");
+        }
+        this.out = out;
+        this.buf = new byte[bufferSize];
+        push(EMPTY_DOCUMENT);
+    }
+
+    /**
+     * Документ одним вызовом, для тестов и отладки.
+     */
+    public static String toJson(JsonValue value) {
+        JsonWriter writer = new JsonWriter();
+        writer.value(value);
+        return new String(writer.buf, 0, writer.count, StandardCharsets.UTF_8);
+    }
+
+    public JsonWriter beginObject() {
+        beforeValue();
+        push(EMPTY_OBJECT);
+        write('{');
+        return this;
+    }
+
+    public JsonWriter endObject() {
+        int scope = peek();
+        if (scope != EMPTY_OBJECT && scope != NONEMPTY_OBJECT) {
+            throw new IllegalStateException(scope == DANGLING_NAME ? "Expected value after name" : "Not in an object");
+        }
+        depth--;
+        write('}');
+        return this;
+    }
+
+    public JsonWriter beginArray() {
+        beforeValue();
+        push(EMPTY_ARRAY);
+        write('[');
+        return this;
+    }
+
+    public JsonWriter endArray() {
+        int scope = peek();
+        if (scope != EMPTY_ARRAY && scope != NONEMPTY_ARRAY) {
+            throw new IllegalStateException("Not in an array");
+        }
+        depth--;
+        write(']');
+        return this;
+    }
+
+    public JsonWriter name(String name) {
+        checkSurrogates(name);
+        beforeName();
+        writeQuoted(name);
+        write(':');
+        return this;
+    }
+
+    public JsonWriter value(String value) {
+        if (value == null) {
+            return nullValue();
+        }
+        checkSurrogates(value);
+        beforeValue();
+        writeQuoted(value);
+        return this;
+    }
+
+    public JsonWriter value(long value) {
+        beforeValue();
+        writeLong(value);
+        return this;
+    }
+
+    /**
+     * Кратчайшая запись, которая читается обратно в то же double.
+     * NaN и бесконечности в JSON непредставимы.
+     */
+    public JsonWriter value(double value) {
+        checkFinite(value);
+        beforeValue();
+        writeDouble(value);
+        return this;
+    }
+
+    public JsonWriter value(boolean value) {
+        beforeValue();
+        write(value ? TRUE : FALSE);
+        return this;
+    }
+
+    public JsonWriter nullValue() {
+        beforeValue();
+        write(NULL);
+        return this;
+    }
+
+    /**
+     * Записывает дерево целиком; ленивые значения материализуются,
+     * представления JsonTape пишутся прямо с ленты.
+     */
+    public JsonWriter value(JsonValue value) {
+        switch (value) {
+            case null -> nullValue();
+            case JsonObject obj -> {
+                beginObject();
+                for (int i = 0; i < obj.size(); i++) {
+                    name(obj.keyAt(i));
+                    value(obj.valueAt(i));
+                }
+                endObject();
+            }
+            case JsonArray arr -> {
+                beginArray();
+                for (int i = 0; i < arr.size(); i++) {
+                    value(arr.get(i));
+                }
+                endArray();
+            }
+            case JsonString s -> value(s.getValue());
+            case JsonNumber n -> {
+                if (!n.isFinite()) {
+                    checkFinite(n.doubleValue());
+                }
+                beforeValue();
+                n.writeTo(this);
+            }
+            case JsonBoolean b -> value(b.getValue());
+            case JsonNull _ -> nullValue();
+            case TapeObject t -> t.writeTo(this);
+            case TapeArray t -> t.writeTo(this);
+            case LazyValue lazy -> value(lazy.materialize());
+            default -> throw new IllegalArgumentException("Unsupported value: " + value.getClass().getName());
+        }
+        return this;
+    }
+
+    /**
+     * Число байт в буфере, ещё не сброшенных в поток.
+     */
+    public int size() {
+        return count;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buf, count);
+    }
+
+    /**
+     * Копирует накопленные байты в dst с его позиции и очищает буфер;
+     * BufferOverflowException, если в dst не хватает места.
+     */
+    public void writeTo(ByteBuffer dst) {
+        dst.put(buf, 0, count);
+        count = 0;
+    }
+
+    /**
+     * Начинает новый документ: буфер очищается, но остаётся выделенным.
+     */
+    public void reset() {
+        count = 0;
+        depth = 0;
+        push(EMPTY_DOCUMENT);
+    }
+
+    @Override
+    public void flush() {
+        if (out == null) {
+            return;
+        }
+        flushBuffer();
+        try {
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Сбрасывает буфер и закрывает поток; незаконченный документ — ошибка,
+     * но поток закрывается и в этом случае.
+     */
+    @Override
+    public void close() {
+        final boolean incomplete = depth > 1 || peek() != NONEMPTY_DOCUMENT;
+        if (out != null) {
+            try {
+                flushBuffer();
+            } finally {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+        if (incomplete) {
+            throw new IllegalStateException("Incomplete document");
+        }
+    }
+
+    // === Приёмники для JsonNumber и JsonTape, значение уже открыто beforeValue() ===
+
+    void writeLong(long value) {
+        if (value == Long.MIN_VALUE) {
+            write(LONG_MIN);
+            return;
+        }
+        require(20);
+        if (value < 0) {
+            buf[count++] = '-';
+            value = -value;
+        }
+        count += digits(value);
+        writeDigits(value, count);
+    }
+
+    void writeDouble(double value) {
+        checkFinite(value);
+        // Double.toString с JDK 19 — кратчайшее представление (Schubfach) в ASCII
+        writeAscii(Double.toString(value));
+    }
+
+    /**
+     * unscaled * 10^-scale без BigDecimal: дробь вставляется в цифры, а
+     * слишком длинные нули заменяются порядком, как в BigDecimal.toString.
+     */
+    void writeScaled(long unscaled, int scale) {
+        if (scale == 0) {
+            writeLong(unscaled);
+            return;
+        }
+        if (unscaled == Long.MIN_VALUE) {
+            writeAscii(BigDecimal.valueOf(unscaled, scale).toString());
+            return;
+        }
+        require(48);
+        if (unscaled < 0) {
+            buf[count++] = '-';
+            unscaled = -unscaled;
+        }
+        int n = digits(unscaled);
+        if (scale < 0 || scale - n > 6) {
+            count += n;
+            writeDigits(unscaled, count);
+            buf[count++] = 'E';
+            writeExponent(-scale);
+        } else if (n > scale) {
+            // 12.345: цифры сдвигаются, освобождая место под точку
+            writeDigits(unscaled, count + n);
+            int point = count + n - scale;
+            System.arraycopy(buf, point, buf, point + 1, scale);
+            buf[point] = '.';
+            count += n + 1;
+        } else {
+            // 0.00123
+            buf[count++] = '0';
+            buf[count++] = '.';
+            for (int i = n; i < scale; i++) {
+                buf[count++] = '0';
+            }
+            count += n;
+            writeDigits(unscaled, count);
+        }
+    }
+
+    private void writeExponent(int exp) {
+        if (exp < 0) {
+            buf[count++] = '-';
+            exp = -exp;
+        }
+        count += digits(exp);
+        writeDigits(exp, count);
+    }
+
+    // Лексема, состоящая только из ASCII: число с ленты или из BigDecimal
+    void writeAscii(String ascii) {
+        int length = ascii.length();
+        require(length);
+        for (int i = 0; i < length; i++) {
+            buf[count + i] = (byte) ascii.charAt(i);
+        }
+        count += length;
+    }
+
+    void writeAscii(char[] ascii, int offset, int length) {
+        require(length);
+        for (int i = 0; i < length; i++) {
+            buf[count + i] = (byte) ascii[offset + i];
+        }
+        count += length;
+    }
+
+    void name(char[] name, int offset, int length) {
+        checkSurrogates(name, offset, length);
+        beforeName();
+        writeQuoted(name, offset, length);
+        write(':');
+    }
+
+    void value(char[] value, int offset, int length) {
+        checkSurrogates(value, offset, length);
+        beforeValue();
+        writeQuoted(value, offset, length);
+    }
+
+    void beforeValue() {
+        switch (peek()) {
+            case EMPTY_DOCUMENT -> replaceTop(NONEMPTY_DOCUMENT);
+            case NONEMPTY_DOCUMENT -> throw new IllegalStateException("JSON must have only one top-level value");
+            case EMPTY_ARRAY -> replaceTop(NONEMPTY_ARRAY);
+            case NONEMPTY_ARRAY -> write(',');
+            case DANGLING_NAME -> replaceTop(NONEMPTY_OBJECT);
+            default -> throw new IllegalStateException("Expected name in object");
+        }
+    }
+
+    private void beforeName() {
+        switch (peek()) {
+            case EMPTY_OBJECT -> replaceTop(DANGLING_NAME);
+            case NONEMPTY_OBJECT -> {
+                write(',');
+                replaceTop(DANGLING_NAME);
+            }
+            default -> throw new IllegalStateException("Name outside of object");
+        }
+    }
+
+    private static void checkFinite(double value) {
+        if (!Double.isFinite(value)) {
+            throw new IllegalArgumentException("JSON cannot represent " + value);
+        }
+    }
+
+    // === Строки ===
+
+    // Проверка до beforeValue()/beforeName(): непарный суррогат не должен оставить полстроки в буфере
+    private static void checkSurrogates(String s) {
+        int length = s.length();
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if (Character.isSurrogate(c)) {
+                if (!Character.isHighSurrogate(c) || i + 1 == length || !Character.isLowSurrogate(s.charAt(i + 1))) {
+                    throw unpairedSurrogate(c);
+                }
+                i++;
+            }
+        }
+    }
+
+    private static void checkSurrogates(char[] s, int offset, int length) {
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            char c = s[i];
+            if (Character.isSurrogate(c)) {
+                if (!Character.isHighSurrogate(c) || i + 1 == end || !Character.isLowSurrogate(s[i + 1])) {
+                    throw unpairedSurrogate(c);
+                }
+                i++;
+            }
+        }
+    }
+
+    private static IllegalArgumentException unpairedSurrogate(char c) {
+        return new IllegalArgumentException("Unpaired surrogate U+" + Integer.toHexString(c).toUpperCase() + " in string");
+    }
+
+    private void writeQuoted(String s) {
+        write('"');
+        int length = s.length();
+        if (chars.length < Math.min(length, CHUNK)) {
+            chars = new char[CHUNK];
+        }
+        for (int i = 0; i < length; ) {
+            int n = Math.min(length - i, CHUNK);
+            // Старший суррогат в конце куска кодируется вместе с парой из следующего
+            if (n < length - i && Character.isHighSurrogate(s.charAt(i + n - 1))) {
+                n--;
+            }
+            s.getChars(i, i + n, chars, 0);
+            encode(chars, 0, n);
+            i += n;
+        }
+        write('"');
+    }
+
+    private void writeQuoted(char[] s, int offset, int length) {
+        write('"');
+        int end = offset + length;
+        for (int i = offset; i < end; ) {
+            int n = Math.min(end - i, CHUNK);
+            if (i + n < end && Character.isHighSurrogate(s[i + n - 1])) {
+                n--;
+            }
+            encode(s, i, n);
+            i += n;
+        }
+        write('"');
+    }
+
+    // Экранирование по JSON и кодирование в UTF-8; суррогаты уже проверены checkSurrogates()
+    private void encode(char[] s, int offset, int length) {
+        require(6 * length);
+        byte[] b = buf;
+        int p = count;
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            char c = s[i];
+            if (c < 0x80) {
+                byte[] escape = ESCAPES[c];
+                if (escape == null) {
+                    b[p++] = (byte) c;
+                } else {
+                    System.arraycopy(escape, 0, b, p, escape.length);
+                    p += escape.length;
+                }
+            } else if (c < 0x800) {
+                b[p++] = (byte) (0xC0 | c >> 6);
+                b[p++] = (byte) (0x80 | c & 0x3F);
+            } else if (!Character.isSurrogate(c)) {
+                b[p++] = (byte) (0xE0 | c >> 12);
+                b[p++] = (byte) (0x80 | c >> 6 & 0x3F);
+                b[p++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(s[i + 1])) {
+                int cp = Character.toCodePoint(c, s[++i]);
+                b[p++] = (byte) (0xF0 | cp >> 18);
+                b[p++] = (byte) (0x80 | cp >> 12 & 0x3F);
+                b[p++] = (byte) (0x80 | cp >> 6 & 0x3F);
+                b[p++] = (byte) (0x80 | cp & 0x3F);
+            } else {
+                count = p;
+                throw unpairedSurrogate(c);
+            }
+        }
+        count = p;
+    }
+
+    // === Целые ===
+
+    private static int digits(long v) {
+        int n = 1;
+        while (v >= 10) {
+            v /= 10;
+            n++;
+        }
+        return n;
+    }
+
+    // Цифры неотрицательного v справа налево, заканчивая перед end
+    private void writeDigits(long v, int end) {
+        int p = end;
+        while (v >= 100) {
+            int pair = (int) (v % 100) * 2;
+            v /= 100;
+            buf[--p] = DIGIT_PAIRS[pair + 1];
+            buf[--p] = DIGIT_PAIRS[pair];
+        }
+        if (v >= 10) {
+            int pair = (int) v * 2;
+            buf[--p] = DIGIT_PAIRS[pair + 1];
+            buf[--p] = DIGIT_PAIRS[pair];
+        } else {
+            buf[--p] = (byte) ('0' + v);
+        }
+    }
+
+    // === Буфер ===
+
+    private void write(char c) {
+        require(1);
+        buf[count++] = (byte) c;
+    }
+
+    private void write(byte[] bytes) {
+        require(bytes.length);
+        System.arraycopy(bytes, 0, buf, count, bytes.length);
+        count += bytes.length;
+    }
+
+    // Гарантирует место под n байт: сбрасывает буфер в поток или растит его
+    private void require(int n) {
+        if (count + n <= buf.length) {
+            return;
+        }
+        if (out != null) {
+            flushBuffer();
+        }
+        if (count + n > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, count + n));
+        }
+    }
+
+    private void flushBuffer() {
+        try {
+            out.write(buf, 0, count);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        count = 0;
+    }
+
+    private int peek() {
+        return stack[depth - 1];
+    }
+
+    private void replaceTop(int scope) {
+        stack[depth - 1] = scope;
+    }
+
+    private void push(int scope) {
+        if (depth == stack.length) {
+            stack = Arrays.copyOf(stack, depth * 2);
+        }
+        stack[depth++] = scope;
+    }
+}
@@ -0,0 +1,89 @@
+package org.starodubov.json;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Кэш имён полей: одинаковые ключи во всех разобранных документах
+ * разделяют один экземпляр String, а при попадании строка не создаётся
+ * вовсе. Таблица прямого отображения фиксированного размера: при коллизии
+ * старая запись вытесняется. Записи неизменяемы, поэтому гонка при записи
+ * в слот безвредна и кэш можно использовать из нескольких потоков без
+ * блокировок.
+ */
+final class KeyCache {
+    // Длинные ключи редко повторяются, кэшировать их невыгодно
+    static final int MAX_LENGTH = 64;
+
+    private static final int SIZE = Integer.getInteger("org.starodubov.json.keyCacheSize", 4096);
+
+    static final KeyCache SHARED = new KeyCache(SIZE);
+
+    private record Entry(int hash, byte[] utf8, String value) {
+    }
+
+    private final Entry[] table;
+    private final int mask;
+
+    KeyCache(int size) {
+        int capacity = Integer.highestOneBit(Math.max(16, size - 1) << 1);
+        this.table = new Entry[capacity];
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Ключ из input[start..end) без escape-последовательностей.
+     */
+    String get(String input, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + input.charAt(i);
+        }
+        int slot = slot(h);
+        Entry e = table[slot];
+        int length = end - start;
+        if (e != null && e.hash == h && e.value.length() == length && input.startsWith(e.value, start)) {
+            return e.value;
+        }
+        String value = input.substring(start, end);
+        table[slot] = new Entry(h, value.getBytes(StandardCharsets.UTF_8), value);
+        return value;
+    }
+
+    /**
+     * Ключ из UTF-8 байтов buf[start..end) без escape-последовательностей.
+     * Для ASCII хэш совпадает с get(String, ...), так что записи общие.
+     */
+    String get(ByteBuffer buf, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + (buf.get(i) & 0xFF);
+        }
+        int slot = slot(h);
+        Entry e = table[slot];
+        if (e != null && e.hash == h && matches(e.utf8, buf, start, end)) {
+            return e.value;
+        }
+        byte[] utf8 = new byte[end - start];
+        buf.get(start, utf8);
+        String value = new String(utf8, StandardCharsets.UTF_8);
+        table[slot] = new Entry(h, utf8, value);
+        return value;
+    }
+
+    private static boolean matches(byte[] utf8, ByteBuffer buf, int start, int end) {
+        if (utf8.length != end - start) {
+            return false;
+        }
+        for (int i = 0; i < utf8.length; i++) {
+            if (utf8[i] != buf.get(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int slot(int h) {
+        return (h ^ h >>> 16) & mask;
+    }
+}
@@ -0,0 +1,141 @@
+package org.starodubov.json;
+
+import java.util.function.Supplier;
+
+import static org.starodubov.json.JsonLexer.*;
+
+/**
+ * Ещё не разобранное значение: смещение его первого токена во входе.
+ * Лежит в JsonObject/JsonArray вместо настоящего значения и заменяется
+ * результатом materialize() при первом обращении. Глубина вложенности
+ * проверяется уже при пролистывании, так что документ глубже maxDepth
+ * отвергается сразу, как в JsonParser.parse.
+ */
+final class LazyValue implements JsonValue {
+    private final Supplier<JsonLexer> source;
+    private final int start;
+    // Число контейнеров вокруг значения и предел вложенности парсера
+    private final int depth;
+    private final int maxDepth;
+    // Результат materialize() для тех, кто держит сам LazyValue (toString, JsonWriter); гонка безвредна
+    private JsonValue value;
+
+    private LazyValue(Supplier<JsonLexer> source, int start, int depth, int maxDepth) {
+        this.source = source;
+        this.start = start;
+        this.depth = depth;
+        this.maxDepth = maxDepth;
+    }
+
+    static JsonValue parse(Supplier<JsonLexer> source, int maxDepth) {
+        JsonLexer lexer = source.get();
+        JsonValue result = level(source, lexer, lexer.next(), 0, maxDepth);
+        int token = lexer.next();
+        if (token != EOF) {
+            throw new RuntimeException("Unexpected token after root value: " + lexer.describeToken(token));
+        }
+        return result;
+    }
+
+    JsonValue materialize() {
+        JsonValue result = value;
+        if (result == null) {
+            JsonLexer lexer = source.get();
+            lexer.seek(start);
+            result = level(source, lexer, lexer.next(), depth, maxDepth);
+            value = result;
+        }
+        return result;
+    }
+
+    // Разбирает один уровень контейнера; вложенные значения остаются ленивыми
+    private static JsonValue level(Supplier<JsonLexer> source, JsonLexer lexer, int token, int depth, int maxDepth) {
+        if ((token == LEFT_BRACE || token == LEFT_BRACKET) && depth == maxDepth) {
+            throw new RuntimeException("Maximum nesting depth " + maxDepth + " exceeded");
+        }
+        if (token == LEFT_BRACE) {
+            JsonObject obj = new JsonObject();
+            token = lexer.next();
+            if (token != RIGHT_BRACE) {
+                while (true) {
+                    expect(lexer, token, STRING);
+                    String key = lexer.keyValue();
+                    expect(lexer, lexer.next(), COLON);
+                    obj.add(key, member(source, lexer, lexer.next(), depth + 1, maxDepth));
+                    token = lexer.next();
+                    if (token != COMMA) {
+                        break;
+                    }
+                    token = lexer.next();
+                }
+                expect(lexer, token, RIGHT_BRACE);
+            }
+            return obj;
+        }
+        if (token == LEFT_BRACKET) {
+            JsonArray arr = new JsonArray();
+            token = lexer.next();
+            if (token != RIGHT_BRACKET) {
+                while (true) {
+                    arr.add(member(source, lexer, token, depth + 1, maxDepth));
+                    token = lexer.next();
+                    if (token != COMMA) {
+                        break;
+                    }
+                    token = lexer.next();
+                }
+                expect(lexer, token, RIGHT_BRACKET);
+            }
+            return arr;
+        }
+        return JsonParser.scalarValue(lexer, token);
+    }
+
+    // depth — число контейнеров вокруг члена
+    private static JsonValue member(Supplier<JsonLexer> source, JsonLexer lexer, int token, int depth, int maxDepth) {
+        return switch (token) {
+            case TRUE, FALSE, NULL -> JsonParser.scalarValue(lexer, token);
+            // tokenStart() строки указывает за открывающую кавычку
+            case STRING -> new LazyValue(source, lexer.tokenStart() - 1, depth, maxDepth);
+            case NUMBER -> new LazyValue(source, lexer.tokenStart(), depth, maxDepth);
+            case LEFT_BRACE, LEFT_BRACKET -> {
+                int from = lexer.tokenStart();
+                skip(lexer, depth, maxDepth);
+                yield new LazyValue(source, from, depth, maxDepth);
+            }
+            default -> throw new RuntimeException("Unexpected token: " + lexer.describeToken(token));
+        };
+    }
+
+    // Пролистывает поддерево до парной скобки, ничего не декодируя; вокруг открытой скобки depth контейнеров
+    private static void skip(JsonLexer lexer, int depth, int maxDepth) {
+        if (depth == maxDepth) {
+            throw new RuntimeException("Maximum nesting depth " + maxDepth + " exceeded");
+        }
+        int level = 1;
+        while (level > 0) {
+            int token = lexer.next();
+            if (token == LEFT_BRACE || token == LEFT_BRACKET) {
+                if (depth + level == maxDepth) {
+                    throw new RuntimeException("Maximum nesting depth " + maxDepth + " exceeded");
+                }
+                level++;
+            } else if (token == RIGHT_BRACE || token == RIGHT_BRACKET) {
+                level--;
+            } else if (token == EOF) {
+                throw new RuntimeException("Unexpected end of document");
+            }
+        }
+    }
+
+    private static void expect(JsonLexer lexer, int token, int expectedType) {
+        if (token != expectedType) {
+            throw new RuntimeException("Expected " + typeName(expectedType) + ", got " + lexer.describeToken(token));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return materialize().toString();
+    }
+}
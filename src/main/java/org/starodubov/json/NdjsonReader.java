@@ -0,0 +1,348 @@
+package org.starodubov.json;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Параллельное чтение NDJSON: каждая строка — отдельный документ. Вход
+ * режется на куски около chunkSize байт по границам строк, куски
+ * разбираются на executor (по умолчанию общий ForkJoinPool; подойдёт и
+ * Executors.newVirtualThreadPerTaskExecutor()). Одновременно в работе не
+ * больше maxInFlight кусков, так что память ограничена независимо от
+ * размера файла. Пустые строки пропускаются.
+ * <p>
+ * Экземпляр не хранит состояния между вызовами и может использоваться
+ * из нескольких потоков.
+ */
+public final class NdjsonReader {
+    public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+    private final Executor executor;
+    private final int chunkSize;
+    private final int maxInFlight;
+
+    public NdjsonReader() {
+        this(ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+    }
+
+    public NdjsonReader(Executor executor, int chunkSize) {
+        this(executor, chunkSize, 2 * Runtime.getRuntime().availableProcessors());
+    }
+
+    public NdjsonReader(Executor executor, int chunkSize, int maxInFlight) {
+        if (chunkSize <= 0 || maxInFlight <= 0) {
+            throw new IllegalArgumentException("chunkSize and maxInFlight must be positive");
+        }
+        this.executor = executor;
+        this.chunkSize = chunkSize;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Документы в порядке строк; action вызывается в текущем потоке.
+     */
+    public void forEach(ByteBuffer input, Consumer<? super JsonValue> action) {
+        try (var pipeline = new Pipeline(new MemoryChunks(input))) {
+            pipeline.forEachRemaining(values -> values.forEach(action));
+        }
+    }
+
+    public void forEach(Path file, Consumer<? super JsonValue> action) {
+        try (var pipeline = new Pipeline(new FileChunks(file))) {
+            pipeline.forEachRemaining(values -> values.forEach(action));
+        }
+    }
+
+    /**
+     * Документы в порядке готовности; action вызывается из рабочих потоков
+     * одновременно и должен быть потокобезопасным.
+     */
+    public void forEachUnordered(ByteBuffer input, Consumer<? super JsonValue> action) {
+        unordered(new MemoryChunks(input), action);
+    }
+
+    public void forEachUnordered(Path file, Consumer<? super JsonValue> action) {
+        unordered(new FileChunks(file), action);
+    }
+
+    /**
+     * Упорядоченный ленивый поток документов.
+     */
+    public Stream<JsonValue> stream(ByteBuffer input) {
+        return stream(new Pipeline(new MemoryChunks(input)));
+    }
+
+    /**
+     * Упорядоченный ленивый поток документов файла; поток нужно закрыть.
+     */
+    public Stream<JsonValue> stream(Path file) {
+        return stream(new Pipeline(new FileChunks(file)));
+    }
+
+    private static Stream<JsonValue> stream(Pipeline pipeline) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(pipeline, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .flatMap(List::stream)
+                .onClose(pipeline::close);
+    }
+
+    private void unordered(Chunks chunks, Consumer<? super JsonValue> action) {
+        Semaphore permits = new Semaphore(maxInFlight);
+        // Любая ошибка задачи, включая Error: иначе executor проглотит её, а записи пропадут молча
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        try (chunks) {
+            try {
+                Chunk chunk;
+                while (failure.get() == null && (chunk = chunks.next()) != null) {
+                    permits.acquireUninterruptibly();
+                    Chunk c = chunk;
+                    try {
+                        executor.execute(() -> {
+                            try {
+                                parse(c, action);
+                            } catch (Throwable e) {
+                                failure.compareAndSet(null, e);
+                            } finally {
+                                permits.release();
+                            }
+                        });
+                    } catch (RuntimeException e) {
+                        // Задача не принята, например RejectedExecutionException
+                        permits.release();
+                        throw e;
+                    }
+                }
+            } finally {
+                // Дожидаемся всех запущенных кусков, даже если подача прервалась:
+                // после возврата action больше не вызывается
+                permits.acquireUninterruptibly(maxInFlight);
+            }
+        }
+        Throwable e = failure.get();
+        if (e instanceof RuntimeException runtime) {
+            throw runtime;
+        }
+        if (e instanceof Error error) {
+            throw error;
+        }
+        if (e != null) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // Разбирает строки куска по очереди одним парсером
+    private static void parse(Chunk chunk, Consumer<? super JsonValue> action) {
+        ByteBuffer data = chunk.data();
+        JsonParser parser = new JsonParser();
+        int limit = data.limit();
+        int start = 0;
+        while (start < limit) {
+            int end = start;
+            while (end < limit && data.get(end) != '\n') {
+                end++;
+            }
+            if (!isBlank(data, start, end)) {
+                JsonValue value;
+                try {
+                    value = parser.parse(data.slice(start, end - start));
+                } catch (RuntimeException e) {
+                    throw new RuntimeException("Invalid NDJSON record at byte " + (chunk.offset() + start) + ": " + e.getMessage(), e);
+                }
+                // Исключение из action пробрасывается как есть
+                action.accept(value);
+            }
+            start = end + 1;
+        }
+    }
+
+    private static boolean isBlank(ByteBuffer data, int start, int end) {
+        for (int i = start; i < end; i++) {
+            byte b = data.get(i);
+            if (b != ' ' && b != '\t' && b != '\r') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Кусок входа из целых строк и его смещение во входе
+    private record Chunk(ByteBuffer data, long offset) {
+    }
+
+    private interface Chunks extends Closeable {
+        // null, когда вход закончился
+        Chunk next();
+
+        @Override
+        void close();
+    }
+
+    // Упорядоченная выдача: не больше maxInFlight кусков разбираются заранее
+    private final class Pipeline implements Iterator<List<JsonValue>>, Closeable {
+        private final Chunks chunks;
+        private final ArrayDeque<CompletableFuture<List<JsonValue>>> inFlight = new ArrayDeque<>();
+        private boolean exhausted;
+
+        Pipeline(Chunks chunks) {
+            this.chunks = chunks;
+        }
+
+        private void fill() {
+            while (!exhausted && inFlight.size() < maxInFlight) {
+                Chunk chunk = chunks.next();
+                if (chunk == null) {
+                    exhausted = true;
+                    break;
+                }
+                inFlight.add(CompletableFuture.supplyAsync(() -> {
+                    List<JsonValue> values = new ArrayList<>();
+                    parse(chunk, values::add);
+                    return values;
+                }, executor));
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            fill();
+            return !inFlight.isEmpty();
+        }
+
+        @Override
+        public List<JsonValue> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            try {
+                return inFlight.poll().join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                if (e.getCause() instanceof Error cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+
+        @Override
+        public void close() {
+            inFlight.forEach(f -> f.cancel(false));
+            inFlight.clear();
+            chunks.close();
+        }
+    }
+
+    // Куски — срезы буфера без копирования
+    private final class MemoryChunks implements Chunks {
+        private final ByteBuffer input;
+        private int position;
+
+        MemoryChunks(ByteBuffer input) {
+            this.input = input.slice();
+        }
+
+        @Override
+        public Chunk next() {
+            int limit = input.limit();
+            if (position >= limit) {
+                return null;
+            }
+            int end = (int) Math.min((long) position + chunkSize, limit);
+            while (end < limit && input.get(end - 1) != '\n') {
+                end++;
+            }
+            Chunk chunk = new Chunk(input.slice(position, end - position), position);
+            position = end;
+            return chunk;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    // Файл читается последовательно в свежие массивы; хвост незаконченной строки переносится в следующий кусок
+    private final class FileChunks implements Chunks {
+        private final FileChannel channel;
+        private long position;
+        private byte[] carry = new byte[0];
+        private boolean eof;
+
+        FileChunks(Path file) {
+            try {
+                this.channel = FileChannel.open(file, StandardOpenOption.READ);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public Chunk next() {
+            if (eof && carry.length == 0) {
+                return null;
+            }
+            long offset = position - carry.length;
+            byte[] buf = new byte[Math.max(chunkSize, carry.length * 2)];
+            System.arraycopy(carry, 0, buf, 0, carry.length);
+            int n = carry.length;
+            try {
+                while (true) {
+                    while (!eof && n < buf.length) {
+                        int read = channel.read(ByteBuffer.wrap(buf, n, buf.length - n), position);
+                        if (read < 0) {
+                            eof = true;
+                        } else {
+                            n += read;
+                            position += read;
+                        }
+                    }
+                    int last = n - 1;
+                    while (last >= 0 && buf[last] != '\n') {
+                        last--;
+                    }
+                    if (eof || last >= 0) {
+                        int end = eof ? n : last + 1;
+                        carry = Arrays.copyOfRange(buf, end, n);
+                        return end == 0 ? null : new Chunk(ByteBuffer.wrap(buf, 0, end).slice(), offset);
+                    }
+                    // Строка длиннее куска
+                    buf = Arrays.copyOf(buf, buf.length * 2);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package org.starodubov.json;
+
+import java.math.BigInteger;
+
+/**
+ * Перевод десятичного числа w * 10^q в double без разбора строки:
+ * точный быстрый путь Клингера для малых степеней и алгоритм Эйзеля–Лемира
+ * (как в fast_float и strconv из Go) для остальных. Если результат нельзя
+ * гарантированно округлить правильно, возвращается NaN, и вызывающий
+ * разбирает лексему через Double.parseDouble.
+ */
+final class NumberConverter {
+    // Больше 19 десятичных цифр не помещается в беззнаковый long
+    static final int MAX_DIGITS = 19;
+
+    private static final int MIN_EXP10 = -348;
+    private static final int MAX_EXP10 = 347;
+
+    private static final double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    // 128-битные мантиссы 10^q с единицей в старшем бите, округлённые вниз
+    private static final long[] POW10_HI = new long[MAX_EXP10 - MIN_EXP10 + 1];
+    private static final long[] POW10_LO = new long[MAX_EXP10 - MIN_EXP10 + 1];
+
+    static {
+        for (int q = MIN_EXP10; q <= MAX_EXP10; q++) {
+            BigInteger m;
+            if (q >= 0) {
+                m = BigInteger.TEN.pow(q);
+                int shift = 128 - m.bitLength();
+                m = shift >= 0 ? m.shiftLeft(shift) : m.shiftRight(-shift);
+            } else {
+                BigInteger p = BigInteger.TEN.pow(-q);
+                m = BigInteger.ONE.shiftLeft(p.bitLength() + 127).divide(p);
+            }
+            POW10_HI[q - MIN_EXP10] = m.shiftRight(64).longValue();
+            POW10_LO[q - MIN_EXP10] = m.longValue();
+        }
+    }
+
+    private NumberConverter() {
+    }
+
+    /**
+     * w — беззнаковая мантисса не длиннее MAX_DIGITS цифр, q — десятичный порядок.
+     */
+    static double toDouble(long w, int q, boolean negative) {
+        if (w == 0 || q < -400) {
+            return negative ? -0.0 : 0.0;
+        }
+        if (q > 400) {
+            return negative ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+        }
+        // Оба множителя представимы точно, значит одно округление даёт верный результат
+        if (q >= -22 && q <= 22 && w >= 0 && w <= 1L << 53) {
+            double d = (double) w;
+            d = q < 0 ? d / POW10[-q] : d * POW10[q];
+            return negative ? -d : d;
+        }
+        return eiselLemire(w, q, negative);
+    }
+
+    private static double eiselLemire(long w, int q, boolean negative) {
+        if (q < MIN_EXP10 || q > MAX_EXP10) {
+            return Double.NaN;
+        }
+        int lz = Long.numberOfLeadingZeros(w);
+        w <<= lz;
+        long exp2 = ((217706L * q) >> 16) + 64 + 1023 - lz;
+
+        long hi = Math.unsignedMultiplyHigh(w, POW10_HI[q - MIN_EXP10]);
+        long lo = w * POW10_HI[q - MIN_EXP10];
+
+        // Младших 64 бит множителя может не хватить, уточняем по второй половине
+        if ((hi & 0x1FF) == 0x1FF && Long.compareUnsigned(lo + w, w) < 0) {
+            long yHi = Math.unsignedMultiplyHigh(w, POW10_LO[q - MIN_EXP10]);
+            long yLo = w * POW10_LO[q - MIN_EXP10];
+            long mergedHi = hi;
+            long mergedLo = lo + yHi;
+            if (Long.compareUnsigned(mergedLo, lo) < 0) {
+                mergedHi++;
+            }
+            if ((mergedHi & 0x1FF) == 0x1FF && mergedLo + 1 == 0 && Long.compareUnsigned(yLo + w, w) < 0) {
+                return Double.NaN;
+            }
+            hi = mergedHi;
+            lo = mergedLo;
+        }
+
+        long msb = hi >>> 63;
+        long mantissa = hi >>> (msb + 9);
+        exp2 -= 1 ^ msb;
+
+        // Ровно посередине между двумя double — нужна точная арифметика
+        if (lo == 0 && (hi & 0x1FF) == 0 && (mantissa & 3) == 1) {
+            return Double.NaN;
+        }
+
+        mantissa += mantissa & 1;
+        mantissa >>>= 1;
+        if (mantissa >>> 53 > 0) {
+            mantissa >>>= 1;
+            exp2++;
+        }
+        // Денормализованные числа и переполнение оставляем Double.parseDouble
+        if (exp2 < 1 || exp2 > 0x7FE) {
+            return Double.NaN;
+        }
+        long bits = exp2 << 52 | mantissa & 0x000FFFFFFFFFFFFFL;
+        if (negative) {
+            bits |= Long.MIN_VALUE;
+        }
+        return Double.longBitsToDouble(bits);
+    }
+}
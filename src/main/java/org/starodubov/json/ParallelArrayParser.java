@@ -0,0 +1,200 @@
+package org.starodubov.json;
+
+import org.starodubov.io.ByteSource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Параллельный разбор одного большого массива верхнего уровня. Быстрый
+ * предварительный проход следит только за кавычками, escape-символами и
+ * глубиной скобок и режет массив по запятым глубины 1 на диапазоны около
+ * rangeSize байт. Диапазоны — последовательности элементов через запятую —
+ * разбираются на executor, результаты склеиваются в JsonArray по порядку.
+ * Если корень не массив или вход меньше двух диапазонов, документ
+ * разбирается обычным JsonParser.
+ */
+final class ParallelArrayParser {
+    static final int MIN_RANGE_SIZE = 1 << 20;
+    static final int MAX_RANGE_SIZE = 64 << 20;
+
+    private ParallelArrayParser() {
+    }
+
+    // Диапазон [from, to) входа, готовый для токенизатора
+    private interface Ranges {
+        ByteBuffer slice(long from, long to);
+    }
+
+    // По несколько диапазонов на ядро, чтобы неравные куски не ждали самый медленный
+    static int rangeSize(long inputSize) {
+        long perCore = inputSize / (4L * Runtime.getRuntime().availableProcessors());
+        return Math.clamp(perCore, MIN_RANGE_SIZE, MAX_RANGE_SIZE);
+    }
+
+    static JsonValue parse(ByteBuffer input, Executor executor, int rangeSize, int maxDepth) {
+        ByteBuffer data = input.slice();
+        long[] cuts = data.limit() < 2L * rangeSize ? null : split(ByteSource.of(data), rangeSize);
+        if (cuts == null) {
+            return new JsonParser(maxDepth).parse(data);
+        }
+        return parseRanges(cuts, (from, to) -> data.slice((int) from, (int) (to - from)), executor, maxDepth);
+    }
+
+    // Каждый диапазон отображается в память отдельно, поэтому файл может быть больше 2 ГБ
+    static JsonValue parse(Path file, Executor executor, int rangeSize, int maxDepth) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long[] cuts = null;
+            if (channel.size() >= 2L * rangeSize) {
+                try (ByteSource source = ByteSource.map(file)) {
+                    cuts = split(source, rangeSize);
+                }
+            }
+            if (cuts == null) {
+                try (ByteSource source = ByteSource.map(file)) {
+                    return new JsonParser(maxDepth).parse(source);
+                }
+            }
+            return parseRanges(cuts, (from, to) -> {
+                try {
+                    return channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, executor, maxDepth);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Позиции разрезов: '[' корня, выбранные запятые глубины 1 и ']' корня;
+     * диапазон i — байты между cuts[i] и cuts[i + 1]. null, если корень не массив.
+     * Вложенные скобки не сверяются попарно — это сделает разбор диапазонов.
+     */
+    static long[] split(ByteSource source, int rangeSize) {
+        long[] cuts = new long[16];
+        int count = 0;
+        boolean started = false;
+        boolean finished = false;
+        boolean inString = false;
+        int depth = 0;
+
+        ByteBuffer buf = source.buffer();
+        int limit = source.limit();
+        int i = 0;
+        while (true) {
+            if (i >= limit) {
+                int shift = source.fill(limit);
+                if (shift < 0) {
+                    break;
+                }
+                // i может указывать за окно, если там был пропущенный escape-символ
+                i -= shift;
+                buf = source.buffer();
+                limit = source.limit();
+                continue;
+            }
+            int c = buf.get(i);
+            if (inString) {
+                if (c == '\\') {
+                    i++;
+                } else if (c == '"') {
+                    inString = false;
+                }
+            } else if (depth == 0) {
+                if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                    if (finished) {
+                        throw new RuntimeException("Unexpected data after root value at position " + (source.offset() + i));
+                    }
+                    if (c != '[') {
+                        return null;
+                    }
+                    started = true;
+                    depth = 1;
+                    cuts[count++] = source.offset() + i;
+                }
+            } else {
+                switch (c) {
+                    case '"' -> inString = true;
+                    case '[', '{' -> depth++;
+                    case ']', '}' -> {
+                        if (--depth == 0) {
+                            if (c != ']') {
+                                throw new RuntimeException("Expected ], got } at position " + (source.offset() + i));
+                            }
+                            finished = true;
+                            if (count == cuts.length) {
+                                cuts = Arrays.copyOf(cuts, count * 2);
+                            }
+                            cuts[count++] = source.offset() + i;
+                        }
+                    }
+                    case ',' -> {
+                        long at = source.offset() + i;
+                        if (depth == 1 && at - cuts[count - 1] >= rangeSize) {
+                            if (count == cuts.length) {
+                                cuts = Arrays.copyOf(cuts, count * 2);
+                            }
+                            cuts[count++] = at;
+                        }
+                    }
+                    default -> {
+                    }
+                }
+            }
+            i++;
+        }
+        if (!started) {
+            return null;
+        }
+        if (!finished) {
+            throw new RuntimeException(inString ? "Unterminated string" : "Unexpected end of input: unclosed array");
+        }
+        return Arrays.copyOf(cuts, count);
+    }
+
+    private static JsonValue parseRanges(long[] cuts, Ranges ranges, Executor executor, int maxDepth) {
+        int n = cuts.length - 1;
+        List<CompletableFuture<List<JsonValue>>> parts = new ArrayList<>(n);
+        for (int r = 0; r < n; r++) {
+            long from = cuts[r] + 1;
+            long to = cuts[r + 1];
+            // Пустым может быть только единственный диапазон: "[ ]"
+            boolean allowEmpty = n == 1;
+            parts.add(CompletableFuture.supplyAsync(() -> {
+                List<JsonValue> values = new ArrayList<>();
+                try {
+                    new JsonParser(maxDepth).parseElements(new Utf8JsonTokenizer(ranges.slice(from, to)), values, allowEmpty);
+                } catch (RuntimeException e) {
+                    throw new RuntimeException("Invalid array elements at byte " + from + ": " + e.getMessage(), e);
+                }
+                return values;
+            }, executor));
+        }
+
+        JsonArray result = new JsonArray();
+        try {
+            for (CompletableFuture<List<JsonValue>> part : parts) {
+                result.addAll(part.join());
+            }
+        } catch (CompletionException e) {
+            parts.forEach(f -> f.cancel(false));
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+        return result;
+    }
+}
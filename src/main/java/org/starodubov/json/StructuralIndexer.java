@@ -0,0 +1,156 @@
+package org.starodubov.json;
+
+import java.util.Arrays;
+
+/**
+ * Первая стадия двухпроходного разбора (как в simdjson): по блокам из 64 байт
+ * строит битовые маски кавычек, обратных слэшей, структурных и пробельных
+ * символов и собирает из них позиции структурных символов вне строк,
+ * открывающих кавычек и начал литералов. Вторая стадия (IndexedJsonTokenizer)
+ * ходит только по этим позициям.
+ * <p>
+ * Классификация блока — единственная часть, зависящая от реализации:
+ * скалярная работает везде, векторная использует jdk.incubator.vector.
+ */
+abstract class StructuralIndexer {
+    static final int BLOCK = 64;
+
+    // Индексы масок в classify()
+    static final int QUOTE = 0;
+    static final int BACKSLASH = 1;
+    static final int OP = 2;
+    static final int WHITESPACE = 3;
+
+    private static final long EVEN_BITS = 0x5555555555555555L;
+
+    static final StructuralIndexer SCALAR = new Scalar();
+
+    private static final StructuralIndexer DEFAULT = select();
+
+    static StructuralIndexer get() {
+        return DEFAULT;
+    }
+
+    // Векторная реализация, если модуль jdk.incubator.vector доступен и не выключен флагом
+    private static StructuralIndexer select() {
+        if (!Boolean.parseBoolean(System.getProperty("org.starodubov.json.vector", "true"))) {
+            return SCALAR;
+        }
+        try {
+            return new VectorStructuralIndexer();
+        } catch (LinkageError e) {
+            return SCALAR;
+        }
+    }
+
+    /**
+     * Заполняет masks[QUOTE..WHITESPACE] для 64 байт in[offset..offset+64).
+     */
+    abstract void classify(byte[] in, int offset, long[] masks);
+
+    /**
+     * Возвращает позиции структурных символов по возрастанию; за последней
+     * позицией стоит length как признак конца.
+     */
+    final int[] index(byte[] input, int length) {
+        int[] positions = new int[Math.max(16, length / 4 + 1)];
+        int count = 0;
+        long[] masks = new long[4];
+
+        long prevEscaped = 0;
+        long prevInString = 0;
+        long prevScalar = 0;
+
+        for (int block = 0; block < length; block += BLOCK) {
+            if (block + BLOCK <= length) {
+                classify(input, block, masks);
+            } else {
+                // Хвост дополняем пробелами до целого блока
+                byte[] tail = new byte[BLOCK];
+                Arrays.fill(tail, (byte) ' ');
+                System.arraycopy(input, block, tail, 0, length - block);
+                classify(tail, 0, masks);
+            }
+
+            // Экранированные символы: нечётные последовательности обратных слэшей
+            long backslash = masks[BACKSLASH] & ~prevEscaped;
+            long followsEscape = backslash << 1 | prevEscaped;
+            long oddSequenceStarts = backslash & ~EVEN_BITS & ~followsEscape;
+            long sequencesStartingOnEvenBits = oddSequenceStarts + backslash;
+            prevEscaped = Long.compareUnsigned(sequencesStartingOnEvenBits, backslash) < 0 ? 1 : 0;
+            long invertMask = sequencesStartingOnEvenBits << 1;
+            long escaped = (EVEN_BITS ^ invertMask) & followsEscape;
+
+            // Внутри строки: префиксный XOR по неэкранированным кавычкам
+            long quote = masks[QUOTE] & ~escaped;
+            long inString = prefixXor(quote) ^ prevInString;
+            prevInString = inString >> 63;
+
+            // Начала литералов — не структурный и не пробельный символ после структурного или пробела
+            long op = masks[OP];
+            long scalar = ~(op | masks[WHITESPACE]);
+            long nonQuoteScalar = scalar & ~quote;
+            long followsNonQuoteScalar = nonQuoteScalar << 1 | prevScalar;
+            prevScalar = nonQuoteScalar >>> 63;
+
+            // Содержимое строки и закрывающая кавычка выбрасываются, открывающая остаётся
+            long stringTail = inString ^ quote;
+            long structurals = (op | (scalar & ~followsNonQuoteScalar)) & ~stringTail;
+            if (block + BLOCK > length) {
+                structurals &= (1L << (length - block)) - 1;
+            }
+
+            if (count + 64 > positions.length) {
+                positions = Arrays.copyOf(positions, Math.max(positions.length * 2, count + 65));
+            }
+            while (structurals != 0) {
+                positions[count++] = block + Long.numberOfTrailingZeros(structurals);
+                structurals &= structurals - 1;
+            }
+        }
+
+        if (prevInString != 0) {
+            throw new RuntimeException("Unterminated string");
+        }
+        if (count == positions.length) {
+            positions = Arrays.copyOf(positions, count + 1);
+        }
+        positions[count] = length;
+        return positions;
+    }
+
+    private static long prefixXor(long x) {
+        x ^= x << 1;
+        x ^= x << 2;
+        x ^= x << 4;
+        x ^= x << 8;
+        x ^= x << 16;
+        x ^= x << 32;
+        return x;
+    }
+
+    private static final class Scalar extends StructuralIndexer {
+        @Override
+        void classify(byte[] in, int offset, long[] masks) {
+            long quote = 0;
+            long backslash = 0;
+            long op = 0;
+            long whitespace = 0;
+            for (int i = 0; i < BLOCK; i++) {
+                long bit = 1L << i;
+                switch (in[offset + i]) {
+                    case '"' -> quote |= bit;
+                    case '\\' -> backslash |= bit;
+                    case '{', '}', '[', ']', ':', ',' -> op |= bit;
+                    case ' ', '\t', '\n', '\r' -> whitespace |= bit;
+                    default -> {
+                    }
+                }
+            }
+            masks[QUOTE] = quote;
+            masks[BACKSLASH] = backslash;
+            masks[OP] = op;
+            masks[WHITESPACE] = whitespace;
+        }
+    }
+}
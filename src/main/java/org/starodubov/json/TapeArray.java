@@ -0,0 +1,65 @@
+package org.starodubov.json;
+
+import java.util.function.Consumer;
+
+/**
+ * Массив на ленте JsonTape. get(i) проходит по ленте от начала массива,
+ * перескакивая вложенные контейнеры за O(1); для последовательного обхода
+ * дешевле forEach.
+ */
+public final class TapeArray implements JsonValue {
+    private final JsonTape tape;
+    private final int start;
+
+    TapeArray(JsonTape tape, int start) {
+        this.tape = tape;
+        this.start = start;
+    }
+
+    public JsonValue get(int index) {
+        if (index >= 0) {
+            int n = 0;
+            for (int i = start + 1; tape.tag(i) != JsonTape.ARRAY_END; i = tape.skip(i)) {
+                if (n++ == index) {
+                    return tape.value(i);
+                }
+            }
+        }
+        throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size());
+    }
+
+    public void forEach(Consumer<? super JsonValue> action) {
+        for (int i = start + 1; tape.tag(i) != JsonTape.ARRAY_END; i = tape.skip(i)) {
+            action.accept(tape.value(i));
+        }
+    }
+
+    void writeTo(JsonWriter out) {
+        tape.write(start, out);
+    }
+
+    public int size() {
+        int count = tape.count(start);
+        if (count < JsonTape.COUNT_LIMIT) {
+            return count;
+        }
+        count = 0;
+        for (int i = start + 1; tape.tag(i) != JsonTape.ARRAY_END; i = tape.skip(i)) {
+            count++;
+        }
+        return count;
+    }
+
+    // Тот же формат, что у JsonArray
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder().append('[');
+        for (int i = start + 1; tape.tag(i) != JsonTape.ARRAY_END; i = tape.skip(i)) {
+            if (i > start + 1) {
+                sb.append(", ");
+            }
+            sb.append(tape.value(i));
+        }
+        return sb.append(']').toString();
+    }
+}
@@ -0,0 +1,72 @@
+package org.starodubov.json;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Объект на ленте JsonTape: только ссылка на ленту и индекс открывающей
+ * скобки. Поиск поля идёт по ленте без создания строк ключей, значения
+ * создаются при обращении.
+ * <p>
+ * Повторяющиеся ключи лента хранит как в исходном тексте. get() отдаёт
+ * последнее значение, как JsonObject, но size(), toString() и JsonWriter
+ * видят все вхождения, а keys() — каждый ключ один раз.
+ */
+public final class TapeObject implements JsonValue {
+    private final JsonTape tape;
+    private final int start;
+
+    TapeObject(JsonTape tape, int start) {
+        this.tape = tape;
+        this.start = start;
+    }
+
+    // Проход до конца объекта: при повторе ключа побеждает последнее значение
+    public JsonValue get(String key) {
+        int found = -1;
+        for (int i = start + 1; tape.tag(i) != JsonTape.OBJECT_END; i = tape.skip(i + 1)) {
+            if (tape.stringEquals(i, key)) {
+                found = i + 1;
+            }
+        }
+        return found < 0 ? null : tape.value(found);
+    }
+
+    public Set<String> keys() {
+        Set<String> keys = new LinkedHashSet<>();
+        for (int i = start + 1; tape.tag(i) != JsonTape.OBJECT_END; i = tape.skip(i + 1)) {
+            keys.add(tape.string(i));
+        }
+        return Collections.unmodifiableSet(keys);
+    }
+
+    void writeTo(JsonWriter out) {
+        tape.write(start, out);
+    }
+
+    public int size() {
+        int count = tape.count(start);
+        if (count < JsonTape.COUNT_LIMIT) {
+            return count;
+        }
+        count = 0;
+        for (int i = start + 1; tape.tag(i) != JsonTape.OBJECT_END; i = tape.skip(i + 1)) {
+            count++;
+        }
+        return count;
+    }
+
+    // Тот же формат, что у JsonObject
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder().append('{');
+        for (int i = start + 1; tape.tag(i) != JsonTape.OBJECT_END; i = tape.skip(i + 1)) {
+            if (i > start + 1) {
+                sb.append(", ");
+            }
+            sb.append(tape.string(i)).append('=').append(tape.value(i + 1));
+        }
+        return sb.append('}').toString();
+    }
+}
@@ -0,0 +1,574 @@
+package org.starodubov.json;
+
+import org.starodubov.io.ByteSource;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Токенизатор, читающий UTF-8 байты напрямую из ByteBuffer (heap или direct),
+ * без предварительного декодирования в String. Позиции токенов — индексы
+ * в буфере текущего окна источника; текст токена доступен до следующего
+ * вызова next(). Буфер, переданный напрямую, читается по абсолютным
+ * индексам от его position() без ByteSource.
+ */
+class Utf8JsonTokenizer implements JsonLexer {
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+    // Образцы для поиска байта в слове, см. scanQuoteOrBackslash()
+    private static final long QUOTES = 0x2222222222222222L;
+    private static final long BACKSLASHES = 0x5C5C5C5C5C5C5C5CL;
+    private static final long LOW_7_BITS = 0x7F7F7F7F7F7F7F7FL;
+    private static final char REPLACEMENT = '\uFFFD';
+
+    // null, когда разбирается один буфер целиком
+    private ByteSource source;
+    // Индекс начала входа в буфере без источника
+    private int origin;
+    private ByteBuffer buf;
+    private int limit;
+    private int pos = 0;
+    private int tokenStart;
+    private int tokenEnd;
+    // Встретились ли escape-последовательности в текущей строке
+    private boolean escaped;
+    // Буферы декодирования: выделяются при первой надобности и переживают reset()
+    private char[] scratch = new char[0];
+    private byte[] bytes = new byte[0];
+    // Разобранное при сканировании число
+    private long mantissa;
+    private int exp10;
+    private boolean negative;
+    private boolean mantissaExact;
+    private boolean integerLiteral;
+
+    Utf8JsonTokenizer(ByteBuffer input) {
+        reset(input);
+    }
+
+    Utf8JsonTokenizer(ByteSource source) {
+        reset(source);
+    }
+
+    // Переключает токенизатор на новый вход, сохраняя буферы
+    void reset(ByteBuffer input) {
+        this.source = null;
+        this.buf = input;
+        this.origin = input.position();
+        this.limit = input.limit();
+        restart(origin);
+    }
+
+    void reset(ByteSource source) {
+        this.source = source;
+        this.buf = source.buffer();
+        this.origin = 0;
+        this.limit = source.limit();
+        restart(0);
+    }
+
+    // Отпускает вход, чтобы закешированный токенизатор не держал его в памяти
+    void release() {
+        reset(EMPTY);
+    }
+
+    private void restart(int start) {
+        this.pos = start;
+        this.tokenStart = start;
+        this.tokenEnd = start;
+        this.escaped = false;
+    }
+
+    private int peek(int i) {
+        return buf.get(i) & 0xFF;
+    }
+
+    // Подгружает данные, сохраняя начало текущего токена
+    private boolean more() {
+        if (source == null) {
+            return false;
+        }
+        int shift = source.fill(tokenStart);
+        if (shift < 0) {
+            return false;
+        }
+        pos -= shift;
+        tokenStart -= shift;
+        tokenEnd -= shift;
+        buf = source.buffer();
+        limit = source.limit();
+        return true;
+    }
+
+    // Гарантирует, что доступны байты pos..pos+n
+    private boolean ensure(int n) {
+        while (pos + n >= limit) {
+            if (!more()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long position() {
+        return position(pos);
+    }
+
+    // Смещение индекса буфера от начала входа
+    private long position(int i) {
+        return source == null ? i - origin : source.offset() + i;
+    }
+
+    @Override
+    public void seek(int position) {
+        pos = position;
+    }
+
+    void skipWhitespace() {
+        tokenStart = pos;
+        while (pos < limit || more()) {
+            tokenStart = pos;
+            int c = peek(pos);
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                break;
+            }
+            pos++;
+        }
+    }
+
+    @Override
+    public int next() {
+        skipWhitespace();
+        tokenStart = pos;
+        if (pos >= limit && !more()) {
+            tokenEnd = pos;
+            return EOF;
+        }
+
+        int c = peek(pos);
+        switch (c) {
+            case '{':
+                return punct(LEFT_BRACE);
+            case '}':
+                return punct(RIGHT_BRACE);
+            case '[':
+                return punct(LEFT_BRACKET);
+            case ']':
+                return punct(RIGHT_BRACKET);
+            case ':':
+                return punct(COLON);
+            case ',':
+                return punct(COMMA);
+            case '"':
+                return readString();
+        }
+
+        if ((c >= '0' && c <= '9') || c == '-' || c == '+') {
+            return readNumber();
+        }
+
+        if (c == 't' && startsWith("true")) {
+            return keyword(TRUE, 4);
+        }
+        if (c == 'f' && startsWith("false")) {
+            return keyword(FALSE, 5);
+        }
+        if (c == 'n' && startsWith("null")) {
+            return keyword(NULL, 4);
+        }
+
+        throw new RuntimeException("Unexpected character: " + (char) c + " at position " + position());
+    }
+
+    @Override
+    public int tokenStart() {
+        return tokenStart;
+    }
+
+    @Override
+    public int tokenEnd() {
+        return tokenEnd;
+    }
+
+    @Override
+    public String lexeme() {
+        return decode(tokenStart, tokenEnd);
+    }
+
+    private int punct(int type) {
+        pos++;
+        tokenEnd = pos;
+        return type;
+    }
+
+    private int keyword(int type, int length) {
+        pos += length;
+        tokenEnd = pos;
+        return type;
+    }
+
+    private boolean startsWith(String word) {
+        if (!ensure(word.length() - 1)) {
+            return false;
+        }
+        for (int i = 0; i < word.length(); i++) {
+            if (peek(pos + i) != word.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Байты многобайтовых символов UTF-8 всегда >= 0x80, поэтому кавычку
+    // и обратный слэш можно искать побайтно — и по восемь байт за раз
+    private int readString() {
+        pos++; // пропускаем начальную "
+        tokenStart = pos;
+        escaped = false;
+
+        while (true) {
+            pos = scanQuoteOrBackslash(pos);
+            if (pos >= limit) {
+                if (!more()) {
+                    throw new RuntimeException("Unterminated string");
+                }
+                continue;
+            }
+            if (peek(pos) == '"') {
+                tokenEnd = pos;
+                pos++; // пропускаем закрывающую "
+                return STRING;
+            }
+            escaped = true;
+            skipEscape();
+        }
+    }
+
+    // Первый индекс в [i, limit) с '"' или '\\', либо limit. Полные слова
+    // проверяются SWAR: байт равен искомому, если слово XOR образец даёт в нём ноль
+    private int scanQuoteOrBackslash(int i) {
+        boolean bigEndian = buf.order() == ByteOrder.BIG_ENDIAN;
+        while (i + Long.BYTES <= limit) {
+            long word = buf.getLong(i);
+            long found = zeroBytes(word ^ QUOTES) | zeroBytes(word ^ BACKSLASHES);
+            if (found != 0) {
+                return i + (bigEndian ? Long.numberOfLeadingZeros(found) : Long.numberOfTrailingZeros(found)) / 8;
+            }
+            i += Long.BYTES;
+        }
+        while (i < limit) {
+            int c = peek(i);
+            if (c == '"' || c == '\\') {
+                return i;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    // Старший бит каждого нулевого байта; без ложных срабатываний от переносов
+    private static long zeroBytes(long x) {
+        return ~((x & LOW_7_BITS) + LOW_7_BITS | x | LOW_7_BITS);
+    }
+
+    // Проверяет escape-последовательность с '\\' в pos и встаёт после неё;
+    // суррогаты в \\u должны идти парой: старший, затем младший
+    private void skipEscape() {
+        pos++;
+        if (!ensure(0)) {
+            throw new RuntimeException("Unexpected end of string");
+        }
+        int c = peek(pos);
+        switch (c) {
+            case '"', '\\', '/', 'b', 'f', 'n', 'r', 't' -> pos++;
+            case 'u' -> {
+                // Подгрузка может сдвинуть индексы, поэтому позицию запоминаем абсолютной
+                long start = position(pos - 1);
+                char ch = unicodeEscape();
+                if (Character.isHighSurrogate(ch)) {
+                    if (!ensure(1) || peek(pos) != '\\' || peek(pos + 1) != 'u') {
+                        throw unpairedSurrogate(start);
+                    }
+                    pos++;
+                    if (!Character.isLowSurrogate(unicodeEscape())) {
+                        throw unpairedSurrogate(start);
+                    }
+                } else if (Character.isLowSurrogate(ch)) {
+                    throw unpairedSurrogate(start);
+                }
+            }
+            default -> throw new RuntimeException("Invalid escape: \\" + (char) c);
+        }
+    }
+
+    // Четыре шестнадцатеричные цифры после 'u' в pos; встаёт после них
+    private char unicodeEscape() {
+        if (!ensure(4)) {
+            throw new RuntimeException("Invalid unicode escape");
+        }
+        int value = 0;
+        for (int i = pos + 1; i <= pos + 4; i++) {
+            int d = hexValue(peek(i));
+            if (d < 0) {
+                throw new RuntimeException("Invalid unicode escape: \\u" + decode(pos + 1, pos + 5));
+            }
+            value = value << 4 | d;
+        }
+        pos += 5;
+        return (char) value;
+    }
+
+    private static RuntimeException unpairedSurrogate(long position) {
+        return new RuntimeException("Unpaired surrogate in \\u escape at position " + position);
+    }
+
+    private static int hexValue(int c) {
+        if (c >= '0' && c <= '9') return c - '0';
+        if (c >= 'a' && c <= 'f') return c - 'a' + 10;
+        if (c >= 'A' && c <= 'F') return c - 'A' + 10;
+        return -1;
+    }
+
+    @Override
+    public String stringValue() {
+        if (!escaped) {
+            return decode(tokenStart, tokenEnd);
+        }
+
+        // Со escape-последовательностями декодируем UTF-8 вручную в char[]
+        if (scratch.length < tokenEnd - tokenStart) {
+            scratch = new char[Math.max(64, tokenEnd - tokenStart)];
+        }
+        return new String(scratch, 0, decodeTo(scratch, 0));
+    }
+
+    @Override
+    public int copyString(char[] dst, int offset) {
+        return decodeTo(dst, offset) - offset;
+    }
+
+    @Override
+    public int copyLexeme(char[] dst, int offset) {
+        // Вне строк лексемы состоят только из ASCII
+        for (int i = tokenStart; i < tokenEnd; i++) {
+            dst[offset++] = (char) peek(i);
+        }
+        return tokenEnd - tokenStart;
+    }
+
+    // Декодирует содержимое текущей строки в out начиная с n, возвращает позицию после последнего символа
+    private int decodeTo(char[] out, int n) {
+        int i = tokenStart;
+        while (i < tokenEnd) {
+            int b = peek(i);
+            if (b == '\\') {
+                int c = peek(i + 1);
+                i += 2;
+                switch (c) {
+                    case '"', '\\', '/' -> out[n++] = (char) c;
+                    case 'b' -> out[n++] = '\b';
+                    case 'f' -> out[n++] = '\f';
+                    case 'n' -> out[n++] = '\n';
+                    case 'r' -> out[n++] = '\r';
+                    case 't' -> out[n++] = '\t';
+                    case 'u' -> {
+                        // Суррогатная пара проверена в readString() и записывается двумя char как есть
+                        out[n++] = (char) (hexValue(peek(i)) << 12
+                                | hexValue(peek(i + 1)) << 8
+                                | hexValue(peek(i + 2)) << 4
+                                | hexValue(peek(i + 3)));
+                        i += 4;
+                    }
+                    default -> throw new RuntimeException("Invalid escape: \\" + (char) c);
+                }
+            } else if (b < 0x80) {
+                out[n++] = (char) b;
+                i++;
+            } else {
+                // Как new String(..., UTF_8) в пути без escape: неверная последовательность
+                // (лишнее продолжение, overlong, больше U+10FFFF, обрыв) заменяется одним
+                // U+FFFD на наибольшую допустимую её начальную часть, суррогат — целиком
+                int len;
+                // Допустимый диапазон второго байта, дальше — обычное продолжение 0x80..0xBF
+                int lo = 0x80;
+                int hi = 0xBF;
+                if (b >= 0xC2 && b <= 0xDF) {
+                    len = 2;
+                } else if (b >= 0xE0 && b <= 0xEF) {
+                    len = 3;
+                    if (b == 0xE0) {
+                        lo = 0xA0;
+                    }
+                } else if (b >= 0xF0 && b <= 0xF4) {
+                    len = 4;
+                    if (b == 0xF0) {
+                        lo = 0x90;
+                    } else if (b == 0xF4) {
+                        hi = 0x8F;
+                    }
+                } else {
+                    out[n++] = REPLACEMENT;
+                    i++;
+                    continue;
+                }
+                int cp = b & (0x7F >> len);
+                int k = 1;
+                for (; k < len && i + k < tokenEnd; k++) {
+                    int c = peek(i + k);
+                    if (c < lo || c > hi) {
+                        break;
+                    }
+                    cp = cp << 6 | (c & 0x3F);
+                    lo = 0x80;
+                    hi = 0xBF;
+                }
+                if (k < len || (cp >= Character.MIN_SURROGATE && cp <= Character.MAX_SURROGATE)) {
+                    out[n++] = REPLACEMENT;
+                } else {
+                    n += Character.toChars(cp, out, n);
+                }
+                i += k;
+            }
+        }
+        return n;
+    }
+
+    @Override
+    public String keyValue() {
+        if (escaped || tokenEnd - tokenStart > KeyCache.MAX_LENGTH) {
+            return stringValue();
+        }
+        return KeyCache.SHARED.get(buf, tokenStart, tokenEnd);
+    }
+
+    // Без escape-последовательностей ASCII-значение сравнивается побайтно
+    @Override
+    public boolean stringEquals(String value) {
+        if (escaped) {
+            return stringValue().equals(value);
+        }
+        int length = tokenEnd - tokenStart;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= 0x80) {
+                return decode(tokenStart, tokenEnd).equals(value);
+            }
+            if (i >= length || peek(tokenStart + i) != c) {
+                return false;
+            }
+        }
+        return length == value.length();
+    }
+
+    private String decode(int start, int end) {
+        if (buf.hasArray()) {
+            return new String(buf.array(), buf.arrayOffset() + start, end - start, StandardCharsets.UTF_8);
+        }
+        // Direct-буфер копируется в переиспользуемый массив
+        if (bytes.length < end - start) {
+            bytes = new byte[Math.max(64, Math.max(end - start, bytes.length * 2))];
+        }
+        buf.get(start, bytes, 0, end - start);
+        return new String(bytes, 0, end - start, StandardCharsets.UTF_8);
+    }
+
+    // Цифры накапливаются прямо при сканировании, как в JsonTokenizer.readNumber()
+    private int readNumber() {
+        negative = peek(pos) == '-';
+        if (negative || peek(pos) == '+') {
+            pos++;
+        }
+        mantissa = 0;
+        exp10 = 0;
+        mantissaExact = true;
+        integerLiteral = true;
+        int significant = 0;
+        int digits = 0;
+
+        while (ensure(0) && isDigit(peek(pos))) {
+            int d = peek(pos++) - '0';
+            digits++;
+            if (significant < NumberConverter.MAX_DIGITS) {
+                mantissa = mantissa * 10 + d;
+                if (mantissa != 0) significant++;
+            } else {
+                exp10++;
+                if (d != 0) mantissaExact = false;
+            }
+        }
+
+        if (ensure(0) && peek(pos) == '.') {
+            pos++;
+            integerLiteral = false;
+            while (ensure(0) && isDigit(peek(pos))) {
+                int d = peek(pos++) - '0';
+                digits++;
+                if (significant < NumberConverter.MAX_DIGITS) {
+                    mantissa = mantissa * 10 + d;
+                    if (mantissa != 0) significant++;
+                    exp10--;
+                } else if (d != 0) {
+                    mantissaExact = false;
+                }
+            }
+        }
+        if (digits == 0) {
+            throw new RuntimeException("Invalid number: " + decode(tokenStart, pos));
+        }
+
+        if (ensure(0) && (peek(pos) == 'e' || peek(pos) == 'E')) {
+            pos++;
+            integerLiteral = false;
+            boolean negativeExp = false;
+            if (ensure(0) && (peek(pos) == '+' || peek(pos) == '-')) {
+                negativeExp = peek(pos) == '-';
+                pos++;
+            }
+            int expDigits = 0;
+            int exp = 0;
+            while (ensure(0) && isDigit(peek(pos))) {
+                exp = Math.min(exp * 10 + peek(pos++) - '0', 100_000);
+                expDigits++;
+            }
+            if (expDigits == 0) {
+                throw new RuntimeException("Invalid number: " + decode(tokenStart, pos));
+            }
+            exp10 += negativeExp ? -exp : exp;
+        }
+
+        tokenEnd = pos;
+        return NUMBER;
+    }
+
+    private static boolean isDigit(int c) {
+        return c >= '0' && c <= '9';
+    }
+
+    @Override
+    public double numberValue() {
+        if (mantissaExact) {
+            double d = NumberConverter.toDouble(mantissa, exp10, negative);
+            if (!Double.isNaN(d)) {
+                return d;
+            }
+        }
+        return Double.parseDouble(lexeme());
+    }
+
+    @Override
+    public JsonNumber jsonNumber() {
+        return mantissaExact
+                ? JsonNumber.of(mantissa, exp10, negative, integerLiteral)
+                : JsonNumber.of(lexeme());
+    }
+
+    @Override
+    public boolean isLongNumber() {
+        return mantissaExact && JsonNumber.fitsLong(mantissa, exp10, negative, integerLiteral);
+    }
+
+    @Override
+    public long longNumber() {
+        return negative ? -mantissa : mantissa;
+    }
+}
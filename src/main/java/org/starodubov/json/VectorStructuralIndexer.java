@@ -0,0 +1,46 @@
+package org.starodubov.json;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Классификация блока через jdk.incubator.vector: сравнения по 16-64 байта
+ * за инструкцию, маски сравнений собираются в 64-битные слова.
+ * Требует --add-modules jdk.incubator.vector.
+ */
+final class VectorStructuralIndexer extends StructuralIndexer {
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+    private static final int LANES = SPECIES.length();
+
+    @Override
+    void classify(byte[] in, int offset, long[] masks) {
+        long quote = 0;
+        long backslash = 0;
+        long op = 0;
+        long whitespace = 0;
+        for (int i = 0; i < BLOCK; i += LANES) {
+            ByteVector v = ByteVector.fromArray(SPECIES, in, offset + i);
+            quote |= v.eq((byte) '"').toLong() << i;
+            backslash |= v.eq((byte) '\\').toLong() << i;
+
+            // '[' | 0x20 == '{', ']' | 0x20 == '}'
+            ByteVector lower = v.or((byte) 0x20);
+            VectorMask<Byte> ops = lower.eq((byte) '{')
+                    .or(lower.eq((byte) '}'))
+                    .or(v.eq((byte) ':'))
+                    .or(v.eq((byte) ','));
+            op |= ops.toLong() << i;
+
+            VectorMask<Byte> ws = v.eq((byte) ' ')
+                    .or(v.eq((byte) '\t'))
+                    .or(v.eq((byte) '\n'))
+                    .or(v.eq((byte) '\r'));
+            whitespace |= ws.toLong() << i;
+        }
+        masks[QUOTE] = quote;
+        masks[BACKSLASH] = backslash;
+        masks[OP] = op;
+        masks[WHITESPACE] = whitespace;
+    }
+}
@@ -1,13 +1,44 @@
 package org.starodubov.ll1.json;
 import java.util.*;
 
+/**
+ * Экземпляр не потокобезопасен. Созданный без текста парсер переиспользуется
+ * через parse(String): состояние сбрасывается при каждом вызове, и кроме
+ * самих значений разбор ничего не аллоцирует.
+ * <p>
+ * Вложенность разбирается на явном стеке, а не рекурсией; документ глубже
+ * maxDepth отвергается исключением. По умолчанию предел тот же, что у
+ * JsonParser: 1000 или значение свойства org.starodubov.json.maxDepth.
+ */
 public class JsonParserLL1 {
-    private final String text;
+    public static final int DEFAULT_MAX_DEPTH = Integer.getInteger("org.starodubov.json.maxDepth", 1000);
+
+    private final int maxDepth;
+    private String text;
     private int pos;
+    private Object[] containers = new Object[16];
+    private String[] keys = new String[16];
+    private int depth;
+
+    public JsonParserLL1() {
+        this("");
+    }
+
+    public JsonParserLL1(int maxDepth) {
+        this("", maxDepth);
+    }
 
     public JsonParserLL1(String text) {
+        this(text, DEFAULT_MAX_DEPTH);
+    }
+
+    public JsonParserLL1(String text, int maxDepth) {
+        if (maxDepth < 1) {
+            throw new IllegalArgumentException("maxDepth must be positive: " + maxDepth);
+        }
         this.text = text;
         this.pos = 0;
+        this.maxDepth = maxDepth;
     }
 
     // === Утилиты ===
@@ -38,41 +69,131 @@ public class JsonParserLL1 {
 
     // === LL(1): выбор по первому символу ===
 
+    // Без рекурсии: открытые объекты и массивы лежат на явном стеке,
+    // ключи — рядом, под индексом своего объекта
+    @SuppressWarnings("unchecked")
     private Object parseValue() {
-        skipWhitespace();
-        char lookahead = peek();
-
-        switch (lookahead) {
-            case '"':
-                return parseString();
-            case '{':
-                return parseObject();
-            case '[':
-                return parseArray();
-            case 't':
-                return parseTrue();
-            case 'f':
-                return parseFalse();
-            case 'n':
-                return parseNull();
-            case '-', '+', '0', '1', '2', '3', '4', '5', '6', '7', '8', '9':
-                return parseNumber();
-            default:
-                throw new RuntimeException("Unexpected token at pos " + pos + ": '" + lookahead + "'");
+        try {
+            while (true) {
+                skipWhitespace();
+                char lookahead = peek();
+                Object value;
+
+                switch (lookahead) {
+                    case '"':
+                        value = parseString();
+                        break;
+                    case '{':
+                        enter();
+                        skipWhitespace();
+                        if (peek() == '}') {
+                            next();
+                            value = new HashMap<>();
+                            break;
+                        }
+                        push(new HashMap<String, Object>());
+                        key();
+                        continue;
+                    case '[':
+                        enter();
+                        skipWhitespace();
+                        if (peek() == ']') {
+                            next();
+                            value = new ArrayList<>();
+                            break;
+                        }
+                        push(new ArrayList<>());
+                        continue;
+                    case 't':
+                        value = parseTrue();
+                        break;
+                    case 'f':
+                        value = parseFalse();
+                        break;
+                    case 'n':
+                        value = parseNull();
+                        break;
+                    case '-', '+', '0', '1', '2', '3', '4', '5', '6', '7', '8', '9':
+                        value = parseNumber();
+                        break;
+                    default:
+                        throw new RuntimeException("Unexpected token at pos " + pos + ": '" + lookahead + "'");
+                }
+
+                // Значение готово: в контейнер на вершине стека; закрываем кончившиеся
+                while (true) {
+                    if (depth == 0) {
+                        return value;
+                    }
+                    int top = depth - 1;
+                    Object container = containers[top];
+                    skipWhitespace();
+                    if (container instanceof Map) {
+                        ((Map<String, Object>) container).put(keys[top], value);
+                        if (peek() == ',') {
+                            next();
+                            skipWhitespace();
+                            key();
+                            break;
+                        } else if (peek() != '}') {
+                            throw new RuntimeException("Expected ',' or '}' in object at pos " + pos);
+                        }
+                    } else {
+                        ((List<Object>) container).add(value);
+                        if (peek() == ',') {
+                            next();
+                            break;
+                        } else if (peek() != ']') {
+                            throw new RuntimeException("Expected ',' or ']' in array at pos " + pos);
+                        }
+                    }
+                    next();
+                    containers[top] = null;
+                    keys[top] = null;
+                    depth = top;
+                    value = container;
+                }
+            }
+        } finally {
+            if (depth > 0) {
+                Arrays.fill(containers, 0, depth, null);
+                Arrays.fill(keys, 0, depth, null);
+                depth = 0;
+            }
+        }
+    }
+
+    // Съедает открывающую скобку, проверив глубину
+    private void enter() {
+        if (depth == maxDepth) {
+            throw new RuntimeException("Maximum nesting depth " + maxDepth + " exceeded at pos " + pos);
         }
+        next();
+    }
+
+    private void push(Object container) {
+        if (depth == containers.length) {
+            containers = Arrays.copyOf(containers, depth * 2);
+            keys = Arrays.copyOf(keys, depth * 2);
+        }
+        containers[depth++] = container;
+    }
+
+    private void key() {
+        keys[depth - 1] = parseString();
+        expect(':');
     }
 
     private String parseString() {
         expect('"');
-        StringBuilder sb = new StringBuilder();
-        while (peek() != '"') {
-            if (peek() == '\0') {
-                throw new RuntimeException("Unterminated string at pos " + pos);
-            }
-            sb.append(next());
+        int start = pos;
+        int end = text.indexOf('"', pos);
+        if (end < 0) {
+            pos = text.length();
+            throw new RuntimeException("Unterminated string at pos " + pos);
         }
-        next(); // skip closing "
-        return sb.toString();
+        pos = end + 1; // skip closing "
+        return text.substring(start, end);
     }
 
     private Number parseNumber() {
@@ -83,6 +204,8 @@ public class JsonParserLL1 {
             next();
         }
 
+        boolean fraction = false;
+
         // Integer part
         if (!Character.isDigit(peek())) {
             throw new RuntimeException("Invalid number at pos " + pos);
@@ -93,6 +216,7 @@ public class JsonParserLL1 {
 
         // Fractional part
         if (peek() == '.') {
+            fraction = true;
             next();
             if (!Character.isDigit(peek())) {
                 throw new RuntimeException("Invalid float at pos " + pos);
@@ -103,8 +227,7 @@ public class JsonParserLL1 {
         }
 
         // Parse as int or double
-        String numStr = text.substring(start, pos);
-        return numStr.contains(".") ? Double.parseDouble(numStr) : Integer.parseInt(numStr);
+        return fraction ? Double.parseDouble(text.substring(start, pos)) : Integer.parseInt(text, start, pos, 10);
     }
 
     private Boolean parseTrue() {
@@ -128,61 +251,10 @@ public class JsonParserLL1 {
         return null;
     }
 
-    private List<Object> parseArray() {
-        expect('[');
-        skipWhitespace();
-
-        if (peek() == ']') {
-            next();
-            return new ArrayList<>();
-        }
-
-        List<Object> values = new ArrayList<>();
-        while (true) {
-            values.add(parseValue());
-            skipWhitespace();
-            if (peek() == ',') {
-                next();
-                skipWhitespace();
-            } else if (peek() == ']') {
-                break;
-            } else {
-                throw new RuntimeException("Expected ',' or ']' in array at pos " + pos);
-            }
-        }
-        expect(']');
-        return values;
-    }
-
-    private Map<String, Object> parseObject() {
-        expect('{');
-        skipWhitespace();
-
-        if (peek() == '}') {
-            next();
-            return new HashMap<>();
-        }
-
-        Map<String, Object> obj = new HashMap<>();
-        while (true) {
-            String key = parseString();
-            skipWhitespace();
-            expect(':');
-            Object value = parseValue();
-            obj.put(key, value);
-
-            skipWhitespace();
-            if (peek() == ',') {
-                next();
-                skipWhitespace();
-            } else if (peek() == '}') {
-                break;
-            } else {
-                throw new RuntimeException("Expected ',' or '}' in object at pos " + pos);
-            }
-        }
-        expect('}');
-        return obj;
+    public Object parse(String text) {
+        this.text = text;
+        this.pos = 0;
+        return parse();
     }
 
     public Object parse() {
@@ -0,0 +1,98 @@
+package org.starodubov.xml;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Кэш имён элементов и атрибутов, как KeyCache у JSON: токенизатор берёт
+ * имя по смещениям во входе, и повторяющееся имя не создаёт новую строку.
+ * Таблица прямого отображения фиксированного размера, при коллизии старая
+ * запись вытесняется. Записи неизменяемы, поэтому кэш общий для всех
+ * потоков и обходится без блокировок.
+ */
+final class NameCache {
+    // Длинные имена редко повторяются, кэшировать их невыгодно
+    static final int MAX_LENGTH = 64;
+
+    private static final int SIZE = Integer.getInteger("org.starodubov.xml.nameCacheSize", 1024);
+
+    static final NameCache SHARED = new NameCache(SIZE);
+
+    private record Entry(int hash, byte[] utf8, String value) {
+    }
+
+    private final Entry[] table;
+    private final int mask;
+
+    NameCache(int size) {
+        int capacity = Integer.highestOneBit(Math.max(16, size - 1) << 1);
+        this.table = new Entry[capacity];
+        this.mask = capacity - 1;
+    }
+
+    String get(String input, int start, int end) {
+        if (end - start > MAX_LENGTH) {
+            return input.substring(start, end);
+        }
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + input.charAt(i);
+        }
+        int slot = slot(h);
+        Entry e = table[slot];
+        if (e != null && e.hash == h && e.value.length() == end - start && input.startsWith(e.value, start)) {
+            return e.value;
+        }
+        String value = input.substring(start, end);
+        table[slot] = new Entry(h, value.getBytes(StandardCharsets.UTF_8), value);
+        return value;
+    }
+
+    // Для ASCII хэш совпадает с get(String, ...), так что записи общие
+    String get(ByteBuffer buf, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + (buf.get(i) & 0xFF);
+        }
+        return get(buf, start, end, h);
+    }
+
+    // h — хэш байтов, уже посчитанный токенизатором при поиске конца имени
+    String get(ByteBuffer buf, int start, int end, int h) {
+        byte[] utf8;
+        if (end - start <= MAX_LENGTH) {
+            Entry e = table[slot(h)];
+            if (e != null && e.hash == h && matches(e.utf8, buf, start, end)) {
+                return e.value;
+            }
+        }
+        utf8 = new byte[end - start];
+        buf.get(start, utf8);
+        String value = new String(utf8, StandardCharsets.UTF_8);
+        if (utf8.length <= MAX_LENGTH) {
+            table[slot(h)] = new Entry(h, utf8, value);
+        }
+        return value;
+    }
+
+    private static boolean matches(byte[] utf8, ByteBuffer buf, int start, int end) {
+        if (utf8.length != end - start) {
+            return false;
+        }
+        if (buf.hasArray()) {
+            int from = buf.arrayOffset() + start;
+            return Arrays.equals(utf8, 0, utf8.length, buf.array(), from, from + utf8.length);
+        }
+        for (int i = 0; i < utf8.length; i++) {
+            if (utf8[i] != buf.get(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int slot(int h) {
+        return (h ^ h >>> 16) & mask;
+    }
+}
@@ -0,0 +1,523 @@
+package org.starodubov.xml;
+
+import org.starodubov.io.ByteSource;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.starodubov.xml.XmlTokenizer.*;
+
+/**
+ * Байтовый вариант XmlTokenizer: читает UTF-8 прямо из окна ByteSource
+ * (например, отображённого в память файла) с теми же правилами разбора.
+ * Конец текста ищется по восемь байт за раз; текст без ссылок на сущности
+ * декодируется прямо из окна в одну строку, ссылки вида &amp;lt; и &amp;#x20;
+ * раскрываются только там, где во входе встретился '&'.
+ */
+class Utf8XmlTokenizer implements XmlLexer {
+    // Образцы для поиска байта в слове, см. scanLessOrAmpersand()
+    private static final long LESS = 0x3C3C3C3C3C3C3C3CL;
+    private static final long AMPERSANDS = 0x2626262626262626L;
+    private static final long LOW_7_BITS = 0x7F7F7F7F7F7F7F7FL;
+
+    private ByteSource source;
+    private ByteBuffer buf;
+    private int limit;
+    private int pos = 0;
+    // Начало незаконченного токена: эти байты сохраняются при подгрузке
+    private int mark = 0;
+    // Копия текста из direct-буфера или текст с раскрытыми сущностями, переживает reset()
+    private byte[] bytes = new byte[0];
+
+    // Смещения атрибутов от mark, то есть от начала тега, который сохраняется в окне
+    private int[] attributes = new int[16];
+    private int attributeCount;
+    private String pendingClose;
+    // Абсолютное смещение разбираемого тега, для сообщений об ошибках
+    private long tagStart;
+
+    Utf8XmlTokenizer(ByteSource source) {
+        reset(source);
+    }
+
+    // Переключает токенизатор на новый источник, сохраняя буфер
+    void reset(ByteSource source) {
+        this.source = source;
+        this.buf = source.buffer();
+        this.limit = source.limit();
+        this.pos = 0;
+        this.mark = 0;
+        this.attributeCount = 0;
+        this.pendingClose = null;
+    }
+
+    private int peek(int i) {
+        return buf.get(i) & 0xFF;
+    }
+
+    private boolean more() {
+        int shift = source.fill(mark);
+        if (shift < 0) {
+            return false;
+        }
+        pos -= shift;
+        mark -= shift;
+        buf = source.buffer();
+        limit = source.limit();
+        return true;
+    }
+
+    private boolean hasByte() {
+        return pos < limit || more();
+    }
+
+    // Подгружает окно, пока от pos не станет доступно n байт
+    private boolean ensure(int n) {
+        while (limit - pos < n) {
+            if (!more()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Token nextToken() {
+        attributeCount = 0;
+        if (pendingClose != null) {
+            final var name = pendingClose;
+            pendingClose = null;
+            return new Token(TokenType.CLOSE_TAG, name);
+        }
+        while (true) {
+            skipWhitespace();
+            if (!hasByte()) {
+                return EOF_TOKEN;
+            }
+            mark = pos;
+            if (peek(pos) != '<') {
+                return readText();
+            }
+            final Token markup = readMarkup();
+            if (markup != null) {
+                return markup;
+            }
+        }
+    }
+
+    @Override
+    public int attributeCount() {
+        return attributeCount;
+    }
+
+    @Override
+    public String attributeName(int i) {
+        checkAttribute(i);
+        return NameCache.SHARED.get(buf, mark + attributes[4 * i], mark + attributes[4 * i + 1]);
+    }
+
+    @Override
+    public String attributeValue(int i) {
+        checkAttribute(i);
+        final int from = mark + attributes[4 * i + 2];
+        final int to = mark + attributes[4 * i + 3];
+        for (int j = from; j < to; j++) {
+            if (peek(j) == '&') {
+                return decodeEntities(from, to);
+            }
+        }
+        return decode(from, to);
+    }
+
+    private void checkAttribute(int i) {
+        if (i < 0 || i >= attributeCount) {
+            throw new IndexOutOfBoundsException("Attribute " + i + " of " + attributeCount);
+        }
+    }
+
+    // Тег, CDATA или пропускаемая разметка; null, если токена нет
+    private Token readMarkup() {
+        tagStart = source.offset() + mark;
+        pos++; // skip '<'
+        if (!hasByte()) {
+            throw unterminated();
+        }
+        switch (peek(pos)) {
+            case '/' -> {
+                pos++; // skip '/'
+                final String name = readName();
+                skipSpaces();
+                expect('>');
+                return new Token(TokenType.CLOSE_TAG, name);
+            }
+            case '?' -> {
+                pos++;
+                skipPast("?>", false);
+                return null;
+            }
+            case '!' -> {
+                if (lookingAt("!--")) {
+                    pos += 3;
+                    skipPast("-->", false);
+                    return null;
+                }
+                if (lookingAt("![CDATA[")) {
+                    pos += 8;
+                    final int from = pos - mark;
+                    skipPast("]]>", true);
+                    return new Token(TokenType.STRING, decode(mark + from, pos - 3));
+                }
+                skipDeclaration();
+                return null;
+            }
+            default -> {
+                return readOpenTag();
+            }
+        }
+    }
+
+    private Token readOpenTag() {
+        final String name = readName();
+        while (true) {
+            skipSpaces();
+            if (!hasByte()) {
+                throw unterminated();
+            }
+            final int c = peek(pos);
+            if (c == '>') {
+                pos++;
+                return new Token(TokenType.OPEN_TAG, name);
+            }
+            if (c == '/') {
+                pos++;
+                expect('>');
+                pendingClose = name;
+                return new Token(TokenType.OPEN_TAG, name);
+            }
+            readAttribute();
+        }
+    }
+
+    // name = "value" или name = 'value'; смещения от mark не меняются при подгрузке
+    private void readAttribute() {
+        final int nameFrom = pos - mark;
+        skipName();
+        final int nameTo = pos - mark;
+        skipSpaces();
+        expect('=');
+        skipSpaces();
+        final int quote = hasByte() ? peek(pos) : -1;
+        if (quote != '"' && quote != '\'') {
+            throw new RuntimeException("Expected quoted attribute value in tag at byte " + tagStart);
+        }
+        pos++;
+        final int valueFrom = pos - mark;
+        while (true) {
+            if (!hasByte()) {
+                throw unterminated();
+            }
+            if (peek(pos) == quote) {
+                break;
+            }
+            pos++;
+        }
+        final int valueTo = pos - mark;
+        pos++;
+        if (4 * attributeCount == attributes.length) {
+            attributes = Arrays.copyOf(attributes, attributes.length * 2);
+        }
+        final int a = 4 * attributeCount++;
+        attributes[a] = nameFrom;
+        attributes[a + 1] = nameTo;
+        attributes[a + 2] = valueFrom;
+        attributes[a + 3] = valueTo;
+    }
+
+    // Имя с хэшем, посчитанным за тот же проход, что и поиск его конца
+    private String readName() {
+        skipSpaces();
+        final int from = pos - mark;
+        int h = 0;
+        int p = pos;
+        while (true) {
+            if (p == limit) {
+                pos = p;
+                if (!more()) {
+                    break;
+                }
+                p = pos;
+            }
+            final int c = peek(p);
+            if (isNameEnd(c)) {
+                break;
+            }
+            h = 31 * h + c;
+            p++;
+        }
+        pos = p;
+        if (pos - mark == from) {
+            throw new RuntimeException("Expected name in tag at byte " + tagStart);
+        }
+        return NameCache.SHARED.get(buf, mark + from, pos, h);
+    }
+
+    private void skipName() {
+        final int from = pos - mark;
+        while (hasByte() && !isNameEnd(peek(pos))) {
+            pos++;
+        }
+        if (pos - mark == from) {
+            throw new RuntimeException("Expected name in tag at byte " + tagStart);
+        }
+    }
+
+    private static boolean isNameEnd(int c) {
+        return c <= ' ' || c == '>' || c == '/' || c == '=' || c == '<';
+    }
+
+    private boolean lookingAt(String s) {
+        if (!ensure(s.length())) {
+            return false;
+        }
+        for (int k = 0; k < s.length(); k++) {
+            if (peek(pos + k) != s.charAt(k)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Пропускает до терминатора включительно; keep — сохранять ли пропущенное в окне
+    private void skipPast(String terminator, boolean keep) {
+        while (true) {
+            if (!ensure(terminator.length())) {
+                throw unterminated();
+            }
+            if (lookingAt(terminator)) {
+                pos += terminator.length();
+                return;
+            }
+            pos++;
+            if (!keep) {
+                mark = pos;
+            }
+        }
+    }
+
+    // <!DOCTYPE ...> с возможным внутренним подмножеством в квадратных скобках
+    private void skipDeclaration() {
+        int brackets = 0;
+        while (hasByte()) {
+            final int c = peek(pos++);
+            mark = pos;
+            if (c == '[') {
+                brackets++;
+            } else if (c == ']') {
+                brackets--;
+            } else if (c == '>' && brackets == 0) {
+                return;
+            }
+        }
+        throw unterminated();
+    }
+
+    private void expect(char c) {
+        if (!hasByte() || peek(pos) != c) {
+            throw new RuntimeException("Expected '" + c + "' in tag at byte " + tagStart);
+        }
+        pos++;
+    }
+
+    private RuntimeException unterminated() {
+        return new RuntimeException("Unterminated markup at byte " + tagStart);
+    }
+
+    // Текст до '<' без пробелов по краям; классифицируется так же, как в XmlTokenizer
+    private Token readText() {
+        boolean entities = false;
+        while (true) {
+            pos = scanLessOrAmpersand(pos);
+            if (pos >= limit) {
+                if (!more()) {
+                    break;
+                }
+                continue;
+            }
+            if (peek(pos) == '<') {
+                break;
+            }
+            entities = true;
+            pos++;
+        }
+        int to = pos;
+        while (to > mark && isWhitespace(peek(to - 1))) {
+            to--;
+        }
+        return textToken(entities ? decodeEntities(mark, to) : decode(mark, to));
+    }
+
+    // Первый индекс в [i, limit) с '<' или '&', либо limit. Байты многобайтовых
+    // символов UTF-8 всегда >= 0x80, поэтому полные слова проверяются SWAR
+    private int scanLessOrAmpersand(int i) {
+        final boolean bigEndian = buf.order() == ByteOrder.BIG_ENDIAN;
+        while (i + Long.BYTES <= limit) {
+            final long word = buf.getLong(i);
+            final long found = zeroBytes(word ^ LESS) | zeroBytes(word ^ AMPERSANDS);
+            if (found != 0) {
+                return i + (bigEndian ? Long.numberOfLeadingZeros(found) : Long.numberOfTrailingZeros(found)) / 8;
+            }
+            i += Long.BYTES;
+        }
+        while (i < limit) {
+            final int c = peek(i);
+            if (c == '<' || c == '&') {
+                return i;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    // Старший бит каждого нулевого байта; без ложных срабатываний от переносов
+    private static long zeroBytes(long x) {
+        return ~((x & LOW_7_BITS) + LOW_7_BITS | x | LOW_7_BITS);
+    }
+
+    // Текст [start, end) с раскрытыми ссылками; ссылка не короче своего UTF-8, поэтому хватает end - start байт
+    private String decodeEntities(int start, int end) {
+        if (bytes.length < end - start) {
+            bytes = new byte[Math.max(64, Math.max(end - start, bytes.length * 2))];
+        }
+        int n = 0;
+        int i = start;
+        while (i < end) {
+            int amp = i;
+            while (amp < end && peek(amp) != '&') {
+                amp++;
+            }
+            buf.get(i, bytes, n, amp - i);
+            n += amp - i;
+            if (amp == end) {
+                break;
+            }
+            int semi = amp + 1;
+            while (semi < end && semi - amp <= MAX_ENTITY && peek(semi) != ';') {
+                semi++;
+            }
+            if (semi == end || peek(semi) != ';') {
+                throw badEntity(amp);
+            }
+            n = appendUtf8(entity(amp, semi), n);
+            i = semi + 1;
+        }
+        return new String(bytes, 0, n, StandardCharsets.UTF_8);
+    }
+
+    // Символ ссылки между '&' в amp и ';' в semi: предопределённые сущности, &#...; и &#x...;
+    private int entity(int amp, int semi) {
+        final int from = amp + 1;
+        if (semi - from >= 2 && peek(from) == '#') {
+            final boolean hex = peek(from + 1) == 'x';
+            final int radix = hex ? 16 : 10;
+            int i = hex ? from + 2 : from + 1;
+            if (i == semi) {
+                throw badEntity(amp);
+            }
+            int cp = 0;
+            for (; i < semi; i++) {
+                final int d = digit(peek(i), radix);
+                if (d < 0 || cp > Character.MAX_CODE_POINT) {
+                    throw badEntity(amp);
+                }
+                cp = cp * radix + d;
+            }
+            if (!isCharReference(cp)) {
+                throw badEntity(amp);
+            }
+            return cp;
+        }
+        if (named(from, semi, "lt")) {
+            return '<';
+        }
+        if (named(from, semi, "gt")) {
+            return '>';
+        }
+        if (named(from, semi, "amp")) {
+            return '&';
+        }
+        if (named(from, semi, "quot")) {
+            return '"';
+        }
+        if (named(from, semi, "apos")) {
+            return '\'';
+        }
+        throw badEntity(amp);
+    }
+
+    private boolean named(int from, int to, String name) {
+        if (to - from != name.length()) {
+            return false;
+        }
+        for (int k = 0; k < name.length(); k++) {
+            if (peek(from + k) != name.charAt(k)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int appendUtf8(int cp, int n) {
+        if (cp < 0x80) {
+            bytes[n++] = (byte) cp;
+        } else if (cp < 0x800) {
+            bytes[n++] = (byte) (0xC0 | cp >> 6);
+            bytes[n++] = (byte) (0x80 | cp & 0x3F);
+        } else if (cp < 0x10000) {
+            bytes[n++] = (byte) (0xE0 | cp >> 12);
+            bytes[n++] = (byte) (0x80 | cp >> 6 & 0x3F);
+            bytes[n++] = (byte) (0x80 | cp & 0x3F);
+        } else {
+            bytes[n++] = (byte) (0xF0 | cp >> 18);
+            bytes[n++] = (byte) (0x80 | cp >> 12 & 0x3F);
+            bytes[n++] = (byte) (0x80 | cp >> 6 & 0x3F);
+            bytes[n++] = (byte) (0x80 | cp & 0x3F);
+        }
+        return n;
+    }
+
+    private RuntimeException badEntity(int amp) {
+        return new RuntimeException("Invalid entity reference at byte " + (source.offset() + amp));
+    }
+
+    private String decode(int start, int end) {
+        if (buf.hasArray()) {
+            return new String(buf.array(), buf.arrayOffset() + start, end - start, StandardCharsets.UTF_8);
+        }
+        if (bytes.length < end - start) {
+            bytes = new byte[Math.max(64, Math.max(end - start, bytes.length * 2))];
+        }
+        buf.get(start, bytes, 0, end - start);
+        return new String(bytes, 0, end - start, StandardCharsets.UTF_8);
+    }
+
+    private static boolean isWhitespace(int c) {
+        return c < 0x80 && Character.isWhitespace(c);
+    }
+
+    // Пробелы внутри тега: mark остаётся на начале тега
+    private void skipSpaces() {
+        while (hasByte() && isWhitespace(peek(pos))) {
+            pos++;
+        }
+    }
+
+    private void skipWhitespace() {
+        mark = pos;
+        while (hasByte() && isWhitespace(peek(pos))) {
+            pos++;
+            mark = pos;
+        }
+    }
+}
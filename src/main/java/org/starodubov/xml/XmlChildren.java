@@ -0,0 +1,145 @@
+package org.starodubov.xml;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * Список детей XmlObject с индексом дочерних элементов по имени, как в
+ * JsonObject: в маленьком списке элемент ищется перебором, начиная с
+ * HASH_THRESHOLD детей строится таблица с открытой адресацией. Добавление
+ * в конец дописывает индекс; любое другое изменение списка (удаление,
+ * вставка в середину, set) сбрасывает его, и он перестраивается при
+ * следующем поиске. Запись через subList().set() не отслеживается; если
+ * индекс из-за неё указывает не на элемент, он перестраивается, а не падает.
+ */
+final class XmlChildren extends ArrayList<XmlValue> {
+    @java.io.Serial
+    private static final long serialVersionUID = 1L;
+    private static final int HASH_THRESHOLD = 8;
+    // find(): ячейка индекса указывает не на элемент, индекс устарел
+    private static final int STALE = -2;
+
+    // Позиция + 1 первого элемента с таким именем по хэшу имени, 0 — пустая ячейка;
+    // null, пока детей мало. Действителен, пока indexedModCount == modCount и не было set
+    private transient int[] index;
+    private transient int indexed;
+    private transient int indexedModCount;
+    // set() не структурное изменение и modCount не трогает, иначе сломались бы итераторы ArrayList
+    private transient boolean replaced;
+
+    // Первый дочерний элемент с именем name или null
+    XmlObject object(String name) {
+        if (!indexCurrent()) {
+            if (size() < HASH_THRESHOLD) {
+                for (int i = 0; i < size(); i++) {
+                    if (get(i) instanceof XmlObject obj && obj.name().equals(name)) {
+                        return obj;
+                    }
+                }
+                return null;
+            }
+            rebuildIndex();
+        }
+        int i = find(name);
+        if (i == STALE) {
+            rebuildIndex();
+            i = find(name);
+        }
+        return i < 0 ? null : (XmlObject) get(i);
+    }
+
+    private boolean indexCurrent() {
+        return index != null && indexedModCount == modCount && !replaced;
+    }
+
+    @Override
+    public boolean add(XmlValue value) {
+        boolean current = indexCurrent();
+        super.add(value);
+        if (current) {
+            indexFrom(size() - 1);
+        } else if (size() >= HASH_THRESHOLD) {
+            rebuildIndex();
+        }
+        return true;
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends XmlValue> values) {
+        boolean current = indexCurrent();
+        int from = size();
+        boolean changed = super.addAll(values);
+        if (current) {
+            indexFrom(from);
+        }
+        return changed;
+    }
+
+    // Позиции в индексе устаревают; ListIterator.set тоже приходит сюда
+    @Override
+    public XmlValue set(int i, XmlValue value) {
+        XmlValue old = super.set(i, value);
+        replaced = true;
+        return old;
+    }
+
+    private void indexFrom(int from) {
+        for (int i = from; i < size(); i++) {
+            if (get(i) instanceof XmlObject obj) {
+                int found = find(obj.name());
+                if (found == STALE || (found < 0 && (indexed + 1) * 2 > index.length)) {
+                    rebuildIndex();
+                    return;
+                }
+                if (found < 0) {
+                    insert(obj.name(), i);
+                }
+            }
+        }
+        indexedModCount = modCount;
+    }
+
+    private void rebuildIndex() {
+        index = new int[Integer.highestOneBit(Math.max(size(), HASH_THRESHOLD) * 4 - 1)];
+        indexed = 0;
+        for (int i = 0; i < size(); i++) {
+            if (get(i) instanceof XmlObject obj && find(obj.name()) < 0) {
+                insert(obj.name(), i);
+            }
+        }
+        indexedModCount = modCount;
+        replaced = false;
+    }
+
+    // Позиция элемента с именем name, -1 или STALE
+    private int find(String name) {
+        int mask = index.length - 1;
+        for (int slot = hash(name) & mask; ; slot = (slot + 1) & mask) {
+            int i = index[slot] - 1;
+            if (i < 0) {
+                return -1;
+            }
+            if (i >= size() || !(get(i) instanceof XmlObject obj)) {
+                return STALE;
+            }
+            if (obj.name().equals(name)) {
+                return i;
+            }
+        }
+    }
+
+    private void insert(String name, int i) {
+        int mask = index.length - 1;
+        int slot = hash(name) & mask;
+        while (index[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        index[slot] = i + 1;
+        indexed++;
+    }
+
+    private static int hash(String name) {
+        int h = name.hashCode();
+        return h ^ h >>> 16;
+    }
+}
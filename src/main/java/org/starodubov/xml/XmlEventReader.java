@@ -0,0 +1,361 @@
+package org.starodubov.xml;
+
+import org.starodubov.io.ByteSource;
+
+import java.io.Closeable;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import static org.starodubov.xml.XmlTokenizer.Token;
+import static org.starodubov.xml.XmlTokenizer.TokenType;
+
+/**
+ * Потоковый pull-reader в духе StAX: читает документ по событиям, не строя
+ * дерево XmlObject. Память ограничена буфером источника и стеком имён
+ * открытых элементов (не глубже XmlParser.DEFAULT_MAX_DEPTH), поэтому
+ * размер документа не важен. Текст классифицируется так же, как в
+ * XmlTokenizer: textType() — STRING, NUMBER, BOOLEAN или NULL.
+ * <p>
+ * Атрибуты START_ELEMENT доступны через attributeCount/attributeName/
+ * attributeValue. name() — имя с префиксом, localName() и prefix() — его
+ * части, namespaceURI() разрешает префикс по объявлениям xmlns в области
+ * видимости.
+ * <p>
+ * Типичный разбор большого каталога — пройти до повторяющегося элемента
+ * и материализовать каждый через nextElement() или пропустить skipElement().
+ * Экземпляр не потокобезопасен.
+ */
+public class XmlEventReader implements Closeable {
+
+    private static final String XML_NAMESPACE = "http://www.w3.org/XML/1998/namespace";
+
+    public enum Event {
+        START_ELEMENT,
+        TEXT,
+        END_ELEMENT,
+        END_DOCUMENT
+    }
+
+    private final ByteSource source;
+    private final XmlLexer lexer;
+    // Имена открытых элементов для проверки закрывающих тегов
+    private String[] open = new String[16];
+    private int depth;
+    // Объявления пространств имён в области видимости, префикс и URI подряд;
+    // namespaceMarks[d] — их число до элемента на глубине d
+    private String[] namespaces = new String[16];
+    private int namespaceCount;
+    private int[] namespaceMarks = new int[16];
+    // Объявления закрытого элемента снимаются со следующим событием
+    private boolean popNamespaces;
+    // Атрибуты текущего START_ELEMENT и прочитанного заранее в peek(): имя и значение подряд
+    private String[] attributes = new String[16];
+    private int attributeCount;
+    private String[] peekedAttributes = new String[16];
+    private int peekedAttributeCount;
+    // Корневое значение прочитано, дальше допустим только конец документа
+    private boolean rootDone;
+
+    private Token token;
+    private Event peeked;
+    private Token peekedToken;
+    // Токен, уже прочитанный парсером после nextElement()
+    private Token pending;
+    private XmlParser parser;
+
+    public XmlEventReader(InputStream in) {
+        this(ByteSource.of(in));
+    }
+
+    public XmlEventReader(InputStream in, int bufferSize) {
+        this(ByteSource.of(in, bufferSize));
+    }
+
+    public XmlEventReader(ByteSource source) {
+        this.source = source;
+        this.lexer = new Utf8XmlTokenizer(source);
+    }
+
+    public Event peek() {
+        if (peeked == null) {
+            peeked = doPeek();
+        }
+        return peeked;
+    }
+
+    /**
+     * Есть ли в текущем элементе (или документе) ещё дочерние события.
+     */
+    public boolean hasNext() {
+        Event e = peek();
+        return e != Event.END_ELEMENT && e != Event.END_DOCUMENT;
+    }
+
+    /**
+     * Переходит к следующему событию; его данные дают name(), text() и value().
+     */
+    public Event next() {
+        Event e = peek();
+        peeked = null;
+        token = peekedToken;
+        if (popNamespaces) {
+            namespaceCount = namespaceMarks[depth];
+            popNamespaces = false;
+        }
+        switch (e) {
+            case START_ELEMENT -> {
+                String[] current = attributes;
+                attributes = peekedAttributes;
+                attributeCount = peekedAttributeCount;
+                peekedAttributes = current;
+                push(token.lexeme());
+            }
+            case END_ELEMENT -> {
+                open[--depth] = null;
+                popNamespaces = true;
+                rootDone = depth == 0;
+            }
+            case TEXT -> rootDone = depth == 0;
+            case END_DOCUMENT -> {
+                // конец документа остаётся текущим событием
+            }
+        }
+        return e;
+    }
+
+    /**
+     * Имя элемента для START_ELEMENT и END_ELEMENT.
+     */
+    public String name() {
+        if (token == null || (token.type() != TokenType.OPEN_TAG && token.type() != TokenType.CLOSE_TAG)) {
+            throw new IllegalStateException("Current event is not an element: " + token);
+        }
+        return token.lexeme();
+    }
+
+    /**
+     * Имя элемента без префикса пространства имён.
+     */
+    public String localName() {
+        String name = name();
+        int colon = name.indexOf(':');
+        return colon < 0 ? name : name.substring(colon + 1);
+    }
+
+    /**
+     * Префикс имени элемента или пустая строка.
+     */
+    public String prefix() {
+        String name = name();
+        int colon = name.indexOf(':');
+        return colon < 0 ? "" : name.substring(0, colon);
+    }
+
+    /**
+     * URI пространства имён текущего элемента или null, если оно не объявлено.
+     */
+    public String namespaceURI() {
+        return namespaceURI(prefix());
+    }
+
+    /**
+     * URI, связанный с префиксом в текущей области видимости; "" — пространство по умолчанию.
+     */
+    public String namespaceURI(String prefix) {
+        if (prefix.equals("xml")) {
+            return XML_NAMESPACE;
+        }
+        for (int i = namespaceCount - 2; i >= 0; i -= 2) {
+            if (namespaces[i].equals(prefix)) {
+                return namespaces[i + 1];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Число атрибутов текущего START_ELEMENT, для других событий 0.
+     */
+    public int attributeCount() {
+        return token != null && token.type() == TokenType.OPEN_TAG ? attributeCount : 0;
+    }
+
+    public String attributeName(int i) {
+        checkAttribute(i);
+        return attributes[2 * i];
+    }
+
+    public String attributeValue(int i) {
+        checkAttribute(i);
+        return attributes[2 * i + 1];
+    }
+
+    /**
+     * Значение атрибута по имени (с префиксом, как в документе) или null.
+     */
+    public String attribute(String name) {
+        for (int i = 0; i < attributeCount(); i++) {
+            if (attributes[2 * i].equals(name)) {
+                return attributes[2 * i + 1];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Текст события TEXT без пробелов по краям.
+     */
+    public String text() {
+        return textToken().lexeme();
+    }
+
+    public TokenType textType() {
+        return textToken().type();
+    }
+
+    /**
+     * Типизированное значение события TEXT: XmlString, XmlNumber, XmlBoolean или XmlNull.
+     */
+    public XmlValue value() {
+        return XmlParser.scalarValue(textToken());
+    }
+
+    /**
+     * Глубина текущей позиции: число открытых элементов.
+     */
+    public int depth() {
+        return depth;
+    }
+
+    /**
+     * Материализует следующий элемент (или текст) целиком, как XmlParser,
+     * например одну запись большого каталога.
+     */
+    public XmlValue nextElement() {
+        Event e = peek();
+        if (e != Event.START_ELEMENT && e != Event.TEXT) {
+            throw new RuntimeException("Expected element or text, got " + e);
+        }
+        peeked = null;
+        if (parser == null) {
+            parser = new XmlParser();
+        }
+        XmlValue value = parser.parseValue(lexer, peekedToken);
+        pending = parser.currentToken();
+        token = null;
+        rootDone = depth == 0;
+        return value;
+    }
+
+    /**
+     * Пропускает следующий элемент со всем содержимым или текст, не создавая значений.
+     */
+    public void skipElement() {
+        Event e = peek();
+        if (e != Event.START_ELEMENT && e != Event.TEXT) {
+            throw new RuntimeException("Expected element or text, got " + e);
+        }
+        int target = depth;
+        next();
+        while (depth > target) {
+            next();
+        }
+    }
+
+    @Override
+    public void close() {
+        source.close();
+    }
+
+    private Token textToken() {
+        if (token == null || token.type() == TokenType.OPEN_TAG || token.type() == TokenType.CLOSE_TAG
+                || token.type() == TokenType.EOF) {
+            throw new IllegalStateException("Current event is not text: " + token);
+        }
+        return token;
+    }
+
+    private void checkAttribute(int i) {
+        if (i < 0 || i >= attributeCount()) {
+            throw new IndexOutOfBoundsException("Attribute " + i + " of " + attributeCount());
+        }
+    }
+
+    // Открывает элемент и объявленные в нём пространства имён
+    private void push(String name) {
+        if (depth == XmlParser.DEFAULT_MAX_DEPTH) {
+            throw new RuntimeException("Maximum nesting depth " + depth + " exceeded");
+        }
+        if (depth == open.length) {
+            open = Arrays.copyOf(open, depth * 2);
+            namespaceMarks = Arrays.copyOf(namespaceMarks, depth * 2);
+        }
+        namespaceMarks[depth] = namespaceCount;
+        open[depth++] = name;
+        for (int i = 0; i < attributeCount; i++) {
+            String attribute = attributes[2 * i];
+            if (attribute.equals("xmlns")) {
+                declare("", attributes[2 * i + 1]);
+            } else if (attribute.startsWith("xmlns:")) {
+                declare(attribute.substring(6), attributes[2 * i + 1]);
+            }
+        }
+    }
+
+    private void declare(String prefix, String uri) {
+        if (namespaceCount == namespaces.length) {
+            namespaces = Arrays.copyOf(namespaces, namespaceCount * 2);
+        }
+        namespaces[namespaceCount++] = prefix;
+        namespaces[namespaceCount++] = uri;
+    }
+
+    // Атрибуты тега, только что прочитанного в peek(), копируются: следующий токен их затрёт
+    private void copyAttributes() {
+        int n = lexer.attributeCount();
+        if (2 * n > peekedAttributes.length) {
+            peekedAttributes = new String[2 * n];
+        }
+        for (int i = 0; i < n; i++) {
+            peekedAttributes[2 * i] = lexer.attributeName(i);
+            peekedAttributes[2 * i + 1] = lexer.attributeValue(i);
+        }
+        peekedAttributeCount = n;
+    }
+
+    private Token nextToken() {
+        if (pending != null) {
+            Token t = pending;
+            pending = null;
+            return t;
+        }
+        return lexer.nextToken();
+    }
+
+    private Event doPeek() {
+        Token t = nextToken();
+        peekedToken = t;
+        if (rootDone) {
+            if (t.type() != TokenType.EOF) {
+                throw new RuntimeException("Unexpected token after root value: " + t);
+            }
+            return Event.END_DOCUMENT;
+        }
+        return switch (t.type()) {
+            case OPEN_TAG -> {
+                copyAttributes();
+                yield Event.START_ELEMENT;
+            }
+            case CLOSE_TAG -> {
+                if (depth == 0 || !t.lexeme().equals(open[depth - 1])) {
+                    throw new RuntimeException("Unexpected token: " + t);
+                }
+                yield Event.END_ELEMENT;
+            }
+            case EOF -> throw new RuntimeException(depth == 0
+                    ? "Unexpected end of document"
+                    : "Unexpected end of document inside <" + open[depth - 1] + ">");
+            default -> Event.TEXT;
+        };
+    }
+}
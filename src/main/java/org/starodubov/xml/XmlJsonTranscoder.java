@@ -0,0 +1,246 @@
+package org.starodubov.xml;
+
+import org.starodubov.io.ByteSource;
+import org.starodubov.json.JsonArray;
+import org.starodubov.json.JsonBoolean;
+import org.starodubov.json.JsonNull;
+import org.starodubov.json.JsonNumber;
+import org.starodubov.json.JsonObject;
+import org.starodubov.json.JsonString;
+import org.starodubov.json.JsonValue;
+import org.starodubov.json.JsonWriter;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.starodubov.xml.XmlTokenizer.Token;
+import static org.starodubov.xml.XmlTokenizer.TokenType;
+
+/**
+ * Перевод XML в JSON за один проход по токенам, без промежуточного дерева
+ * XmlObject. Корень {@code <r>...</r>} становится объектом {"r": ...}, а
+ * содержимое элемента отображается так:
+ * <ul>
+ *     <li>только текст — скаляр, классифицированный как в XmlTokenizer
+ *     (строка, число, true/false, null для NULL);</li>
+ *     <li>пустой элемент — null;</li>
+ *     <li>дочерние элементы и атрибуты — поля объекта с их именами
+ *     (объявления xmlns пропускаются, как в XmlParser), текст рядом с
+ *     ними — поле "#text".</li>
+ * </ul>
+ * Повторяющиеся имена, которые XmlObject.add сливает в один элемент, здесь
+ * собираются в массив на месте первого вхождения:
+ * {@code <r><i>1</i><n/><i>2</i></r>} даёт {"r": {"i": [1, 2], "n": null}}.
+ * <p>
+ * Экземпляр не потокобезопасен, но переиспользуется между документами, как XmlParser.
+ */
+public class XmlJsonTranscoder {
+    private static final ByteSource EMPTY = ByteSource.of(ByteBuffer.allocate(0));
+    private static final String TEXT = "#text";
+    private static final JsonBoolean TRUE = new JsonBoolean(true);
+    private static final JsonBoolean FALSE = new JsonBoolean(false);
+
+    private final int maxDepth;
+    // Открытые элементы: имя, объект (создаётся с первым полем) и текст, пока объекта нет
+    private String[] names = new String[16];
+    private JsonObject[] objects = new JsonObject[16];
+    private JsonValue[] texts = new JsonValue[16];
+    private int depth;
+    private XmlTokenizer stringLexer;
+    private Utf8XmlTokenizer utf8Lexer;
+
+    public XmlJsonTranscoder() {
+        this(XmlParser.DEFAULT_MAX_DEPTH);
+    }
+
+    public XmlJsonTranscoder(final int maxDepth) {
+        if (maxDepth < 1) {
+            throw new IllegalArgumentException("maxDepth must be positive: " + maxDepth);
+        }
+        this.maxDepth = maxDepth;
+    }
+
+    public JsonValue transcode(final String xml) {
+        if (stringLexer == null) {
+            stringLexer = new XmlTokenizer(xml);
+        } else {
+            stringLexer.reset(xml);
+        }
+        try {
+            return transcode(stringLexer);
+        } finally {
+            stringLexer.reset("");
+        }
+    }
+
+    public JsonValue transcode(final Path file) {
+        try (var source = ByteSource.map(file)) {
+            return transcode(source);
+        }
+    }
+
+    public JsonValue transcode(final ByteSource source) {
+        if (utf8Lexer == null) {
+            utf8Lexer = new Utf8XmlTokenizer(source);
+        } else {
+            utf8Lexer.reset(source);
+        }
+        try {
+            return transcode(utf8Lexer);
+        } finally {
+            utf8Lexer.reset(EMPTY);
+        }
+    }
+
+    /**
+     * Пишет JSON документа в out; несколько документов подряд можно писать в один массив.
+     */
+    public void write(final String xml, final JsonWriter out) {
+        out.value(transcode(xml));
+    }
+
+    public void write(final ByteSource source, final JsonWriter out) {
+        out.value(transcode(source));
+    }
+
+    // Тот же разбор, что в XmlParser.parseValue(), но значения сразу складываются в JSON
+    private JsonValue transcode(final XmlLexer lexer) {
+        try {
+            Token token = lexer.nextToken();
+            final JsonValue root;
+            while (true) {
+                if (token.type() == TokenType.OPEN_TAG) {
+                    if (depth == maxDepth) {
+                        throw new RuntimeException("Maximum nesting depth " + maxDepth + " exceeded");
+                    }
+                    push(token.lexeme());
+                    addAttributes(lexer);
+                    token = lexer.nextToken();
+                    continue;
+                }
+                // null для текста
+                final String name;
+                final JsonValue value;
+                if (depth > 0 && token.type() == TokenType.CLOSE_TAG && token.lexeme().equals(names[depth - 1])) {
+                    name = names[depth - 1];
+                    value = pop();
+                } else {
+                    name = null;
+                    value = scalarValue(token);
+                }
+                token = lexer.nextToken();
+                if (depth == 0) {
+                    if (name == null) {
+                        root = value;
+                    } else {
+                        final var obj = new JsonObject();
+                        obj.add(name, value);
+                        root = obj;
+                    }
+                    break;
+                }
+                if (name != null) {
+                    put(object(depth - 1), name, value);
+                } else if (objects[depth - 1] == null && texts[depth - 1] == null) {
+                    texts[depth - 1] = value;
+                } else {
+                    put(object(depth - 1), TEXT, value);
+                }
+            }
+            if (token.type() != TokenType.EOF) {
+                throw new RuntimeException("Unexpected token after root value: " + token);
+            }
+            return root;
+        } finally {
+            if (depth > 0) {
+                Arrays.fill(names, 0, depth, null);
+                Arrays.fill(objects, 0, depth, null);
+                Arrays.fill(texts, 0, depth, null);
+                depth = 0;
+            }
+        }
+    }
+
+    private void addAttributes(final XmlLexer lexer) {
+        for (int i = 0; i < lexer.attributeCount(); i++) {
+            final String name = lexer.attributeName(i);
+            if (name.equals("xmlns") || name.startsWith("xmlns:")) {
+                continue;
+            }
+            put(object(depth - 1), name, scalarValue(XmlTokenizer.textToken(lexer.attributeValue(i))));
+        }
+    }
+
+    // Повторное имя превращает поле в массив; XML сам массивов не даёт, так что путать не с чем
+    private static void put(final JsonObject obj, final String name, final JsonValue value) {
+        final JsonValue existed = obj.get(name);
+        if (existed == null) {
+            obj.add(name, value);
+        } else if (existed instanceof JsonArray array) {
+            array.add(value);
+        } else {
+            final var array = new JsonArray();
+            array.add(existed);
+            array.add(value);
+            obj.add(name, array);
+        }
+    }
+
+    // Объект элемента на глубине d; текст, пришедший раньше полей, переезжает в "#text"
+    private JsonObject object(final int d) {
+        JsonObject obj = objects[d];
+        if (obj == null) {
+            obj = new JsonObject();
+            objects[d] = obj;
+            if (texts[d] != null) {
+                obj.add(TEXT, texts[d]);
+                texts[d] = null;
+            }
+        }
+        return obj;
+    }
+
+    private static JsonValue scalarValue(final Token token) {
+        return switch (token.type()) {
+            case STRING -> new JsonString(token.lexeme());
+            case NUMBER -> number(token.lexeme());
+            case BOOLEAN -> token.lexeme().equals("true") ? TRUE : FALSE;
+            case NULL -> JsonNull.INSTANCE;
+            default -> throw new RuntimeException("Unexpected token: " + token);
+        };
+    }
+
+    // Целые длиннее long сохраняются без потери точности; знак без цифр остаётся строкой
+    private static JsonValue number(final String lexeme) {
+        try {
+            return new JsonNumber(Long.parseLong(lexeme));
+        } catch (NumberFormatException e) {
+            try {
+                return new JsonNumber(new BigDecimal(lexeme));
+            } catch (NumberFormatException notNumber) {
+                return new JsonString(lexeme);
+            }
+        }
+    }
+
+    private void push(final String name) {
+        if (depth == names.length) {
+            names = Arrays.copyOf(names, depth * 2);
+            objects = Arrays.copyOf(objects, depth * 2);
+            texts = Arrays.copyOf(texts, depth * 2);
+        }
+        names[depth++] = name;
+    }
+
+    private JsonValue pop() {
+        depth--;
+        final JsonValue value = objects[depth] != null ? objects[depth]
+                : texts[depth] != null ? texts[depth] : JsonNull.INSTANCE;
+        names[depth] = null;
+        objects[depth] = null;
+        texts[depth] = null;
+        return value;
+    }
+}
@@ -0,0 +1,12 @@
+package org.starodubov.xml;
+
+interface XmlLexer {
+    XmlTokenizer.Token nextToken();
+
+    // Атрибуты открывающего тега, выданного последним nextToken(); действительны до следующего вызова
+    int attributeCount();
+
+    String attributeName(int i);
+
+    String attributeValue(int i);
+}
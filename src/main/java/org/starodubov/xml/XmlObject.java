@@ -2,10 +2,16 @@ package org.starodubov.xml;
 
 import java.util.*;
 
+/**
+ * Элемент XML. Созданный по имени объект хранит детей в XmlChildren с
+ * индексом по имени, поэтому add и getObject работают за O(1) даже при
+ * десятках тысяч соседних элементов. Переданный снаружи список детей
+ * используется как есть, и поиск в нём линейный.
+ */
 public record XmlObject(String name, List<XmlValue> children) implements XmlValue {
 
     public XmlObject(String name) {
-        this(name, new ArrayList<>());
+        this(name, new XmlChildren());
     }
 
     @Override
@@ -21,6 +27,9 @@ public record XmlObject(String name, List<XmlValue> children) implements XmlValu
     }
 
     public XmlObject getObject(final String name) {
+       if (children instanceof XmlChildren indexed) {
+           return indexed.object(name);
+       }
        for (var child : children) {
            if (child instanceof XmlObject (var objName, var _)) {
               if (name.equals(objName)) {
@@ -52,18 +61,16 @@ public record XmlObject(String name, List<XmlValue> children) implements XmlValu
         return null;
     }
 
+    // Одноимённый элемент сливается с уже добавленным, остальное дописывается в конец
     public void add(XmlValue newVal) {
-        final var idx = children.indexOf(newVal);
-        if (idx == -1) {
-            children.add(newVal);
-        } else {
-            final XmlValue existed = children.get(idx);
-            if (existed instanceof XmlObject(var _, var existedChildren) && newVal instanceof XmlObject newObj) {
-                existedChildren.addAll(newObj.children());
-            } else {
-                children.add(existed);
+        if (newVal instanceof XmlObject newObj) {
+            final XmlObject existed = getObject(newObj.name());
+            if (existed != null) {
+                existed.children().addAll(newObj.children());
+                return;
             }
         }
+        children.add(newVal);
     }
 
     @Override
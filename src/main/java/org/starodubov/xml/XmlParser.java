@@ -1,26 +1,117 @@
 package org.starodubov.xml;
 
-import org.starodubov.json.JsonObject;
-import org.starodubov.json.JsonTokenizer;
-import org.starodubov.json.JsonValue;
+import org.starodubov.io.ByteSource;
 
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
 
 import static org.starodubov.xml.XmlTokenizer.TokenType;
 
+/**
+ * Парсер не потокобезопасен: экземпляр разбирает один документ за раз, но
+ * между вызовами его можно переиспользовать, например через ThreadLocal.
+ * Токенизаторы и их буферы живут в экземпляре; ссылка на вход отпускается
+ * по завершении разбора.
+ * <p>
+ * Атрибут элемента попадает в дерево дочерним элементом с тем же именем,
+ * так что {@code <item id="5"/>} и {@code <item><id>5</id></item>} дают
+ * одно и то же; пустой элемент — XmlObject без детей. Имена хранятся
+ * вместе с префиксом пространства имён.
+ * <p>
+ * Вложенные элементы разбираются на явном стеке, а не рекурсией; документ
+ * глубже maxDepth (по умолчанию 1000, свойство org.starodubov.xml.maxDepth)
+ * отвергается исключением.
+ */
 public class XmlParser {
-    private XmlTokenizer tokenizer;
+    private static final ByteSource EMPTY = ByteSource.of(ByteBuffer.allocate(0));
+    static final int DEFAULT_MAX_DEPTH = Integer.getInteger("org.starodubov.xml.maxDepth", 1000);
+
+    private final int maxDepth;
+    private XmlObject[] objects = new XmlObject[16];
+    private int depth;
+    private XmlLexer tokenizer;
     private XmlTokenizer.Token currentToken;
+    // Переиспользуемые между вызовами токенизаторы, создаются при первом разборе
+    private XmlTokenizer stringLexer;
+    private Utf8XmlTokenizer utf8Lexer;
+
+    public XmlParser() {
+        this(DEFAULT_MAX_DEPTH);
+    }
+
+    public XmlParser(final int maxDepth) {
+        if (maxDepth < 1) {
+            throw new IllegalArgumentException("maxDepth must be positive: " + maxDepth);
+        }
+        this.maxDepth = maxDepth;
+    }
 
     public XmlValue parse(final String xml) {
-        this.tokenizer = new XmlTokenizer(xml);
-        this.currentToken = tokenizer.nextToken();
-        final XmlValue value = parseValue();
-        if (currentToken.type() != XmlTokenizer.TokenType.EOF) {
-            throw new RuntimeException("Unexpected token after root value: " + currentToken);
+        if (stringLexer == null) {
+            stringLexer = new XmlTokenizer(xml);
+        } else {
+            stringLexer.reset(xml);
+        }
+        try {
+            return parse(stringLexer);
+        } finally {
+            stringLexer.reset("");
         }
+    }
 
-        return value;
+    /**
+     * Разбирает файл прямо из отображения в память, окно сдвигается по мере чтения.
+     */
+    public XmlValue parse(final Path file) {
+        try (var source = ByteSource.map(file)) {
+            return parse(source);
+        }
+    }
+
+    public XmlValue parse(final ByteSource source) {
+        if (utf8Lexer == null) {
+            utf8Lexer = new Utf8XmlTokenizer(source);
+        } else {
+            utf8Lexer.reset(source);
+        }
+        try {
+            return parse(utf8Lexer);
+        } finally {
+            utf8Lexer.reset(EMPTY);
+        }
+    }
+
+    private XmlValue parse(final XmlLexer lexer) {
+        this.tokenizer = lexer;
+        try {
+            this.currentToken = tokenizer.nextToken();
+            final XmlValue value = parseValue();
+            if (currentToken.type() != XmlTokenizer.TokenType.EOF) {
+                throw new RuntimeException("Unexpected token after root value: " + currentToken);
+            }
+
+            return value;
+        } finally {
+            tokenizer = null;
+            currentToken = null;
+        }
+    }
+
+    // Разбирает одно значение, первый токен которого уже прочитан из lexer;
+    // после разбора currentToken() — токен, следующий за значением
+    XmlValue parseValue(final XmlLexer lexer, final XmlTokenizer.Token firstToken) {
+        this.tokenizer = lexer;
+        this.currentToken = firstToken;
+        try {
+            return parseValue();
+        } finally {
+            tokenizer = null;
+        }
+    }
+
+    XmlTokenizer.Token currentToken() {
+        return currentToken;
     }
 
     private boolean consume(XmlTokenizer.TokenType expectedType) {
@@ -31,41 +122,78 @@ public class XmlParser {
         return true;
     }
 
+    // Без рекурсии: открытые элементы лежат на явном стеке, готовое значение
+    // добавляется в элемент на вершине, закрытый элемент — в своего родителя
     private XmlValue parseValue() {
-        return switch (currentToken.type()) {
-            case OPEN_TAG -> parseObject();
-            case STRING -> {
-                final var s = currentToken.lexeme();
-                consume(TokenType.STRING);
-                yield new XmlString(s);
-            }
-            case NUMBER -> {
-                final var s = currentToken.lexeme();
-                consume(TokenType.NUMBER);
-                yield XmlNumber.fromString(s);
+        try {
+            while (true) {
+                final XmlValue value;
+                if (currentToken.type() == TokenType.OPEN_TAG) {
+                    if (depth == maxDepth) {
+                        throw new RuntimeException("Maximum nesting depth " + maxDepth + " exceeded");
+                    }
+                    final var obj = new XmlObject(currentToken.lexeme());
+                    addAttributes(obj);
+                    push(obj);
+                    consume(TokenType.OPEN_TAG);
+                    continue;
+                }
+                if (depth > 0 && currentToken.type() == TokenType.CLOSE_TAG
+                        && currentToken.lexeme().equals(objects[depth - 1].name())) {
+                    consume(TokenType.CLOSE_TAG);
+                    value = objects[--depth];
+                    objects[depth] = null;
+                } else {
+                    value = scalarValue();
+                }
+                if (depth == 0) {
+                    return value;
+                }
+                objects[depth - 1].add(value);
             }
-            case BOOLEAN -> {
-                final var s = currentToken.lexeme();
-                consume(TokenType.BOOLEAN);
-                yield XmlBoolean.fromString(s);
+        } finally {
+            if (depth > 0) {
+                Arrays.fill(objects, 0, depth, null);
+                depth = 0;
             }
-            case NULL -> {
-                consume(TokenType.NULL);
-                yield XmlNull.INSTANCE;
+        }
+    }
+
+    // Атрибуты становятся дочерними элементами с тем же именем и типизированным значением;
+    // объявления пространств имён xmlns данными не считаются
+    private void addAttributes(final XmlObject obj) {
+        for (int i = 0; i < tokenizer.attributeCount(); i++) {
+            final String name = tokenizer.attributeName(i);
+            if (name.equals("xmlns") || name.startsWith("xmlns:")) {
+                continue;
             }
-            default -> throw new RuntimeException("Unexpected token: " + currentToken);
+            final var attribute = new XmlObject(name);
+            attribute.add(scalarValue(XmlTokenizer.textToken(tokenizer.attributeValue(i))));
+            obj.add(attribute);
+        }
+    }
+
+    private XmlValue scalarValue() {
+        final XmlValue value = scalarValue(currentToken);
+        currentToken = tokenizer.nextToken();
+        return value;
+    }
+
+    // Значение текстового токена
+    static XmlValue scalarValue(final XmlTokenizer.Token token) {
+        return switch (token.type()) {
+            case STRING -> new XmlString(token.lexeme());
+            case NUMBER -> XmlNumber.fromString(token.lexeme());
+            case BOOLEAN -> XmlBoolean.fromString(token.lexeme());
+            case NULL -> XmlNull.INSTANCE;
+            default -> throw new RuntimeException("Unexpected token: " + token);
         };
     }
 
-    private XmlObject parseObject() {
-        final String openTagName = currentToken.lexeme();
-        consume(TokenType.OPEN_TAG);
-        final var obj = new XmlObject(openTagName);
-        while (!(currentToken.type() == TokenType.CLOSE_TAG && currentToken.lexeme().equals(openTagName))) {
-            obj.add(parseValue());
+    private void push(final XmlObject obj) {
+        if (depth == objects.length) {
+            objects = Arrays.copyOf(objects, depth * 2);
         }
-
-        consume(TokenType.CLOSE_TAG);
-        return obj;
+        objects[depth++] = obj;
     }
 }
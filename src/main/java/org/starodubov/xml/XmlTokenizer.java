@@ -1,10 +1,35 @@
 package org.starodubov.xml;
 
-public class XmlTokenizer {
-    private final String input;
+import java.util.Arrays;
+
+/**
+ * Токенизатор XML за один проход. Открывающий тег разбирается вместе с
+ * атрибутами: их имена и значения запоминаются смещениями во входе и
+ * превращаются в строки только по запросу attributeName/attributeValue.
+ * Имена элементов и атрибутов берутся из NameCache и включают префикс
+ * пространства имён ("ns:item"). Пустой элемент {@code <item/>} выдаётся
+ * парой OPEN_TAG и CLOSE_TAG. Комментарии, инструкции обработки (в том
+ * числе объявление {@code <?xml ...?>}) и DOCTYPE пропускаются, секция
+ * CDATA становится токеном STRING без обрезки пробелов и классификации.
+ * В тексте и значениях атрибутов раскрываются ссылки &amp;lt; &amp;gt;
+ * &amp;amp; &amp;quot; &amp;apos; и символьные &amp;#NN; / &amp;#xHH;,
+ * неизвестная ссылка — ошибка разбора.
+ */
+public class XmlTokenizer implements XmlLexer {
+    private String input;
     private int pos = 0;
     final static Token NULL_TOKEN = new Token(TokenType.NULL, "null");
     final static Token EOF_TOKEN = new Token(TokenType.EOF, "EOF");
+    // Самая длинная ссылка между '&' и ';': "#x10FFFF"
+    static final int MAX_ENTITY = 8;
+
+    // Смещения атрибутов последнего открывающего тега: начало и конец имени, начало и конец значения
+    private int[] attributes = new int[16];
+    private int attributeCount;
+    // Имя пустого элемента, для которого ещё не выдан CLOSE_TAG
+    private String pendingClose;
+    // Буфер для текста с раскрытыми ссылками
+    private char[] chars = new char[0];
 
     public enum TokenType {
         OPEN_TAG,
@@ -27,94 +52,355 @@ public class XmlTokenizer {
         this.input = xml;
     }
 
+    // Переключает токенизатор на новый вход
+    void reset(String xml) {
+        this.input = xml;
+        this.pos = 0;
+        this.attributeCount = 0;
+        this.pendingClose = null;
+    }
+
+    @Override
     public Token nextToken() {
-        skipWhitespace();
+        attributeCount = 0;
+        if (pendingClose != null) {
+            final var name = pendingClose;
+            pendingClose = null;
+            return new Token(TokenType.CLOSE_TAG, name);
+        }
+        while (true) {
+            skipWhitespace();
+            if (pos >= input.length()) {
+                return EOF_TOKEN;
+            }
+            if (input.charAt(pos) != '<') {
+                return readText();
+            }
+            final Token markup = readMarkup();
+            if (markup != null) {
+                return markup;
+            }
+        }
+    }
+
+    /**
+     * Число атрибутов тега, выданного последним nextToken(); для других токенов 0.
+     */
+    @Override
+    public int attributeCount() {
+        return attributeCount;
+    }
+
+    @Override
+    public String attributeName(int i) {
+        checkAttribute(i);
+        return NameCache.SHARED.get(input, attributes[4 * i], attributes[4 * i + 1]);
+    }
+
+    @Override
+    public String attributeValue(int i) {
+        checkAttribute(i);
+        return text(attributes[4 * i + 2], attributes[4 * i + 3]);
+    }
+
+    private void checkAttribute(int i) {
+        if (i < 0 || i >= attributeCount) {
+            throw new IndexOutOfBoundsException("Attribute " + i + " of " + attributeCount);
+        }
+    }
+
+    // Тег, CDATA или пропускаемая разметка; null, если токена нет
+    private Token readMarkup() {
+        final int start = pos;
+        pos++; // skip '<'
         if (pos >= input.length()) {
-            return EOF_TOKEN;
-        }
-        final char c = input.charAt(pos);
-
-        return switch (c) {
-            case '<' -> readTag();
-            case char t when (t == 't' && startsWith(pos, "true")) || (t == 'f' && startsWith(pos, "false")) ->
-                    readBooleanOrString();
-            case char d when Character.isDigit(d) || d == '+' || d == '-' -> readDigitOrString();
-            case char n when n == 'N' && startsWith(pos, "NULL") -> readNullOrString();
-            case char _ -> readString();
-        };
-    }
-
-    private Token readTag() {
-       pos++; // skip '<'
-       if (pos < input.length() && input.charAt(pos) == '/') {
-          // close tag
-           pos++; // skip '/'
-           final var s = readRawString();
-           pos++; // skip '>'
-           return new Token(TokenType.CLOSE_TAG, s);
-       } else {
-           // open tag
-           final String s = readRawString();
-           pos++; // skip '>'
-           return new Token(TokenType.OPEN_TAG, s);
-       }
-    }
-
-    private String readRawString() {
-        final var sb = new StringBuilder();
-        while (pos < input.length() && input.charAt(pos) != '>' && input.charAt(pos) != '<') {
-            sb.append(input.charAt(pos));
+            throw unterminated(start);
+        }
+        switch (input.charAt(pos)) {
+            case '/' -> {
+                pos++; // skip '/'
+                final String name = readName();
+                skipWhitespace();
+                expect('>', start);
+                return new Token(TokenType.CLOSE_TAG, name);
+            }
+            case '?' -> {
+                skipPast("?>", pos + 1, start);
+                return null;
+            }
+            case '!' -> {
+                if (input.startsWith("!--", pos)) {
+                    skipPast("-->", pos + 3, start);
+                    return null;
+                }
+                if (input.startsWith("![CDATA[", pos)) {
+                    final int from = pos + 8;
+                    skipPast("]]>", from, start);
+                    return new Token(TokenType.STRING, input.substring(from, pos - 3));
+                }
+                skipDeclaration(start);
+                return null;
+            }
+            default -> {
+                return readOpenTag(start);
+            }
+        }
+    }
+
+    private Token readOpenTag(int start) {
+        final String name = readName();
+        while (true) {
+            skipWhitespace();
+            if (pos >= input.length()) {
+                throw unterminated(start);
+            }
+            final char c = input.charAt(pos);
+            if (c == '>') {
+                pos++;
+                return new Token(TokenType.OPEN_TAG, name);
+            }
+            if (c == '/') {
+                pos++;
+                expect('>', start);
+                pendingClose = name;
+                return new Token(TokenType.OPEN_TAG, name);
+            }
+            readAttribute(start);
+        }
+    }
+
+    // name = "value" или name = 'value'
+    private void readAttribute(int start) {
+        final int nameFrom = pos;
+        final int nameTo = skipName();
+        skipWhitespace();
+        expect('=', start);
+        skipWhitespace();
+        final char quote = pos < input.length() ? input.charAt(pos) : 0;
+        if (quote != '"' && quote != '\'') {
+            throw new RuntimeException("Expected quoted attribute value at position " + pos);
+        }
+        final int valueFrom = pos + 1;
+        final int valueTo = input.indexOf(quote, valueFrom);
+        if (valueTo < 0) {
+            throw unterminated(start);
+        }
+        pos = valueTo + 1;
+        if (4 * attributeCount == attributes.length) {
+            attributes = Arrays.copyOf(attributes, attributes.length * 2);
+        }
+        final int a = 4 * attributeCount++;
+        attributes[a] = nameFrom;
+        attributes[a + 1] = nameTo;
+        attributes[a + 2] = valueFrom;
+        attributes[a + 3] = valueTo;
+    }
+
+    private String readName() {
+        skipWhitespace();
+        final int from = pos;
+        return NameCache.SHARED.get(input, from, skipName());
+    }
+
+    // Конец имени, начинающегося в pos
+    private int skipName() {
+        final int from = pos;
+        while (pos < input.length() && !isNameEnd(input.charAt(pos))) {
             pos++;
         }
-        return sb.toString().trim();
+        if (pos == from) {
+            throw new RuntimeException("Expected name at position " + pos);
+        }
+        return pos;
     }
 
-    private Token readString() {
-        return new Token(TokenType.STRING, readRawString());
+    private static boolean isNameEnd(char c) {
+        return c == '>' || c == '/' || c == '=' || c == '<' || Character.isWhitespace(c);
     }
 
-    private Token readNullOrString() {
-        final var s = readRawString();
-        if (s.equals("NULL")) {
-            return NULL_TOKEN;
+    // Пропускает до терминатора включительно, поиск начинается с from
+    private void skipPast(String terminator, int from, int start) {
+        final int end = input.indexOf(terminator, from);
+        if (end < 0) {
+            throw unterminated(start);
         }
-        return new Token(TokenType.STRING, s);
+        pos = end + terminator.length();
     }
 
-    private Token readDigitOrString() {
-        final var s = readRawString();
-        if (isNum(s)) {
+    // <!DOCTYPE ...> с возможным внутренним подмножеством в квадратных скобках
+    private void skipDeclaration(int start) {
+        int brackets = 0;
+        for (; pos < input.length(); pos++) {
+            final char c = input.charAt(pos);
+            if (c == '[') {
+                brackets++;
+            } else if (c == ']') {
+                brackets--;
+            } else if (c == '>' && brackets == 0) {
+                pos++;
+                return;
+            }
+        }
+        throw unterminated(start);
+    }
+
+    private void expect(char c, int start) {
+        if (pos >= input.length() || input.charAt(pos) != c) {
+            throw new RuntimeException("Expected '" + c + "' in tag at position " + start);
+        }
+        pos++;
+    }
+
+    private static RuntimeException unterminated(int start) {
+        return new RuntimeException("Unterminated markup at position " + start);
+    }
+
+    // Текст до следующего '<' без пробелов по краям
+    private Token readText() {
+        int from = pos;
+        int to = input.indexOf('<', pos);
+        if (to < 0) {
+            to = input.length();
+        }
+        pos = to;
+        while (to > from && input.charAt(to - 1) <= ' ') {
+            to--;
+        }
+        return textToken(text(from, to));
+    }
+
+    // Подстрока [from, to); ссылки раскрываются, только если в ней есть '&'
+    private String text(int from, int to) {
+        int amp = input.indexOf('&', from, to);
+        if (amp < 0) {
+            return input.substring(from, to);
+        }
+        if (chars.length < to - from) {
+            chars = new char[Math.max(64, Math.max(to - from, chars.length * 2))];
+        }
+        int n = 0;
+        int i = from;
+        while (true) {
+            input.getChars(i, amp, chars, n);
+            n += amp - i;
+            int semi = amp + 1;
+            while (semi < to && semi - amp <= MAX_ENTITY && input.charAt(semi) != ';') {
+                semi++;
+            }
+            if (semi == to || input.charAt(semi) != ';') {
+                throw badEntity(amp);
+            }
+            n += Character.toChars(entity(amp, semi), chars, n);
+            i = semi + 1;
+            amp = input.indexOf('&', i, to);
+            if (amp < 0) {
+                input.getChars(i, to, chars, n);
+                n += to - i;
+                return new String(chars, 0, n);
+            }
+        }
+    }
+
+    // Символ ссылки между '&' в amp и ';' в semi
+    private int entity(int amp, int semi) {
+        final int from = amp + 1;
+        if (semi - from >= 2 && input.charAt(from) == '#') {
+            final boolean hex = input.charAt(from + 1) == 'x';
+            final int radix = hex ? 16 : 10;
+            int i = hex ? from + 2 : from + 1;
+            if (i == semi) {
+                throw badEntity(amp);
+            }
+            int cp = 0;
+            for (; i < semi; i++) {
+                final int d = digit(input.charAt(i), radix);
+                if (d < 0 || cp > Character.MAX_CODE_POINT) {
+                    throw badEntity(amp);
+                }
+                cp = cp * radix + d;
+            }
+            if (!isCharReference(cp)) {
+                throw badEntity(amp);
+            }
+            return cp;
+        }
+        if (input.startsWith("lt;", from)) {
+            return '<';
+        }
+        if (input.startsWith("gt;", from)) {
+            return '>';
+        }
+        if (input.startsWith("amp;", from)) {
+            return '&';
+        }
+        if (input.startsWith("quot;", from)) {
+            return '"';
+        }
+        if (input.startsWith("apos;", from)) {
+            return '\'';
+        }
+        throw badEntity(amp);
+    }
+
+    private static RuntimeException badEntity(int amp) {
+        return new RuntimeException("Invalid entity reference at position " + amp);
+    }
+
+    // ASCII-цифра в системе счисления 10 или 16, иначе -1
+    static int digit(int c, int radix) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (radix == 16) {
+            if (c >= 'a' && c <= 'f') {
+                return c - 'a' + 10;
+            }
+            if (c >= 'A' && c <= 'F') {
+                return c - 'A' + 10;
+            }
+        }
+        return -1;
+    }
+
+    static boolean isCharReference(int cp) {
+        return cp > 0 && cp <= Character.MAX_CODE_POINT
+                && (cp < Character.MIN_SURROGATE || cp > Character.MAX_SURROGATE);
+    }
+
+    // Текст классифицируется по содержимому: число, true/false, NULL или строка
+    static Token textToken(final String s) {
+        if (s.isEmpty()) {
+            return new Token(TokenType.STRING, s);
+        }
+        final char c = s.charAt(0);
+        if ((c == 't' && s.equals("true")) || (c == 'f' && s.equals("false"))) {
+            return new Token(TokenType.BOOLEAN, s);
+        }
+        if ((isDigit(c) || c == '+' || c == '-') && isNum(s)) {
             return new Token(TokenType.NUMBER, s);
         }
+        if (c == 'N' && s.equals("NULL")) {
+            return NULL_TOKEN;
+        }
         return new Token(TokenType.STRING, s);
     }
 
-    private boolean isNum(final String s) {
+    private static boolean isNum(final String s) {
         for (int i = 0; i < s.length(); i++) {
             if (i == 0 && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
                 continue;
             }
-            if (!Character.isDigit(s.charAt(i))) {
+            if (!isDigit(s.charAt(i))) {
                 return false;
             }
         }
         return true;
     }
 
-    private boolean startsWith(int start, String word) {
-        return input.startsWith(word, start);
+    private static boolean isDigit(int c) {
+        return c >= '0' && c <= '9';
     }
 
-    private Token readBooleanOrString() {
-        final var s = readRawString();
-        return switch (s) {
-            case "true" -> new Token(TokenType.BOOLEAN, "true");
-            case "false" -> new Token(TokenType.BOOLEAN, "false");
-            default -> new Token(TokenType.STRING, s);
-        };
-    }
-
-
     private void skipWhitespace() {
         while (pos < input.length() && Character.isWhitespace(input.charAt(pos))) {
             pos++;
@@ -0,0 +1,75 @@
+package org.starodubov.json;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonExtractorTest {
+
+    String json = """
+            {
+                "user" : {"id" : 7, "name" : "Иван", "tags" : ["a", "b"]},
+                "skip" : {"deep" : [[1, 2], {"user" : {"id" : 0}}]},
+                "items" : [
+                    {"price" : 1.5, "qty" : 2},
+                    {"qty" : 1},
+                    {"price" : 3, "meta" : {"price" : 100}}
+                ],
+                "we\\u0069rd key" : "escaped"
+            }""";
+
+    private static List<String> strings(List<JsonValue> values) {
+        return values.stream().map(String::valueOf).toList();
+    }
+
+    @Test
+    void extract_fields_and_wildcards() {
+        var extractor = new JsonExtractor("$.user.id", "$.items[*].price", "$.user.tags[1]", "$['weird key']", "$.missing");
+
+        for (Map<JsonPath, List<JsonValue>> result : List.of(
+                extractor.extract(json),
+                extractor.extract(json.getBytes(StandardCharsets.UTF_8)))) {
+            var values = result.values().stream().map(JsonExtractorTest::strings).toList();
+            assertEquals(List.of(
+                    List.of("7"),
+                    List.of("1.5", "3"),
+                    List.of("\"b\""),
+                    List.of("\"escaped\""),
+                    List.of()), values);
+        }
+    }
+
+    @Test
+    void nested_paths_inside_matched_value() {
+        var result = new JsonExtractor("$.user", "$.user.name", "$.*.id").extract(json);
+        var values = result.values().stream().map(JsonExtractorTest::strings).toList();
+
+        assertEquals("\"Иван\"", values.get(1).getFirst());
+        assertEquals(List.of("7"), values.get(2));
+        assertInstanceOf(JsonObject.class, result.get(JsonPath.compile("$.user")).getFirst());
+    }
+
+    @Test
+    void same_as_select_on_tree() {
+        var path = JsonPath.compile("$.items[*]");
+        var tree = new JsonParser().parse(json);
+
+        assertEquals(strings(path.select(tree)), strings(new JsonExtractor(path).extract(json).get(path)));
+    }
+
+    @Test
+    void invalid_path_fails() {
+        assertThrows(RuntimeException.class, () -> JsonPath.compile("user.id"));
+        assertThrows(RuntimeException.class, () -> JsonPath.compile("$.items[x]"));
+        assertThrows(RuntimeException.class, () -> JsonPath.compile("$.items[0"));
+    }
+
+    @Test
+    void unbalanced_document_fails() {
+        assertThrows(RuntimeException.class, () -> new JsonExtractor("$.a").extract("{\"b\" : [1, 2}"));
+    }
+}
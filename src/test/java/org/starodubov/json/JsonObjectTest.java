@@ -0,0 +1,45 @@
+package org.starodubov.json;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonObjectTest {
+
+    @Test
+    void keeps_insertion_order_and_replaces_values() {
+        var obj = new JsonObject();
+        obj.add("b", new JsonNumber(1));
+        obj.add("a", new JsonNumber(2));
+        obj.add("b", new JsonNumber(3));
+
+        assertEquals(List.of("b", "a"), new ArrayList<>(obj.keys()));
+        assertEquals("{b=3, a=2}", obj.toString());
+        assertEquals(2, obj.size());
+        assertNull(obj.get("c"));
+        assertEquals("{}", new JsonObject().toString());
+    }
+
+    @Test
+    void lookup_past_hash_threshold() {
+        var obj = new JsonObject();
+        for (int i = 0; i < 100; i++) {
+            obj.add("key" + i, new JsonNumber(i));
+        }
+        obj.add("key42", new JsonNumber(-1));
+
+        assertEquals(100, obj.size());
+        for (int i = 0; i < 100; i++) {
+            // ключ не совпадает по ссылке с сохранённым
+            var value = (JsonNumber) obj.get(new String("key" + i));
+            assertEquals(i == 42 ? -1 : i, value.longValue());
+        }
+        assertTrue(obj.keys().contains("key99"));
+        assertFalse(obj.keys().contains("key100"));
+        assertNull(obj.get("key100"));
+        assertEquals("key0", obj.keys().iterator().next());
+    }
+}
@@ -1,6 +1,24 @@
 package org.starodubov.json;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.junit.jupiter.api.io.TempDir;
+import org.starodubov.io.ByteSource;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
 
 class JsonParserTest {
 
@@ -24,4 +42,376 @@ class JsonParserTest {
 
         System.out.println(parse);
     }
-}
\ No newline at end of file
+
+    @Test
+    void parse_nested_object() {
+        var obj = (JsonObject) parser.parse(json);
+
+        assertEquals("world", ((JsonString) obj.get("hello")).getValue());
+        assertSame(JsonNull.INSTANCE, obj.get("f1"));
+        assertTrue(((JsonBoolean) obj.get("f2")).getValue());
+        assertEquals(1.0, ((JsonNumber) obj.get("f3")).getValue());
+        var a = (JsonObject) obj.get("a");
+        assertEquals("test", ((JsonString) a.get("hoho")).getValue());
+        assertEquals("2", ((JsonString) a.get("d")).getValue());
+    }
+
+    @Test
+    void parse_array_with_escapes() {
+        var arr = (JsonArray) parser.parse("[\"a\\\"b\\u0041\", -2.5e1, []]");
+
+        assertEquals(3, arr.size());
+        assertEquals("a\"bA", ((JsonString) arr.get(0)).getValue());
+        assertEquals(-25.0, ((JsonNumber) arr.get(1)).getValue());
+        assertEquals(0, ((JsonArray) arr.get(2)).size());
+    }
+
+    @Test
+    void tokenizer_cursor_mode() {
+        var t = new JsonTokenizer(" {\"k\\n\" : [12, false]}");
+
+        assertEquals(JsonTokenizer.LEFT_BRACE, t.next());
+        assertEquals(JsonTokenizer.STRING, t.next());
+        assertEquals(3, t.tokenStart());
+        assertEquals(6, t.tokenEnd());
+        assertEquals("k\\n", t.lexeme());
+        assertEquals("k\n", t.stringValue());
+        assertEquals(JsonTokenizer.COLON, t.next());
+        assertEquals(JsonTokenizer.LEFT_BRACKET, t.next());
+        assertEquals(JsonTokenizer.NUMBER, t.next());
+        assertEquals(12.0, t.numberValue());
+        assertEquals(JsonTokenizer.COMMA, t.next());
+        assertEquals(JsonTokenizer.FALSE, t.next());
+        assertEquals(JsonTokenizer.RIGHT_BRACKET, t.next());
+        assertEquals(JsonTokenizer.RIGHT_BRACE, t.next());
+        assertEquals(JsonTokenizer.EOF, t.next());
+    }
+
+    @Test
+    void tokenizer_rejects_invalid_escape() {
+        var t = new JsonTokenizer("\"\\x\"");
+
+        assertThrows(RuntimeException.class, t::next);
+    }
+
+    @Test
+    void strings_with_escapes_at_any_offset() {
+        // Кавычка и обратный слэш на каждой позиции относительно восьмибайтовых слов
+        for (int prefix = 0; prefix < 20; prefix++) {
+            for (var tail : new String[]{"", "\\\"", "\\\\", "\\ud83d\\ude00", "é😀"}) {
+                var text = "[\"" + "x".repeat(prefix) + tail + "\", \"" + tail + "y\"]";
+                var expected = parser.parse(text).toString();
+                var bytes = text.getBytes(StandardCharsets.UTF_8);
+                assertEquals(expected, parser.parse(bytes).toString(), text);
+                var little = ByteBuffer.allocateDirect(bytes.length).order(ByteOrder.LITTLE_ENDIAN).put(bytes).flip();
+                assertEquals(expected, parser.parse(little).toString(), text);
+            }
+        }
+        assertEquals("😀\"", ((JsonString) parser.parse("\"\\ud83d\\ude00\\\"\"")).getValue());
+    }
+
+    @Test
+    void unpaired_surrogates_rejected() {
+        for (var text : new String[]{"\"\\ud83d\"", "\"\\ude00\"", "\"\\ud83dx\"", "\"\\ud83d\\u0041\"", "\"\\u00４1\"", "\"\\u12\""}) {
+            assertThrows(RuntimeException.class, () -> new JsonTokenizer(text).next(), text);
+            var utf8 = new Utf8JsonTokenizer(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)));
+            assertThrows(RuntimeException.class, utf8::next, text);
+        }
+    }
+
+    @Test
+    void parse_numbers_same_as_parse_double() {
+        String[] numbers = {"0", "-0", "42", "-9007199254740993", "0.1", "3.14159", "1e308", "2e-308",
+                "4.9e-324", "1.7976931348623157e308", "1e400", "123456789012345678901234567890", "0.30000000000000004",
+                "2.2250738585072011e-308", "+7", "1.", "-.5", "1E+2"};
+        for (String n : numbers) {
+            var t = new JsonTokenizer(n);
+            var u = new Utf8JsonTokenizer(ByteBuffer.wrap(n.getBytes(StandardCharsets.UTF_8)));
+            assertEquals(JsonLexer.NUMBER, t.next());
+            assertEquals(JsonLexer.NUMBER, u.next());
+            assertEquals(Double.parseDouble(n), t.numberValue(), n);
+            assertEquals(Double.parseDouble(n), u.numberValue(), n);
+        }
+        assertThrows(RuntimeException.class, () -> new JsonTokenizer("-").next());
+        assertThrows(RuntimeException.class, () -> new JsonTokenizer("1e+").next());
+    }
+
+    @Test
+    void parse_numbers_without_precision_loss() {
+        var arr = (JsonArray) parser.parse("[9007199254740993, -9223372036854775808, 12345678901234567890, 0.1, 1e2, 123456789012345678901234.5]");
+
+        var id = (JsonNumber) arr.get(0);
+        assertTrue(id.isLong());
+        assertEquals(9007199254740993L, id.longValue());
+        assertEquals("9007199254740993", id.toString());
+        assertEquals(Long.MIN_VALUE, ((JsonNumber) arr.get(1)).longValueExact());
+        assertEquals(new BigInteger("12345678901234567890"), ((JsonNumber) arr.get(2)).bigIntegerValue());
+        assertThrows(ArithmeticException.class, ((JsonNumber) arr.get(2))::longValueExact);
+        assertEquals(new BigDecimal("0.1"), ((JsonNumber) arr.get(3)).decimalValue());
+        assertEquals(0.1, ((JsonNumber) arr.get(3)).getValue());
+        assertEquals(100L, ((JsonNumber) arr.get(4)).longValueExact());
+        assertEquals(new BigDecimal("123456789012345678901234.5"), ((JsonNumber) arr.get(5)).decimalValue());
+    }
+
+    @Test
+    void parse_shares_key_instances() {
+        var first = (JsonObject) parser.parse("{\"userId\" : 1, \"ключ\" : 2}");
+        var second = (JsonObject) parser.parse("{\"userId\" : 3, \"ключ\" : 4}".getBytes(StandardCharsets.UTF_8));
+        var escaped = (JsonObject) parser.parse("{\"user\\u0049d\" : 5}");
+
+        assertSame(first.keys().iterator().next(), second.keys().iterator().next());
+        assertEquals(first.keys(), second.keys());
+        assertEquals(Set.of("userId"), escaped.keys());
+    }
+
+    @Test
+    void parse_tape() {
+        var text = "{\"id\" : 12345678901234, \"s\" : \"a\\u00e9 😀\", \"n\" : [1.5, -0, 1e2, true, false, null, {}, []], \"o\" : {\"x\" : \"y\"}}";
+
+        for (JsonTape tape : new JsonTape[]{parser.parseTape(text), parser.parseTape(text.getBytes(StandardCharsets.UTF_8))}) {
+            var root = (TapeObject) tape.root();
+            assertEquals(parser.parse(text).toString(), root.toString());
+            assertEquals(12345678901234L, ((JsonNumber) root.get("id")).longValueExact());
+            assertEquals("aé 😀", ((JsonString) root.get("s")).getValue());
+            var n = (TapeArray) root.get("n");
+            assertEquals(8, n.size());
+            assertEquals(new BigDecimal("1.5"), ((JsonNumber) n.get(0)).decimalValue());
+            assertSame(JsonNull.INSTANCE, n.get(5));
+            assertEquals(0, ((TapeObject) n.get(6)).size());
+            assertEquals("\"y\"", ((TapeObject) root.get("o")).get("x").toString());
+            assertNull(root.get("missing"));
+            assertEquals(List.of("id", "s", "n", "o"), List.copyOf(root.keys()));
+        }
+        assertThrows(RuntimeException.class, () -> parser.parseTape("[1, 2"));
+    }
+
+    @Test
+    void tape_duplicate_keys() {
+        var text = "{\"a\" : 1, \"b\" : 2, \"a\" : 3}";
+        var dom = (JsonObject) parser.parse(text);
+        var tape = (TapeObject) parser.parseTape(text).root();
+        // Значение по ключу как в дереве, остальное — как в исходном тексте
+        assertEquals(dom.get("a").toString(), tape.get("a").toString());
+        assertEquals(List.copyOf(dom.keys()), List.copyOf(tape.keys()));
+        assertEquals(2, dom.size());
+        assertEquals(3, tape.size());
+        assertEquals("{a=3, b=2}", dom.toString());
+        assertEquals("{a=1, b=2, a=3}", tape.toString());
+        assertEquals("{\"a\":1,\"b\":2,\"a\":3}", JsonWriter.toJson(tape));
+    }
+
+    @Test
+    void parse_trailing_token_fails() {
+        assertThrows(RuntimeException.class, () -> parser.parse("{} 1"));
+    }
+
+    @Test
+    void parser_reusable_after_error() {
+        var text = "{\"a\" : [\"x\\ty\", 1, {\"b\" : null}], \"c\" : \"\u00e9\"}";
+        var bytes = text.getBytes(StandardCharsets.UTF_8);
+        var expected = new JsonParser().parse(text).toString();
+        for (int i = 0; i < 3; i++) {
+            assertEquals(expected, parser.parse(text).toString());
+            assertThrows(RuntimeException.class, () -> parser.parse("{\"a\" : [1, \"x\\u00\"]"));
+            assertEquals(expected, parser.parse(bytes).toString());
+            assertThrows(RuntimeException.class, () -> parser.parse("[1, 2".getBytes(StandardCharsets.UTF_8)));
+            assertEquals(expected, parser.parseTape(bytes).root().toString());
+        }
+    }
+
+    @Test
+    void parse_utf8_bytes_same_as_string() {
+        var text = "{\"имя\" : \"Привет, 世界 😀\", \"esc\" : \"\\u00e9\\n\\ud83d\\ude00 é\", \"n\" : [1, -2.5]}";
+        var bytes = text.getBytes(StandardCharsets.UTF_8);
+        var direct = ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+
+        var expected = parser.parse(text).toString();
+        assertEquals(expected, parser.parse(bytes).toString());
+        assertEquals(expected, parser.parse(direct).toString());
+        assertEquals(0, direct.position());
+
+        var obj = (JsonObject) parser.parse(bytes);
+        assertEquals("Привет, 世界 😀", ((JsonString) obj.get("имя")).getValue());
+        assertEquals("é\n😀 é", ((JsonString) obj.get("esc")).getValue());
+    }
+
+    @Test
+    void malformed_utf8_same_with_and_without_escapes() {
+        // Ведущий байт и до трёх следующих: границы диапазонов продолжения, overlong, суррогаты, > U+10FFFF, обрыв
+        int[] next = {'A', 0x80, 0x8F, 0x90, 0x9F, 0xA0, 0xBF, 0xC0, 0xC2, 0xE0, 0xF0, 0xFF};
+        var body = new byte[4];
+        for (int lead = 0x80; lead <= 0xFF; lead++) {
+            body[0] = (byte) lead;
+            for (int length = 1, combos = 1; length <= 4; length++, combos *= next.length) {
+                for (int combo = 0; combo < combos; combo++) {
+                    for (int k = 1, rest = combo; k < length; k++, rest /= next.length) {
+                        body[k] = (byte) next[rest % next.length];
+                    }
+                    var expected = new String(body, 0, length, StandardCharsets.UTF_8);
+                    var hex = HexFormat.ofDelimiter(" ").formatHex(body, 0, length);
+                    assertEquals(expected, utf8String(body, length, ""), hex);
+                    assertEquals("\t" + expected, utf8String(body, length, "\\t"), hex);
+                }
+            }
+        }
+        // Символ вне BMP, младшие 16 бит которого попадают в диапазон суррогатов
+        var astral = "\uD836\uDC00".getBytes(StandardCharsets.UTF_8);
+        assertEquals("\t\uD836\uDC00", utf8String(astral, astral.length, "\\t"));
+    }
+
+    private String utf8String(byte[] body, int length, String prefix) {
+        var doc = new byte[prefix.length() + length + 2];
+        doc[0] = '"';
+        System.arraycopy(prefix.getBytes(StandardCharsets.US_ASCII), 0, doc, 1, prefix.length());
+        System.arraycopy(body, 0, doc, 1 + prefix.length(), length);
+        doc[doc.length - 1] = '"';
+        return ((JsonString) parser.parse(doc)).getValue();
+    }
+
+    @Test
+    void parse_mapped_file(@TempDir Path dir) throws IOException {
+        var file = Files.writeString(dir.resolve("doc.json"), json);
+
+        var expected = parser.parse(json).toString();
+        assertEquals(expected, parser.parse(file).toString());
+        // маленькое окно заставляет сдвигать отображение посреди токенов
+        try (var source = ByteSource.map(file, 4)) {
+            assertEquals(expected, parser.parse(source).toString());
+        }
+    }
+
+    @Test
+    void parse_with_structural_index() {
+        var sb = new StringBuilder("[");
+        for (int i = 0; i < 200; i++) {
+            if (i > 0) sb.append(", ");
+            // обратные слэши и кавычки попадают на границы 64-байтовых блоков
+            sb.append("{\"k").append(i).append("\" : \"").append("\\\\".repeat(i % 7)).append("\\\"x\\\\")
+                    .append("\", \"n\":").append(i).append(".5e1, \"b\" : [true,false,null] }");
+        }
+        sb.append("]");
+        var bytes = sb.toString().getBytes(StandardCharsets.UTF_8);
+
+        var expected = parser.parse(sb.toString()).toString();
+        assertEquals(expected, parser.parseIndexed(bytes, StructuralIndexer.SCALAR).toString());
+        assertEquals(expected, parser.parseIndexed(bytes, StructuralIndexer.get()).toString());
+    }
+
+    @Test
+    void structural_index_rejects_garbage_after_literal() {
+        var bytes = "[true1, 2]".getBytes(StandardCharsets.UTF_8);
+
+        assertThrows(RuntimeException.class, () -> parser.parseIndexed(bytes, StructuralIndexer.get()));
+        assertThrows(RuntimeException.class, () -> parser.parseIndexed("[\"abc]".getBytes(StandardCharsets.UTF_8), StructuralIndexer.SCALAR));
+    }
+
+    @Test
+    void parse_lazy() {
+        var obj = (JsonObject) parser.parseLazy(json);
+
+        assertEquals(parser.parse(json).toString(), obj.toString());
+        var a = (JsonObject) obj.get("a");
+        assertSame(a, obj.get("a"));
+        assertEquals("test", ((JsonString) a.get("hoho")).getValue());
+        assertEquals(1.0, ((JsonNumber) obj.get("f3")).getValue());
+
+        var arr = (JsonArray) parser.parseLazy("[{\"id\" : 1}, \"x\\ty\", [2, [3]]]".getBytes(StandardCharsets.UTF_8));
+        assertEquals(3, arr.size());
+        assertEquals("x\ty", ((JsonString) arr.get(1)).getValue());
+        assertEquals(3.0, ((JsonNumber) ((JsonArray) ((JsonArray) arr.get(2)).get(1)).get(0)).getValue());
+    }
+
+    @Test
+    void lazy_members_materialized_once() {
+        var text = "{\"a\" : {\"b\" : [1, {\"c\" : \"x\"}]}, \"d\" : [true, \"y\"], \"e\" : 2}";
+        int[] lexers = new int[1];
+        var root = LazyValue.parse(() -> {
+            lexers[0]++;
+            return new JsonTokenizer(text);
+        }, JsonParser.DEFAULT_MAX_DEPTH);
+        var expected = parser.parse(text).toString();
+        assertEquals(expected, root.toString());
+        // Каждый ленивый член разобран один раз: повторный toString() и get() новых разборов не дают
+        int afterFirst = lexers[0];
+        assertEquals(expected, root.toString());
+        assertEquals("[1, {c=\"x\"}]", ((JsonObject) ((JsonObject) root).get("a")).get("b").toString());
+        assertEquals(afterFirst, lexers[0]);
+    }
+
+    @Test
+    void deep_nesting_without_recursion() {
+        int depth = 100_000;
+        var deep = new JsonParser(depth);
+        var arrays = "[".repeat(depth) + "1" + "]".repeat(depth);
+        JsonValue value = deep.parse(arrays.getBytes(StandardCharsets.UTF_8));
+        for (int i = 0; i < depth; i++) {
+            value = ((JsonArray) value).get(0);
+        }
+        assertEquals(1.0, ((JsonNumber) value).getValue());
+
+        int pairs = depth / 2 - 1;
+        var objects = "{\"a\":[".repeat(pairs) + "{}" + "]}".repeat(pairs);
+        value = deep.parse(objects);
+        for (int i = 0; i < pairs; i++) {
+            value = ((JsonArray) ((JsonObject) value).get("a")).get(0);
+        }
+        assertEquals(0, ((JsonObject) value).size());
+        // На ленте: по два слова на контейнер и слово на ключ
+        assertEquals(pairs * 5 + 2, deep.parseTape(objects).skip(0));
+    }
+
+    @Test
+    void max_depth() {
+        var limit = JsonParser.DEFAULT_MAX_DEPTH;
+        var ok = "[".repeat(limit) + "]".repeat(limit);
+        var tooDeep = "[" + ok + "]";
+        assertEquals(ok, JsonWriter.toJson(parser.parse(ok)));
+        assertEquals(ok, JsonWriter.toJson(parser.parseTape(ok).root()));
+        var e = assertThrows(RuntimeException.class, () -> parser.parse(tooDeep));
+        assertTrue(e.getMessage().contains("depth"), e.getMessage());
+        assertThrows(RuntimeException.class, () -> parser.parseTape(tooDeep));
+        assertThrows(RuntimeException.class, () -> new JsonPushParser(v -> {}).feed(
+                ByteBuffer.wrap(tooDeep.getBytes(StandardCharsets.UTF_8))));
+        // После отказа стек очищен, и парсер снова разбирает документы
+        assertEquals("{a=[1, {}]}", parser.parse("{\"a\":[1,{}]}").toString());
+        assertThrows(IllegalArgumentException.class, () -> new JsonParser(0));
+    }
+
+    @Test
+    void max_depth_on_every_entry_point() {
+        var limited = new JsonParser(10);
+        var ok = "[".repeat(10) + "]".repeat(10);
+        var tooDeep = "{\"a\":" + ok + "}";
+        for (var json : new String[]{ok, tooDeep}) {
+            var bytes = json.getBytes(StandardCharsets.UTF_8);
+            List<Executable> entryPoints = List.of(
+                    () -> limited.parse(json),
+                    () -> limited.parse(bytes),
+                    () -> limited.parseTape(json),
+                    () -> limited.parseLazy(json),
+                    () -> limited.parseLazy(bytes),
+                    () -> limited.parseParallel(ByteBuffer.wrap(bytes)));
+            for (var entryPoint : entryPoints) {
+                if (json == ok) {
+                    assertDoesNotThrow(entryPoint);
+                } else {
+                    var e = assertThrows(RuntimeException.class, entryPoint);
+                    assertTrue(e.getMessage().contains("depth 10"), e.getMessage());
+                }
+            }
+        }
+        assertEquals(ok, JsonWriter.toJson(limited.parseLazy(ok)));
+
+        // Элементы, разобранные по диапазонам, считают глубину от корня
+        var elements = "[0," + "[".repeat(9) + "]".repeat(9) + ",1]";
+        var deeper = "[0," + "[".repeat(10) + "]".repeat(10) + ",1]";
+        assertEquals(elements, JsonWriter.toJson(ParallelArrayParser.parse(
+                ByteBuffer.wrap(elements.getBytes(StandardCharsets.UTF_8)), ForkJoinPool.commonPool(), 1, 10)));
+        assertThrows(RuntimeException.class, () -> ParallelArrayParser.parse(
+                ByteBuffer.wrap(deeper.getBytes(StandardCharsets.UTF_8)), ForkJoinPool.commonPool(), 1, 10));
+        assertEquals("[1,2]", JsonWriter.toJson(ParallelArrayParser.parse(
+                ByteBuffer.wrap("[1,2]".getBytes(StandardCharsets.UTF_8)), ForkJoinPool.commonPool(), 1, 1)));
+        assertThrows(RuntimeException.class, () -> ParallelArrayParser.parse(
+                ByteBuffer.wrap("[1,[]]".getBytes(StandardCharsets.UTF_8)), ForkJoinPool.commonPool(), 1, 1));
+    }
+}
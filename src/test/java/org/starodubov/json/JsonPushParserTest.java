@@ -0,0 +1,128 @@
+package org.starodubov.json;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonPushParserTest {
+
+    private static final String DOC = "{\"имя\" : \"Привет, 世界 😀\", \"esc\" : \"a\\\"b\\u00e9\\ud83d\\ude00\", "
+            + "\"n\" : [0, -12.5e-3, 12345678901234567890, true, false, null, [], {}], \"o\" : {\"k\" : [[1], {\"x\" : \"y\"}]}}";
+
+    private static List<String> feed(byte[] bytes, int[] cuts) {
+        var out = new ArrayList<String>();
+        var parser = new JsonPushParser(v -> out.add(v.toString()));
+        int from = 0;
+        for (int cut : cuts) {
+            parser.feed(ByteBuffer.wrap(bytes, from, cut - from));
+            from = cut;
+        }
+        parser.feed(ByteBuffer.wrap(bytes, from, bytes.length - from));
+        parser.end();
+        return out;
+    }
+
+    @Test
+    void any_split_point() {
+        var bytes = DOC.getBytes(StandardCharsets.UTF_8);
+        var expected = List.of(new JsonParser().parse(DOC).toString());
+        for (int cut = 0; cut <= bytes.length; cut++) {
+            assertEquals(expected, feed(bytes, new int[]{cut}), "cut at " + cut);
+        }
+    }
+
+    @Test
+    void small_random_chunks_and_many_values() {
+        var text = DOC + "\n1 \"s\" [2]\n" + DOC + " 42";
+        var bytes = text.getBytes(StandardCharsets.UTF_8);
+        var random = new Random(1);
+        var doc = new JsonParser().parse(DOC).toString();
+        for (int round = 0; round < 50; round++) {
+            var cuts = new ArrayList<Integer>();
+            for (int p = random.nextInt(8); p < bytes.length; p += 1 + random.nextInt(8)) {
+                cuts.add(p);
+            }
+            var out = feed(bytes, cuts.stream().mapToInt(Integer::intValue).toArray());
+            assertEquals(List.of(doc, "1", "\"s\"", "[2]", doc, "42"), out);
+        }
+    }
+
+    @Test
+    void status() {
+        var out = new ArrayList<JsonValue>();
+        var parser = new JsonPushParser(out::add);
+        assertEquals(JsonPushParser.Status.NEED_MORE_INPUT, parser.feed(utf8("{\"a\" : [1, ")));
+        assertEquals(JsonPushParser.Status.NEED_MORE_INPUT, parser.feed(utf8("2]")));
+        assertEquals(JsonPushParser.Status.COMPLETE, parser.feed(utf8("}  ")));
+        assertEquals(1, out.size());
+        // Число в конце ввода закончится только с end()
+        assertEquals(JsonPushParser.Status.NEED_MORE_INPUT, parser.feed(utf8("12")));
+        assertEquals(JsonPushParser.Status.NEED_MORE_INPUT, parser.feed(utf8("3")));
+        parser.end();
+        assertEquals("123", out.get(1).toString());
+    }
+
+    @Test
+    void errors_and_reset() {
+        var out = new ArrayList<JsonValue>();
+        var parser = new JsonPushParser(out::add);
+        assertThrows(RuntimeException.class, () -> parser.feed(utf8("[1 2]")));
+        parser.reset();
+        parser.feed(utf8("{\"a\" : "));
+        assertThrows(RuntimeException.class, parser::end);
+        parser.reset();
+        parser.feed(utf8("\"abc"));
+        assertThrows(RuntimeException.class, parser::end);
+        parser.reset();
+        assertThrows(RuntimeException.class, () -> parser.feed(utf8("{\"a\" 1}")));
+        parser.reset();
+        parser.feed(utf8("[true]"));
+        parser.end();
+        assertEquals("[true]", out.getFirst().toString());
+    }
+
+    @Test
+    void large_string_in_small_chunks_is_linear() {
+        // Строка с escape и многобайтовыми символами, которые попадают на границы кусков
+        var mb = "ab\\\"cd\\u00e9 Привет 😀 ".repeat(1 << 15).getBytes(StandardCharsets.UTF_8);
+        for (int times : new int[]{1, 8}) {
+            int length = mb.length * times + 4;
+            long scanned = scannedChunked(mb, times);
+            // Каждый байт досматривается и токенизируется по разу; при повторной
+            // токенизации с каждым куском было бы порядка length² / 8192
+            assertTrue(scanned <= 3L * length, times + "x: " + scanned + " bytes scanned for " + length);
+        }
+    }
+
+    // Подаёт массив из одной строки, повторённой times раз, кусками по 4 КБ; возвращает JsonPushParser.scanned
+    private static long scannedChunked(byte[] piece, int times) {
+        var doc = new byte[piece.length * times + 4];
+        doc[0] = '[';
+        doc[1] = '"';
+        for (int i = 0; i < times; i++) {
+            System.arraycopy(piece, 0, doc, 2 + i * piece.length, piece.length);
+        }
+        doc[doc.length - 2] = '"';
+        doc[doc.length - 1] = ']';
+        var out = new ArrayList<JsonValue>();
+        var parser = new JsonPushParser(out::add);
+        for (int from = 0; from < doc.length; from += 4096) {
+            parser.feed(ByteBuffer.wrap(doc, from, Math.min(4096, doc.length - from)));
+        }
+        parser.end();
+        var value = ((JsonString) ((JsonArray) out.getFirst()).get(0)).getValue();
+        assertEquals(new JsonParser().parse(doc).toString(), out.getFirst().toString());
+        assertTrue(value.startsWith("ab\"cdé Привет 😀 "));
+        return parser.scanned;
+    }
+
+    private static ByteBuffer utf8(String s) {
+        return ByteBuffer.wrap(s.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,127 @@
+package org.starodubov.json;
+
+import org.junit.jupiter.api.Test;
+import org.starodubov.io.ByteSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonReaderTest {
+
+    String json = """
+            {
+                "hello" : "world",
+                "f1" : null,
+                "f2" : true,
+                "f3" : 1.5,
+                "skip" : {"x" : [1, 2, {"y" : "z"}]},
+                "a" : [ {"id" : 1, "name" : "длинное имя, которое не влезает в буфер"}, {"id" : 2} ]
+            }""";
+
+    private JsonReader reader(String s, int bufferSize) {
+        return new JsonReader(new ByteArrayInputStream(s.getBytes(StandardCharsets.UTF_8)), bufferSize);
+    }
+
+    @Test
+    void read_events_with_tiny_buffer() {
+        var r = reader(json, 8);
+
+        r.beginObject();
+        assertEquals("hello", r.nextName());
+        assertEquals("world", r.nextString());
+        assertEquals("f1", r.nextName());
+        r.nextNull();
+        assertEquals("f2", r.nextName());
+        assertTrue(r.nextBoolean());
+        assertEquals("f3", r.nextName());
+        assertEquals(1.5, r.nextNumber());
+        assertEquals(JsonReader.Event.NAME, r.peek());
+        r.skipValue();
+        assertEquals("a", r.nextName());
+        r.beginArray();
+        r.beginObject();
+        assertEquals("id", r.nextName());
+        assertEquals(1.0, r.nextNumber());
+        assertEquals("name", r.nextName());
+        assertEquals("длинное имя, которое не влезает в буфер", r.nextString());
+        r.endObject();
+        var second = (JsonObject) r.nextValue();
+        assertEquals(2.0, ((JsonNumber) second.get("id")).getValue());
+        assertFalse(r.hasNext());
+        r.endArray();
+        r.endObject();
+        assertEquals(JsonReader.Event.END_DOCUMENT, r.peek());
+    }
+
+    @Test
+    void read_from_reader() {
+        var r = new JsonReader(new StringReader("[\"привет 😀\", 42]"));
+
+        r.beginArray();
+        assertEquals("привет 😀", r.nextString());
+        assertEquals(42.0, r.nextNumber());
+        r.endArray();
+        assertEquals(JsonReader.Event.END_DOCUMENT, r.peek());
+    }
+
+    @Test
+    void stream_large_array() {
+        var sb = new StringBuilder("[");
+        for (int i = 0; i < 100_000; i++) {
+            if (i > 0) sb.append(',');
+            sb.append("{\"id\":").append(i).append(",\"tags\":[\"a\",\"b\"]}");
+        }
+        sb.append(']');
+
+        var r = reader(sb.toString(), 1024);
+        r.beginArray();
+        long sum = 0;
+        while (r.hasNext()) {
+            r.beginObject();
+            while (r.hasNext()) {
+                if (r.nextName().equals("id")) {
+                    sum += r.nextNumber();
+                } else {
+                    r.skipValue();
+                }
+            }
+            r.endObject();
+        }
+        r.endArray();
+        assertEquals(100_000L * 99_999 / 2, sum);
+    }
+
+    @Test
+    void missing_comma_fails() {
+        var r = reader("[1 2]", 64);
+
+        r.beginArray();
+        r.nextNumber();
+        assertThrows(RuntimeException.class, r::peek);
+    }
+
+    @Test
+    void max_depth_counts_reader_and_next_value() {
+        var bytes = "[[[1]], [[[2]]], [[3]]]".getBytes(StandardCharsets.UTF_8);
+        var r = new JsonReader(ByteSource.of(new ByteArrayInputStream(bytes)), 3);
+        r.beginArray();
+        assertEquals("[[1]]", r.nextValue().toString());
+        var e = assertThrows(RuntimeException.class, r::nextValue);
+        assertTrue(e.getMessage().contains("depth 3"), e.getMessage());
+
+        var nested = new JsonReader(ByteSource.of(new ByteArrayInputStream(bytes)), 3);
+        nested.beginArray();
+        nested.beginArray();
+        nested.beginArray();
+        assertEquals("1", nested.nextValue().toString());
+        nested.endArray();
+        nested.endArray();
+        nested.beginArray();
+        nested.beginArray();
+        assertThrows(RuntimeException.class, nested::beginArray);
+        assertThrows(IllegalArgumentException.class, () -> new JsonReader(ByteSource.of(new ByteArrayInputStream(bytes)), 0));
+    }
+}
@@ -0,0 +1,116 @@
+package org.starodubov.json;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonWriterTest {
+
+    private final JsonParser parser = new JsonParser();
+
+    @Test
+    void round_trip() {
+        var text = "{\"имя\":\"a\\\"b\\\\c\\n\\t\\u0001 😀 é\",\"n\":[0,-1,9223372036854775807,-9223372036854775808,"
+                + "0.5,2.50,-0.001,1E2,1E-300,12345678901234567890,-0.0,1.0E300],\"o\":{\"t\":true,\"f\":false,\"z\":null},\"e\":[]}";
+        var tree = parser.parse(text);
+        var json = JsonWriter.toJson(tree);
+        assertEquals(tree.toString(), parser.parse(json).toString());
+        assertEquals(json, JsonWriter.toJson(parser.parse(json)));
+        assertEquals(json, JsonWriter.toJson(parser.parseLazy(text)));
+        // Лента пишет дробные числа исходными лексемами, значения те же
+        assertEquals(tree.toString(), parser.parse(JsonWriter.toJson(parser.parseTape(text).root())).toString());
+    }
+
+    @Test
+    void numbers() {
+        // Дробные литералы пишутся по цифрам исходника, без округления через double
+        assertEquals("[0,-7,1.5,0.05,12.340,1E2,1E-300,0.0000001,0.0000001,123.456,1E400,-9223372036854775808]", JsonWriter.toJson(
+                parser.parse("[0, -7, 1.5, 0.05, 12.340, 1e2, 1e-300, 0.0000001, 1e-7, 123.456, 1e400, -9223372036854775808]")));
+        var writer = new JsonWriter();
+        writer.beginArray().value(0.1).value(-0.0).value(Long.MIN_VALUE).value(new JsonNumber(new BigDecimal("1.5E+10"))).endArray();
+        assertEquals("[0.1,-0.0,-9223372036854775808,1.5E+10]", new String(writer.toByteArray(), StandardCharsets.UTF_8));
+        assertThrows(IllegalArgumentException.class, () -> new JsonWriter().value(Double.NaN));
+    }
+
+    @Test
+    void streaming_to_output_stream() {
+        var bytes = new ByteArrayOutputStream();
+        try (var writer = new JsonWriter(bytes, 64)) {
+            writer.beginObject().name("items").beginArray();
+            for (int i = 0; i < 100; i++) {
+                writer.beginObject().name("id").value(i).name("s").value("строка " + i).endObject();
+            }
+            writer.endArray().name("tree").value(parser.parse("{\"a\":[1,{\"b\":null}]}")).endObject();
+        }
+        var obj = (JsonObject) parser.parse(bytes.toByteArray());
+        assertEquals(100, ((JsonArray) obj.get("items")).size());
+        assertEquals("строка 99", ((JsonString) ((JsonObject) ((JsonArray) obj.get("items")).get(99)).get("s")).getValue());
+        assertEquals("{a=[1, {b=null}]}", obj.get("tree").toString());
+    }
+
+    @Test
+    void reset_and_write_to_byte_buffer() {
+        var writer = new JsonWriter();
+        var dst = ByteBuffer.allocateDirect(64);
+        for (int i = 0; i < 3; i++) {
+            writer.reset();
+            writer.beginArray().value(i).value("x".repeat(i)).endArray();
+        }
+        writer.writeTo(dst);
+        assertEquals(0, writer.size());
+        dst.flip();
+        assertEquals("[2,\"xx\"]", StandardCharsets.UTF_8.decode(dst).toString());
+    }
+
+    @Test
+    void long_strings_split_into_chunks() {
+        // Суррогатная пара на границе куска и строка, целиком из escape-символов
+        var s = "a".repeat(1023) + "😀" + "\"\\\u0000".repeat(2000);
+        var writer = new JsonWriter();
+        writer.value(s);
+        assertEquals(s, ((JsonString) parser.parse(writer.toByteArray())).getValue());
+    }
+
+    @Test
+    void invalid_usage() {
+        assertThrows(IllegalStateException.class, () -> new JsonWriter().beginObject().value(1));
+        assertThrows(IllegalStateException.class, () -> new JsonWriter().beginArray().name("a"));
+        assertThrows(IllegalStateException.class, () -> new JsonWriter().beginObject().name("a").endObject());
+        assertThrows(IllegalStateException.class, () -> new JsonWriter().value(1).value(2));
+        assertThrows(IllegalStateException.class, () -> new JsonWriter().beginArray().endObject());
+        assertThrows(IllegalStateException.class, () -> new JsonWriter().beginArray().close());
+        assertThrows(IllegalArgumentException.class, () -> new JsonWriter().value("a\uD83D"));
+    }
+
+    @Test
+    void incomplete_document_still_closes_stream() {
+        var closed = new boolean[1];
+        var bytes = new ByteArrayOutputStream() {
+            @Override
+            public void close() {
+                closed[0] = true;
+            }
+        };
+        var writer = new JsonWriter(bytes).beginArray().value(1);
+        assertThrows(IllegalStateException.class, writer::close);
+        assertTrue(closed[0]);
+        assertEquals("[1", bytes.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void rejected_value_leaves_writer_intact() {
+        var writer = new JsonWriter().beginArray().value(1);
+        assertThrows(IllegalArgumentException.class, () -> writer.value(Double.NaN));
+        assertThrows(IllegalArgumentException.class, () -> writer.value(new JsonNumber(Double.POSITIVE_INFINITY)));
+        assertThrows(IllegalArgumentException.class, () -> writer.value("x".repeat(5000) + "\uDC00"));
+        writer.value(2).beginObject();
+        assertThrows(IllegalArgumentException.class, () -> writer.name("\uD83D"));
+        writer.name("a").value("\uD83D\uDE00").endObject().endArray();
+        assertEquals("[1,2,{\"a\":\"\uD83D\uDE00\"}]", new String(writer.toByteArray(), StandardCharsets.UTF_8));
+    }
+}
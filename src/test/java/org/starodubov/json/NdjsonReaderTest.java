@@ -0,0 +1,134 @@
+package org.starodubov.json;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NdjsonReaderTest {
+
+    private static String ndjson(int lines) {
+        var sb = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            sb.append("{\"id\":").append(i).append(",\"msg\":\"строка ").append("x".repeat(i % 50)).append("\"}");
+            sb.append(i % 7 == 0 ? "\r\n\n" : "\n");
+        }
+        return sb.toString();
+    }
+
+    private static List<String> sequential(String text) {
+        var parser = new JsonParser();
+        return text.lines().filter(l -> !l.isBlank()).map(l -> parser.parse(l).toString()).toList();
+    }
+
+    @Test
+    void ordered_same_as_sequential() {
+        var text = ndjson(5_000);
+        var bytes = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+        // маленькие куски: строки длиннее куска и много задач
+        var reader = new NdjsonReader(ForkJoinPool.commonPool(), 64, 4);
+
+        var out = new ArrayList<String>();
+        reader.forEach(bytes, v -> out.add(v.toString()));
+        assertEquals(sequential(text), out);
+        assertEquals(sequential(text), reader.stream(bytes).map(Object::toString).toList());
+    }
+
+    @Test
+    void file_unordered_and_ordered(@TempDir Path dir) throws IOException {
+        var text = ndjson(20_000);
+        var file = Files.writeString(dir.resolve("log.ndjson"), text);
+        var reader = new NdjsonReader(ForkJoinPool.commonPool(), 4096);
+
+        var sum = new AtomicLong();
+        reader.forEachUnordered(file, v -> sum.addAndGet(((JsonNumber) ((JsonObject) v).get("id")).longValue()));
+        assertEquals(20_000L * 19_999 / 2, sum.get());
+
+        try (var stream = reader.stream(file)) {
+            assertEquals(sequential(text), stream.map(Object::toString).toList());
+        }
+    }
+
+    @Test
+    void invalid_line_reports_offset() {
+        var bytes = ByteBuffer.wrap("{\"a\":1}\n{\"b\":}\n".getBytes(StandardCharsets.UTF_8));
+
+        var e = assertThrows(RuntimeException.class, () -> new NdjsonReader().forEach(bytes, v -> {
+        }));
+        assertTrue(e.getMessage().contains("byte 8"), e.getMessage());
+        assertThrows(RuntimeException.class, () -> new NdjsonReader().forEachUnordered(bytes, v -> {
+        }));
+    }
+
+    @Test
+    void callback_failure_and_rejected_executor() {
+        var bytes = ByteBuffer.wrap(ndjson(1_000).getBytes(StandardCharsets.UTF_8));
+        var boom = new IllegalStateException("boom");
+        var reader = new NdjsonReader(ForkJoinPool.commonPool(), 256, 4);
+        assertSame(boom, assertThrows(IllegalStateException.class, () -> reader.forEachUnordered(bytes, v -> {
+            throw boom;
+        })));
+        // Error из action не теряется в рабочем потоке
+        var error = new AssertionError("callback");
+        var delivered = new AtomicInteger();
+        assertSame(error, assertThrows(AssertionError.class, () -> reader.forEachUnordered(bytes, v -> {
+            if (delivered.incrementAndGet() == 500) {
+                throw error;
+            }
+        })));
+        assertSame(error, assertThrows(AssertionError.class, () -> reader.forEach(bytes, v -> {
+            throw error;
+        })));
+
+        // Второй кусок отклоняется, пока первый ещё разбирается: метод ждёт первый и не вызывает action после выхода
+        var pool = Executors.newSingleThreadExecutor();
+        try {
+            var started = new AtomicInteger();
+            var calls = new AtomicInteger();
+            var returned = new AtomicBoolean();
+            // Проверка в рабочем потоке только записывается, утверждение — в вызывающем
+            var lateCall = new AtomicBoolean();
+            Executor rejecting = task -> {
+                if (started.getAndIncrement() > 0) {
+                    throw new RejectedExecutionException();
+                }
+                pool.execute(task);
+            };
+            assertThrows(RejectedExecutionException.class, () -> new NdjsonReader(rejecting, 256, 4).forEachUnordered(bytes, v -> {
+                if (returned.get()) {
+                    lateCall.set(true);
+                }
+                calls.incrementAndGet();
+                LockSupport.parkNanos(1_000_000);
+            }));
+            returned.set(true);
+            int seen = calls.get();
+            assertTrue(seen > 0);
+            pool.shutdown();
+            assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+            assertEquals(seen, calls.get());
+            assertFalse(lateCall.get());
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package org.starodubov.json;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelArrayParserTest {
+
+    // Строки с запятыми, скобками и экранированными кавычками на глубине 1
+    private static String records(int n) {
+        var sb = new StringBuilder("[\n");
+        for (int i = 0; i < n; i++) {
+            if (i > 0) {
+                sb.append(i % 3 == 0 ? " ,\n" : ",");
+            }
+            switch (i % 4) {
+                case 0 -> sb.append("{\"id\":").append(i).append(",\"s\":\"a,b]}\\\"[{\\\\\",\"t\":[1,[2,{}]]}");
+                case 1 -> sb.append("\"строка, \\\"").append(i).append("\\\\\"");
+                case 2 -> sb.append("[").append(i).append(", \"]\", null]");
+                default -> sb.append(i * 0.5);
+            }
+        }
+        return sb.append("\n]").toString();
+    }
+
+    private static ByteBuffer utf8(String json) {
+        return ByteBuffer.wrap(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void same_as_sequential() {
+        var json = records(2_000);
+        var expected = new JsonParser().parse(json).toString();
+        for (int rangeSize : new int[]{1, 7, 100, 10_000}) {
+            var actual = ParallelArrayParser.parse(utf8(json), ForkJoinPool.commonPool(), rangeSize, JsonParser.DEFAULT_MAX_DEPTH);
+            assertEquals(expected, actual.toString(), "rangeSize " + rangeSize);
+        }
+    }
+
+    @Test
+    void file(@TempDir Path dir) throws IOException {
+        var json = records(5_000);
+        var file = Files.writeString(dir.resolve("big.json"), json);
+        var actual = (JsonArray) ParallelArrayParser.parse(file, ForkJoinPool.commonPool(), 512, JsonParser.DEFAULT_MAX_DEPTH);
+        assertEquals(5_000, actual.size());
+        assertEquals(new JsonParser().parse(json).toString(), actual.toString());
+    }
+
+    @Test
+    void other_roots_and_empty_array() {
+        assertEquals("{a=1}", ParallelArrayParser.parse(utf8(" {\"a\":1}"), ForkJoinPool.commonPool(), 1, JsonParser.DEFAULT_MAX_DEPTH).toString());
+        assertEquals("[]", ParallelArrayParser.parse(utf8("[  ]"), ForkJoinPool.commonPool(), 1, JsonParser.DEFAULT_MAX_DEPTH).toString());
+        assertEquals("[1, 2]", new JsonParser().parseParallel(utf8("[1, 2]")).toString());
+    }
+
+    @Test
+    void invalid() {
+        for (var json : new String[]{"[1,,2]", "[1,2,]", "[,1]", "[1,2", "[1,2} ", "[1,2] 3", "[1,{\"a\":1],2]", "[\"1,2]"}) {
+            assertThrows(RuntimeException.class, () -> ParallelArrayParser.parse(utf8(json), ForkJoinPool.commonPool(), 1, JsonParser.DEFAULT_MAX_DEPTH), json);
+        }
+    }
+}
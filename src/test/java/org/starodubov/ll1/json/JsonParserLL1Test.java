@@ -0,0 +1,43 @@
+package org.starodubov.ll1.json;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonParserLL1Test {
+
+    @Test
+    void deep_nesting_without_recursion() {
+        int depth = 100_000;
+        var deep = new JsonParserLL1(depth);
+        Object value = deep.parse("[".repeat(depth) + "1" + "]".repeat(depth));
+        for (int i = 0; i < depth; i++) {
+            value = ((List<?>) value).getFirst();
+        }
+        assertEquals(1, ((Number) value).intValue());
+
+        int pairs = depth / 2 - 1;
+        value = deep.parse("{\"a\":[".repeat(pairs) + "{}" + "]}".repeat(pairs));
+        for (int i = 0; i < pairs; i++) {
+            value = ((List<?>) ((Map<?, ?>) value).get("a")).getFirst();
+        }
+        assertEquals(Map.of(), value);
+    }
+
+    @Test
+    void max_depth() {
+        var parser = new JsonParserLL1();
+        int limit = JsonParserLL1.DEFAULT_MAX_DEPTH;
+        var ok = "[".repeat(limit) + "]".repeat(limit);
+        assertInstanceOf(List.class, parser.parse(ok));
+        var e = assertThrows(RuntimeException.class, () -> parser.parse("[" + ok + "]"));
+        assertTrue(e.getMessage().contains("depth " + limit), e.getMessage());
+        assertThrows(RuntimeException.class, () -> new JsonParserLL1(3).parse("{\"a\":[[[1]]]}"));
+        // После отказа стек очищен, и парсер снова разбирает документы
+        assertEquals(Map.of("a", List.of(true, Map.of())), parser.parse("{\"a\":[true,{}]}"));
+        assertThrows(IllegalArgumentException.class, () -> new JsonParserLL1(0));
+    }
+}
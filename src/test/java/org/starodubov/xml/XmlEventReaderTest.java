@@ -0,0 +1,191 @@
+package org.starodubov.xml;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.starodubov.xml.XmlTokenizer.TokenType;
+
+class XmlEventReaderTest {
+
+    private static final String CATALOG = """
+            <catalog>
+                <product><id>1</id><name>Чайник электрический</name><price>-250</price><sale>true</sale></product>
+                <product><id>2</id><name>x</name><price>NULL</price><sale>false</sale></product>
+                <meta><skip><deep>1</deep></skip></meta>
+            </catalog>""";
+
+    private static XmlEventReader reader(String xml, int bufferSize) {
+        return new XmlEventReader(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), bufferSize);
+    }
+
+    @Test
+    void events_with_tiny_buffer() {
+        var r = reader(CATALOG, 8);
+        assertEquals(XmlEventReader.Event.START_ELEMENT, r.next());
+        assertEquals("catalog", r.name());
+        assertEquals(XmlEventReader.Event.START_ELEMENT, r.next());
+        assertEquals("product", r.name());
+        r.next();
+        assertEquals("id", r.name());
+        assertEquals(XmlEventReader.Event.TEXT, r.next());
+        assertEquals(TokenType.NUMBER, r.textType());
+        assertEquals(new XmlNumber(1), r.value());
+        assertEquals(XmlEventReader.Event.END_ELEMENT, r.next());
+        assertEquals("id", r.name());
+        r.next();
+        r.next();
+        assertEquals("Чайник электрический", r.text());
+        assertEquals(TokenType.STRING, r.textType());
+        r.next();
+        r.next();
+        r.next();
+        assertEquals(new XmlNumber(-250), r.value());
+        r.next();
+        r.next();
+        r.next();
+        assertEquals(TokenType.BOOLEAN, r.textType());
+        assertEquals(3, r.depth());
+        r.next();
+        assertEquals(XmlEventReader.Event.END_ELEMENT, r.next());
+        assertEquals("product", r.name());
+        assertEquals(1, r.depth());
+
+        var second = (XmlObject) r.nextElement();
+        assertEquals("product", second.name());
+        assertEquals(XmlNull.INSTANCE, second.getObject("price").children().getFirst());
+        assertEquals(XmlEventReader.Event.START_ELEMENT, r.peek());
+        r.skipElement();
+        assertFalse(r.hasNext());
+        assertEquals(XmlEventReader.Event.END_ELEMENT, r.next());
+        assertEquals(0, r.depth());
+        assertEquals(XmlEventReader.Event.END_DOCUMENT, r.next());
+        assertEquals(XmlEventReader.Event.END_DOCUMENT, r.peek());
+    }
+
+    @Test
+    void elements_match_parser() {
+        var r = reader(CATALOG, 16);
+        r.next();
+        var expected = new XmlParser().parse(CATALOG).asObject();
+        int products = 0;
+        while (r.hasNext()) {
+            var element = (XmlObject) r.nextElement();
+            if (element.name().equals("product")) {
+                products++;
+            }
+            assertEquals(expected.getObject(element.name()).name(), element.name());
+        }
+        assertEquals(2, products);
+        r.next();
+        assertEquals(XmlEventReader.Event.END_DOCUMENT, r.peek());
+    }
+
+    @Test
+    void stream_many_records() {
+        int n = 200_000;
+        var r = new XmlEventReader(new RecordStream(n), 1024);
+        r.next();
+        long sum = 0;
+        int count = 0;
+        while (r.hasNext()) {
+            r.next();
+            r.next();
+            sum += ((XmlNumber) r.value()).value();
+            r.next();
+            count++;
+        }
+        assertEquals(n, count);
+        assertEquals((long) n * (n - 1) / 2, sum);
+    }
+
+    @Test
+    void invalid_documents() {
+        for (var xml : new String[]{"<a><b>1</a>", "<a>1", "<a>1</a><b>", "", "</a>"}) {
+            assertThrows(RuntimeException.class, () -> {
+                var r = reader(xml, 64);
+                while (r.next() != XmlEventReader.Event.END_DOCUMENT) {
+                    // читаем до конца
+                }
+            }, xml);
+        }
+        var r = reader("<a>1</a>", 64);
+        assertThrows(IllegalStateException.class, r::text);
+        r.next();
+        assertThrows(IllegalStateException.class, r::value);
+        r.next();
+        assertThrows(IllegalStateException.class, r::name);
+    }
+
+    @Test
+    void attributes_and_namespaces() {
+        var r = reader("""
+                <feed xmlns="urn:default" xmlns:p="urn:p">
+                    <p:entry id="1" p:kind='a'><title lang="ru">Заголовок</title></p:entry>
+                    <entry xmlns="urn:inner" id="2"/>
+                    <p:x/>
+                </feed>""", 8);
+        r.next();
+        assertEquals("urn:default", r.namespaceURI());
+        // peek() читает следующий тег, но атрибуты текущего остаются
+        assertEquals(XmlEventReader.Event.START_ELEMENT, r.peek());
+        assertEquals(2, r.attributeCount());
+        assertEquals("xmlns:p", r.attributeName(1));
+        r.next();
+        assertEquals("entry", r.localName());
+        assertEquals("p", r.prefix());
+        assertEquals("urn:p", r.namespaceURI());
+        assertEquals("1", r.attribute("id"));
+        assertEquals("a", r.attribute("p:kind"));
+        assertNull(r.attribute("missing"));
+        r.next();
+        assertEquals("ru", r.attributeValue(0));
+        r.next();
+        assertEquals(0, r.attributeCount());
+        r.next();
+        assertEquals(XmlEventReader.Event.END_ELEMENT, r.next());
+        assertEquals("urn:p", r.namespaceURI());
+
+        r.next();
+        assertEquals("urn:inner", r.namespaceURI());
+        assertEquals("2", r.attributeValue(1));
+        assertEquals(XmlEventReader.Event.END_ELEMENT, r.next());
+        assertEquals("urn:inner", r.namespaceURI());
+        r.next();
+        assertEquals("urn:p", r.namespaceURI());
+        assertEquals("urn:default", r.namespaceURI(""));
+        assertNull(r.namespaceURI("q"));
+        assertEquals(XmlEventReader.Event.END_ELEMENT, r.next());
+        assertEquals(XmlEventReader.Event.END_ELEMENT, r.next());
+        assertEquals("feed", r.name());
+        assertEquals(XmlEventReader.Event.END_DOCUMENT, r.next());
+    }
+
+    // Генерирует <r><v>0</v><v>1</v>...</r> на лету, не держа документ в памяти
+    private static final class RecordStream extends InputStream {
+        private final int n;
+        private int next = -1;
+        private byte[] chunk = "<r>".getBytes(StandardCharsets.US_ASCII);
+        private int pos;
+
+        RecordStream(int n) {
+            this.n = n;
+        }
+
+        @Override
+        public int read() {
+            if (pos == chunk.length) {
+                next++;
+                if (next > n) {
+                    return -1;
+                }
+                chunk = (next == n ? "</r>" : "<v>" + next + "</v>\n").getBytes(StandardCharsets.US_ASCII);
+                pos = 0;
+            }
+            return chunk[pos++];
+        }
+    }
+}
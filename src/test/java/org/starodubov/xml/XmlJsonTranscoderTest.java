@@ -0,0 +1,82 @@
+package org.starodubov.xml;
+
+import org.junit.jupiter.api.Test;
+import org.starodubov.io.ByteSource;
+import org.starodubov.json.JsonArray;
+import org.starodubov.json.JsonNumber;
+import org.starodubov.json.JsonObject;
+import org.starodubov.json.JsonWriter;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class XmlJsonTranscoderTest {
+
+    private final XmlJsonTranscoder transcoder = new XmlJsonTranscoder();
+
+    @Test
+    void elements_attributes_and_repeats() {
+        var doc = """
+                <?xml version="1.0"?>
+                <c:catalog xmlns:c="urn:c" version="2">
+                    <item id="5"><name>Чайник &lt;1&gt;</name><sale>true</sale></item>
+                    <note>текст</note>
+                    <item id="6"><name>x</name><tag>a</tag><tag>b</tag></item>
+                    <empty/>
+                    <price currency="USD">-250</price>
+                    <mixed>a<b>1</b>c</mixed>
+                    <big>123456789012345678901234567890</big>
+                    <none>NULL</none>
+                </c:catalog>
+                """;
+        var expected = "{\"c:catalog\":{\"version\":2,"
+                + "\"item\":[{\"id\":5,\"name\":\"Чайник <1>\",\"sale\":true},{\"id\":6,\"name\":\"x\",\"tag\":[\"a\",\"b\"]}],"
+                + "\"note\":\"текст\",\"empty\":null,\"price\":{\"currency\":\"USD\",\"#text\":-250},"
+                + "\"mixed\":{\"#text\":[\"a\",\"c\"],\"b\":1},\"big\":123456789012345678901234567890,\"none\":null}}";
+        assertEquals(expected, JsonWriter.toJson(transcoder.transcode(doc)));
+        var bytes = doc.getBytes(StandardCharsets.UTF_8);
+        for (int size : new int[]{1, 7, 4096}) {
+            var source = ByteSource.of(new ByteArrayInputStream(bytes), size);
+            assertEquals(expected, JsonWriter.toJson(transcoder.transcode(source)), "buffer " + size);
+        }
+
+        var catalog = (JsonObject) ((JsonObject) transcoder.transcode(doc)).get("c:catalog");
+        var items = (JsonArray) catalog.get("item");
+        assertEquals(2, items.size());
+        assertEquals(6, ((JsonNumber) ((JsonObject) items.get(1)).get("id")).longValueExact());
+
+        var out = new JsonWriter();
+        out.beginArray();
+        transcoder.write("<a>1</a>", out);
+        transcoder.write(ByteSource.of(new ByteArrayInputStream("<b/>".getBytes(StandardCharsets.UTF_8))), out);
+        out.endArray();
+        assertEquals("[{\"a\":1},{\"b\":null}]", new String(out.toByteArray(), StandardCharsets.UTF_8));
+        assertEquals("\"just text\"", JsonWriter.toJson(transcoder.transcode("just text")));
+    }
+
+    @Test
+    void same_shape_as_parser() {
+        // Сливаемые XmlObject.add элементы становятся массивом, порядок полей — по первому вхождению
+        var doc = "<r><a>1</a><b><c>x</c></b><a>2</a><b><c>y</c></b></r>";
+        var tree = new XmlParser().parse(doc).asObject();
+        var json = (JsonObject) ((JsonObject) transcoder.transcode(doc)).get("r");
+        assertEquals(tree.children().size(), json.size());
+        assertEquals("[1, 2]", json.get("a").toString());
+        assertEquals("[{c=\"x\"}, {c=\"y\"}]", json.get("b").toString());
+    }
+
+    @Test
+    void invalid_documents_and_depth() {
+        for (var xml : new String[]{"<a><b>1</a>", "<a>1", "<a>1</a><b/>", "", "</a>", "<a>&bad;</a>"}) {
+            assertThrows(RuntimeException.class, () -> transcoder.transcode(xml), xml);
+        }
+        var shallow = new XmlJsonTranscoder(2);
+        assertEquals("{\"a\":{\"b\":1}}", JsonWriter.toJson(shallow.transcode("<a><b>1</b></a>")));
+        assertThrows(RuntimeException.class, () -> shallow.transcode("<a><b><c/></b></a>"));
+        // После ошибки экземпляр снова пригоден
+        assertEquals("{\"a\":null}", JsonWriter.toJson(shallow.transcode("<a/>")));
+        assertThrows(IllegalArgumentException.class, () -> new XmlJsonTranscoder(0));
+    }
+}
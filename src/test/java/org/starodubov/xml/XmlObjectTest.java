@@ -0,0 +1,102 @@
+package org.starodubov.xml;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class XmlObjectTest {
+
+    private static XmlObject element(String name, XmlValue... children) {
+        var obj = new XmlObject(name);
+        for (var child : children) {
+            obj.add(child);
+        }
+        return obj;
+    }
+
+    @Test
+    void merges_same_name_elements() {
+        var root = element("root",
+                element("a", new XmlNumber(1)),
+                new XmlString("text"),
+                element("b", new XmlNumber(2)),
+                element("a", new XmlNumber(3)),
+                new XmlString("text"));
+
+        assertEquals(4, root.children().size());
+        assertEquals(List.of(new XmlNumber(1), new XmlNumber(3)), root.getObject("a").children());
+        assertEquals(new XmlNumber(2), root.getObject("b").getNumber());
+        assertEquals("text", root.getString().value());
+        assertNull(root.getObject("c"));
+    }
+
+    @Test
+    void many_siblings_past_hash_threshold() {
+        int n = 50_000;
+        var root = new XmlObject("catalog");
+        for (int i = 0; i < n; i++) {
+            root.add(element("item" + i, new XmlNumber(i)));
+            root.add(new XmlString("s"));
+        }
+        root.add(element("item42", new XmlNumber(-1)));
+
+        assertEquals(2 * n, root.children().size());
+        for (int i = 0; i < n; i += 97) {
+            // имя не совпадает по ссылке с сохранённым
+            var item = root.getObject(new String("item" + i));
+            assertEquals(new XmlNumber(i), item.getNumber());
+        }
+        assertEquals(List.of(new XmlNumber(42), new XmlNumber(-1)), root.getObject("item42").children());
+    }
+
+    @Test
+    void index_follows_list_changes() {
+        var root = new XmlObject("root");
+        for (int i = 0; i < 20; i++) {
+            root.add(element("e" + i));
+        }
+        root.children().remove(0);
+        assertNull(root.getObject("e0"));
+        assertEquals("e1", root.getObject("e1").name());
+        root.children().set(0, element("x"));
+        assertNull(root.getObject("e1"));
+        assertEquals("x", root.getObject("x").name());
+        root.children().addAll(List.of(element("y"), element("x", new XmlNumber(5))));
+        assertEquals("y", root.getObject("y").name());
+        assertTrue(root.getObject("x").children().isEmpty());
+
+        // Свой список детей: поиск перебором, тот же результат
+        var plain = new XmlObject("plain", new ArrayList<>());
+        plain.add(element("a", new XmlNumber(1)));
+        plain.add(element("a", new XmlNumber(2)));
+        assertEquals(1, plain.children().size());
+        assertEquals(2, plain.getObject("a").children().size());
+    }
+
+    @Test
+    void index_survives_iterator_and_sublist_writes() {
+        for (int n : new int[]{4, 20}) {
+            var root = new XmlObject("root");
+            for (int i = 0; i < n; i++) {
+                root.add(element("e" + i));
+            }
+            assertEquals("e1", root.getObject("e1").name());
+            var it = root.children().listIterator();
+            while (it.hasNext()) {
+                if (it.next() instanceof XmlObject obj && obj.name().equals("e1")) {
+                    it.set(element("z"));
+                }
+            }
+            assertNull(root.getObject("e1"), "size " + n);
+            assertEquals("z", root.getObject("z").name());
+
+            // subList().set мимо XmlChildren.set: индекс не падает на текстовом элементе
+            root.children().subList(0, n).set(2, new XmlString("t"));
+            assertNull(root.getObject("e2"));
+            assertEquals("e3", root.getObject("e3").name());
+        }
+    }
+}
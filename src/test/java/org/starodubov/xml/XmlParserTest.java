@@ -1,6 +1,15 @@
 package org.starodubov.xml;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.starodubov.io.ByteSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.starodubov.xml.XmlTokenizer.TokenType;
@@ -45,6 +54,27 @@ class XmlParserTest {
        assertEquals(4, obj.getObject("c").getObject("a").getNumber().value());
     }
 
+    @Test
+    void parse_mapped_file(@TempDir Path dir) throws IOException {
+        var file = Files.writeString(dir.resolve("doc.xml"), """
+                <root>
+                    <a>1</a>
+                    <a>2</a>
+                    <b> привет, мир </b>
+                    <c><a>4</a><d>true</d><e>NULL</e></c>
+                </root>
+                """);
+
+        var expected = parser.parse(Files.readString(file)).toString();
+        assertEquals(expected, parser.parse(file).toString());
+        // маленькое окно заставляет сдвигать отображение посреди токенов
+        try (var source = ByteSource.map(file, 4)) {
+            var obj = parser.parse(source).asObject();
+            assertEquals(expected, obj.toString());
+            assertEquals("привет, мир", obj.getObject("b").getString().value());
+        }
+    }
+
     @Test
     void parse_null() {
         XmlValue value = parser.parse("""
@@ -227,24 +257,118 @@ class XmlParserTest {
         assertEquals(TokenType.STRING, value.type());
         assertEquals(TokenType.EOF, t.nextToken().type());
     }
-}
-
-
-
-
-
-
-
-
-
-
-
-
-
-
 
+    @Test
+    void parser_reusable_after_error() {
+        var doc = "<root><a>1</a><b> text </b><c>NULL</c><a>2</a></root>";
+        var expected = new XmlParser().parse(doc).toString();
+        for (int i = 0; i < 3; i++) {
+            assertEquals(expected, parser.parse(doc).toString());
+            assertThrows(RuntimeException.class, () -> parser.parse("<a>1</a> <b>"));
+        }
+    }
 
+    @Test
+    void deep_nesting_and_max_depth() {
+        int depth = 100_000;
+        var doc = "<a>".repeat(depth) + "1" + "</a>".repeat(depth);
+        XmlValue value = new XmlParser(depth).parse(doc);
+        for (int i = 1; i < depth; i++) {
+            value = ((XmlObject) value).children().getFirst();
+        }
+        assertEquals("a", ((XmlObject) value).name());
+        assertThrows(RuntimeException.class, () -> new XmlParser(depth - 1).parse(doc));
+        assertThrows(RuntimeException.class, () -> parser.parse("<a>".repeat(2000) + "</a>".repeat(2000)));
+        // После отказа стек очищен
+        var shallow = "<a><b>1</b><b>2</b></a>";
+        assertEquals(new XmlParser().parse(shallow).toString(), parser.parse(shallow).toString());
+    }
 
+    @Test
+    void attributes_and_markup() {
+        var doc = """
+                <?xml version="1.0" encoding="UTF-8"?>
+                <!DOCTYPE catalog [ <!ELEMENT catalog ANY> ]>
+                <!-- каталог -->
+                <c:catalog xmlns:c="urn:c" version='2'>
+                    <item id="5" name = "Чайник &lt; 1 &gt;" sale="true"/>
+                    <item id="6"><name>x > y</name><!-- <item id="7"/> --></item>
+                    <empty />
+                    <code><![CDATA[ <b>не тег</b> ]]></code>
+                </c:catalog>
+                """;
+        var tree = parser.parse(doc).toString();
+        var bytes = doc.getBytes(StandardCharsets.UTF_8);
+        for (int size : new int[]{1, 7, 4096}) {
+            var source = ByteSource.of(new ByteArrayInputStream(bytes), size);
+            assertEquals(tree, parser.parse(source).toString(), "buffer " + size);
+        }
+
+        var root = parser.parse(doc).asObject();
+        assertEquals("c:catalog", root.name());
+        assertNull(root.getObject("xmlns:c"));
+        assertEquals(2, root.getObject("version").getNumber().value());
+        // Второй item слит с первым: его дети дописаны следом
+        var item = root.getObject("item");
+        assertEquals("XmlObject{name=item, children=[XmlObject{name=id, children=[5]}, "
+                + "XmlObject{name=name, children=[\"Чайник < 1 >\"]}, XmlObject{name=sale, children=[true]}, "
+                + "XmlObject{name=id, children=[6]}, XmlObject{name=name, children=[\"x > y\"]}]}", item.toString());
+        assertTrue(root.getObject("empty").children().isEmpty());
+        assertEquals(" <b>не тег</b> ", root.getObject("code").getString().value());
+    }
 
+    @Test
+    void tokenizer_attributes() {
+        var t = new XmlTokenizer("<a x='1' y=\"two words\"/><b/>");
+        var open = t.nextToken();
+        assertEquals(TokenType.OPEN_TAG, open.type());
+        assertEquals("a", open.lexeme());
+        assertEquals(2, t.attributeCount());
+        assertEquals("y", t.attributeName(1));
+        assertEquals("two words", t.attributeValue(1));
+        assertEquals(new XmlTokenizer.Token(TokenType.CLOSE_TAG, "a"), t.nextToken());
+        assertEquals(0, t.attributeCount());
+        assertEquals(TokenType.OPEN_TAG, t.nextToken().type());
+        assertEquals(TokenType.CLOSE_TAG, t.nextToken().type());
+        assertEquals(TokenType.EOF, t.nextToken().type());
 
+        for (var bad : new String[]{"<a x=1>", "<a x>", "<a", "<!-- a", "<![CDATA[ a", "<a x='1>", "<>"}) {
+            assertThrows(RuntimeException.class, () -> new XmlParser().parse(bad), bad);
+            var source = ByteSource.of(new ByteArrayInputStream(bad.getBytes(StandardCharsets.UTF_8)), 2);
+            assertThrows(RuntimeException.class, () -> new XmlParser().parse(source), bad);
+        }
+    }
 
+    @Test
+    void entities() {
+        var doc = "<r><t>  a &amp; b &lt;c&gt; &#1095;&#x430;&#x1F600; </t><q v=\"&quot;&apos;&#x20;x\">&#49;&#50;</q>"
+                + "<u>Ч&amp;</u><n>&#45;7</n></r>";
+        var expected = "XmlObject{name=r, children=[XmlObject{name=t, children=[\"a & b <c> ча\uD83D\uDE00\"]}, "
+                + "XmlObject{name=q, children=[XmlObject{name=v, children=[\"\"' x\"]}, 12]}, "
+                + "XmlObject{name=u, children=[\"Ч&\"]}, XmlObject{name=n, children=[-7]}]}";
+        assertEquals(expected, parser.parse(doc).toString());
+        var bytes = doc.getBytes(StandardCharsets.UTF_8);
+        for (int size : new int[]{1, 3, 8, 13, 4096}) {
+            var source = ByteSource.of(new ByteArrayInputStream(bytes), size);
+            assertEquals(expected, parser.parse(source).toString(), "buffer " + size);
+        }
+        var direct = ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+        assertEquals(expected, parser.parse(ByteSource.of(direct)).toString());
+
+        // '<' и '&' на всех смещениях внутри восьмибайтового слова
+        var sb = new StringBuilder("<r>");
+        for (int i = 0; i < 20; i++) {
+            sb.append("<s>").append("щ".repeat(i % 3)).append("x".repeat(i)).append(i % 2 == 0 ? "&lt;" : "").append("</s>");
+        }
+        var text = sb.append("</r>").toString();
+        var tree = parser.parse(text).toString();
+        assertEquals(tree, parser.parse(ByteSource.of(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)))).toString());
+
+        for (var bad : new String[]{"<a>&</a>", "<a>&foo;</a>", "<a>&lt</a>", "<a>&#;</a>", "<a>&#x;</a>",
+                "<a>&#0;</a>", "<a>&#xD800;</a>", "<a>&#x110000;</a>", "<a>&#99999999999;</a>", "<a x='&'/>"}) {
+            assertThrows(RuntimeException.class, () -> new XmlParser().parse(bad), bad);
+            var source = ByteSource.of(new ByteArrayInputStream(bad.getBytes(StandardCharsets.UTF_8)), 4);
+            assertThrows(RuntimeException.class, () -> new XmlParser().parse(source), bad);
+        }
+    }
+}